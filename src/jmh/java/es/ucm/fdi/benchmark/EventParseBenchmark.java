@@ -0,0 +1,60 @@
+package es.ucm.fdi.benchmark;
+
+import es.ucm.fdi.events.Event;
+import es.ucm.fdi.events.EventBuilder;
+import es.ucm.fdi.ini.IniSection;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide la construcción de los eventos a partir de las secciones ya leídas del fichero, en el hilo
+ * que las carga (parallelism = 1) o repartidas entre varios hilos
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class EventParseBenchmark {
+
+  @Param({"10000"})
+  public int junctions;
+
+  @Param({"100000", "1000000"})
+  public int vehicles;
+
+  @Param({"1", "2", "4", "8"})
+  public int parallelism;
+
+  private List<IniSection> sections;
+  private ForkJoinPool pool;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    sections = new ScenarioGenerator(junctions, vehicles, 42).generate();
+    pool = new ForkJoinPool(parallelism);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    pool.shutdown();
+  }
+
+  @Benchmark
+  public List<Event> parse() {
+    if (parallelism == 1) {
+      List<Event> events = new ArrayList<>(sections.size());
+      for (IniSection section : sections) {
+        events.add(EventBuilder.parse(section));
+      }
+      return events;
+    }
+    return EventBuilder.parseAll(sections, pool, parallelism);
+  }
+
+}
@@ -0,0 +1,50 @@
+package es.ucm.fdi.benchmark;
+
+import es.ucm.fdi.events.Event;
+import es.ucm.fdi.model.TrafficSimulator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide la fase de ejecución de eventos: construir el mapa completo (cruces, carreteras y
+ * vehículos) a partir de los eventos ya leídos. Los mapas grandes se piden como en
+ * {@link SimulatorBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class EventPhaseBenchmark {
+
+  @Param({"1000", "10000"})
+  public int junctions;
+
+  @Param({"10000", "100000"})
+  public int vehicles;
+
+  private List<Event> events;
+  private TrafficSimulator simulator;
+
+  @Setup(Level.Trial)
+  public void generate() {
+    events = new ScenarioGenerator(junctions, vehicles, 42).generateEvents();
+  }
+
+  @Setup(Level.Invocation)
+  public void setUp() {
+    simulator = new TrafficSimulator();
+  }
+
+  @Benchmark
+  public TrafficSimulator events() {
+    for (Event e : events) {
+      e.execute(simulator);
+    }
+    return simulator;
+  }
+
+}
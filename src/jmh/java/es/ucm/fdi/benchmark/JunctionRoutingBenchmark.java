@@ -0,0 +1,69 @@
+package es.ucm.fdi.benchmark;
+
+import es.ucm.fdi.model.Junction;
+import es.ucm.fdi.model.Road;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara {@link Junction#getStraightRoad(String)}, que usa el índice por cruce de origen, con el
+ * recorrido lineal de las carreteras entrantes que hacía antes, para cruces de distinto grado
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JunctionRoutingBenchmark {
+
+  @Param({"2", "8", "64", "512"})
+  public int degree;
+
+  private Junction junction;
+  private List<Road> incomingRoads;
+  private String[] sources;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    junction = new Junction("destination");
+    incomingRoads = new ArrayList<>();
+    sources = new String[degree];
+    for (int i = 0; i < degree; i++) {
+      sources[i] = "source" + i;
+      Road road = new Road("road" + i, 100, 50, sources[i], "destination");
+      junction.addRoad(road);
+      incomingRoads.add(road);
+    }
+  }
+
+  /**
+   * Cruce de origen de la siguiente consulta (recorre todos para no medir siempre el mismo caso)
+   */
+  private String nextSource() {
+    String source = sources[next];
+    next = next + 1 == degree ? 0 : next + 1;
+    return source;
+  }
+
+  @Benchmark
+  public Road indexed() {
+    return junction.getStraightRoad(nextSource());
+  }
+
+  @Benchmark
+  public Road linearScan() {
+    String source = nextSource();
+    for (Road r : incomingRoads) {
+      if (r.getSource().equals(source)) {
+        return r;
+      }
+    }
+    return null;
+  }
+
+}
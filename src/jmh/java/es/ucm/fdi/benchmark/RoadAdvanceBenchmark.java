@@ -0,0 +1,58 @@
+package es.ucm.fdi.benchmark;
+
+import es.ucm.fdi.model.Junction;
+import es.ucm.fdi.model.LaneRoad;
+import es.ucm.fdi.model.Road;
+import es.ucm.fdi.model.Vehicle;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide {@link Road#advance()} sobre una carretera en régimen estacionario: una carretera muy
+ * larga en la que ningún vehículo llega al final durante la medición. Lanzado con
+ * {@code -prof gc} debe mostrar una reserva de memoria por operación (gc.alloc.rate.norm)
+ * prácticamente nula.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoadAdvanceBenchmark {
+
+  @Param({"10", "100", "1000"})
+  public int vehicles;
+
+  private Road road;
+
+  /**
+   * Se reconstruye en cada iteración para que los vehículos no lleguen nunca al final
+   */
+  @Setup(Level.Iteration)
+  public void setUp() {
+    Junction source = new Junction("source");
+    Junction destination = new Junction("destination");
+    // Tantos carriles como vehículos para que cada uno vaya a su velocidad máxima y se
+    // adelanten entre ellos
+    road = new LaneRoad("road", Integer.MAX_VALUE / 2, 50, "source", "destination", vehicles);
+    destination.addRoad(road);
+    for (int i = 0; i < vehicles; i++) {
+      Queue<Junction> itinerary = new ArrayDeque<>();
+      itinerary.add(source);
+      itinerary.add(destination);
+      Vehicle v = new Vehicle("v" + i, 1 + i % 50, itinerary);
+      v.moveToNextRoad();
+    }
+  }
+
+  @Benchmark
+  public Road advance() {
+    road.advance();
+    return road;
+  }
+
+}
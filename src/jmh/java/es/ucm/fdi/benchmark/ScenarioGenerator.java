@@ -0,0 +1,174 @@
+package es.ucm.fdi.benchmark;
+
+import es.ucm.fdi.events.Event;
+import es.ucm.fdi.events.EventBuilder;
+import es.ucm.fdi.ini.IniSection;
+import es.ucm.fdi.model.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Genera escenarios sintéticos (como secciones de un fichero ini de eventos) con tantos cruces y
+ * vehículos como se le indiquen, mezclando todos los tipos de cruces, carreteras y vehículos
+ */
+public class ScenarioGenerator {
+
+  /**
+   * Saltos que da cada vehículo en su itinerario
+   */
+  private static final int ITINERARY_HOPS = 6;
+
+  private final int junctions;
+  private final int vehicles;
+  private final Random random;
+  // Salto de las carreteras "transversales" (como si fuera una cuadrícula)
+  private final int stride;
+
+  public ScenarioGenerator(int junctions, int vehicles, long seed) {
+    if (junctions < 2) {
+      throw new IllegalArgumentException("At least two junctions are needed");
+    }
+    this.junctions = junctions;
+    this.vehicles = vehicles;
+    random = new Random(seed);
+    stride = Math.max(2, (int) Math.sqrt(junctions));
+  }
+
+  /**
+   * Devuelve las secciones del escenario: primero los cruces, luego las carreteras y por último
+   * los vehículos, todos en el instante 0
+   */
+  public List<IniSection> generate() {
+    List<IniSection> sections = new ArrayList<>(junctions * 3 + vehicles);
+    for (int i = 0; i < junctions; i++) {
+      sections.add(junction(i));
+    }
+    for (int i = 0; i < junctions; i++) {
+      sections.add(road(2 * i, i, (i + 1) % junctions));
+      sections.add(road(2 * i + 1, i, (i + stride) % junctions));
+    }
+    for (int i = 0; i < vehicles; i++) {
+      sections.add(vehicle(i, 0));
+    }
+    return sections;
+  }
+
+  /**
+   * Construye los eventos de {@code count} vehículos nuevos que entran en el instante indicado,
+   * numerados a partir de {@code first} (para que sus ids no se repitan, debe ser al menos el
+   * número de vehículos del escenario)
+   */
+  public List<Event> generateVehicleEvents(int time, int first, int count) {
+    List<Event> events = new ArrayList<>(count);
+    for (int i = first; i < first + count; i++) {
+      events.add(EventBuilder.parse(vehicle(i, time)));
+    }
+    return events;
+  }
+
+  /**
+   * Construye los eventos del escenario
+   */
+  public List<Event> generateEvents() {
+    List<Event> events = new ArrayList<>();
+    for (IniSection section : generate()) {
+      events.add(EventBuilder.parse(section));
+    }
+    return events;
+  }
+
+  /**
+   * Crea un simulador con todos los eventos del escenario ya cargados
+   */
+  public TrafficSimulator createSimulator() {
+    TrafficSimulator simulator = new TrafficSimulator();
+    for (Event e : generateEvents()) {
+      simulator.addEvent(e);
+    }
+    return simulator;
+  }
+
+  private IniSection junction(int i) {
+    IniSection section = new IniSection("new_junction");
+    section.setValue("time", 0);
+    section.setValue("id", junctionId(i));
+    switch (i % 3) {
+      case 1:
+        section.setValue("type", RoundRobinJunction.TYPE);
+        section.setValue("min_time_slice", 2);
+        section.setValue("max_time_slice", 5);
+        break;
+      case 2:
+        section.setValue("type", MostCrowdedJunction.TYPE);
+        break;
+    }
+    return section;
+  }
+
+  private IniSection road(int i, int source, int destination) {
+    IniSection section = new IniSection("new_road");
+    section.setValue("time", 0);
+    section.setValue("id", id("r", i));
+    section.setValue("src", junctionId(source));
+    section.setValue("dest", junctionId(destination));
+    section.setValue("max_speed", 20 + random.nextInt(60));
+    section.setValue("length", 50 + random.nextInt(450));
+    switch (i % 3) {
+      case 1:
+        section.setValue("type", LaneRoad.TYPE);
+        section.setValue("lanes", 1 + random.nextInt(3));
+        break;
+      case 2:
+        section.setValue("type", DirtRoad.TYPE);
+        break;
+    }
+    return section;
+  }
+
+  private IniSection vehicle(int i, int time) {
+    IniSection section = new IniSection("new_vehicle");
+    section.setValue("time", time);
+    section.setValue("id", id("v", i));
+    section.setValue("max_speed", 10 + random.nextInt(70));
+    // Recorre la "cuadrícula" escogiendo en cada cruce una de sus dos carreteras de salida
+    int junction = random.nextInt(junctions);
+    StringBuilder itinerary = new StringBuilder(junctionId(junction));
+    for (int hop = 0; hop < ITINERARY_HOPS; hop++) {
+      junction = (junction + (random.nextBoolean() ? 1 : stride)) % junctions;
+      itinerary.append(',').append(junctionId(junction));
+    }
+    section.setValue("itinerary", itinerary);
+    switch (i % 3) {
+      case 1:
+        section.setValue("type", Car.TYPE);
+        section.setValue("resistance", 50 + random.nextInt(200));
+        section.setValue("fault_probability", 0.05);
+        section.setValue("max_fault_duration", 3);
+        section.setValue("seed", 1 + random.nextInt(Integer.MAX_VALUE - 1));
+        break;
+      case 2:
+        section.setValue("type", Bicycle.TYPE);
+        break;
+    }
+    return section;
+  }
+
+  private static String junctionId(int i) {
+    return id("j", i);
+  }
+
+  /**
+   * Los ids no pueden contener el dígito 0, así que se codifican en base 26 con letras
+   */
+  private static String id(String prefix, int i) {
+    StringBuilder sb = new StringBuilder();
+    do {
+      sb.append((char) ('a' + i % 26));
+      i /= 26;
+    } while (i > 0);
+    return prefix + "_" + sb.reverse();
+  }
+
+}
@@ -0,0 +1,158 @@
+package es.ucm.fdi.benchmark;
+
+import es.ucm.fdi.events.Event;
+import es.ucm.fdi.model.SimulationMetrics;
+import es.ucm.fdi.model.TrafficSimulator;
+import es.ucm.fdi.model.Vehicle;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide cuántos ticks por segundo ejecuta {@link TrafficSimulator#execute(int, OutputStream)}
+ * sobre mapas sintéticos, y cuánto tarda cada una de sus fases dentro de esos mismos ticks.
+ * <p>
+ * Para que la carga sea la misma en todas las iteraciones, el escenario se reconstruye al
+ * empezar cada una y cada {@link #REFILL_INTERVAL} ticks entran tantos vehículos nuevos como
+ * hayan llegado a su destino, así que siempre hay unos {@code vehicles} vehículos circulando. Al
+ * acabar cada iteración se muestra cuántos ticks se han ejecutado y cuántos vehículos había y,
+ * en {@link #tickPhases()}, lo que ha tardado cada fase. Los vehículos que llegan siguen en el
+ * mapa, así que los informes crecen un poco a lo largo de cada iteración.
+ * <p>
+ * Por defecto sólo se miden tamaños que acaban en unos minutos. Los mapas grandes se piden con
+ * {@code -Djmh.args="SimulatorBenchmark -p junctions=100000 -p vehicles=1000000
+ * -jvmArgsAppend -Xmx8g"}. La tasa de reserva de memoria se obtiene añadiendo el perfilador de
+ * JMH ({@code -prof gc}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SimulatorBenchmark {
+
+  /**
+   * Cada cuántos ticks se reponen los vehículos que han llegado
+   */
+  static final int REFILL_INTERVAL = 50;
+
+  @Param({"1000", "10000"})
+  public int junctions;
+
+  @Param({"10000", "100000"})
+  public int vehicles;
+
+  private ScenarioGenerator generator;
+  private TrafficSimulator simulator;
+  private SimulationMetrics metrics;
+  // Ticks ejecutados e id del siguiente vehículo que se repone
+  private int ticks;
+  private int nextVehicle;
+
+  @Setup(Level.Iteration)
+  public void setUp() {
+    generator = new ScenarioGenerator(junctions, vehicles, 42);
+    simulator = generator.createSimulator();
+    metrics = new SimulationMetrics();
+    // El primer tick ejecuta los eventos que construyen el mapa
+    simulator.execute(1, null);
+    ticks = 1;
+    nextVehicle = vehicles;
+  }
+
+  @TearDown(Level.Iteration)
+  public void tearDown() {
+    System.out.printf("(%d ticks, %d active vehicles)%n", ticks, activeVehicles());
+    if (metrics.getTicks() > 0) {
+      metrics.writeSummary(System.out);
+    }
+  }
+
+  /**
+   * Un tick completo, sin informes
+   */
+  @Benchmark
+  public void tick() {
+    refillIfDue();
+    simulator.execute(1, null);
+    ticks++;
+  }
+
+  /**
+   * Un tick completo escribiendo los informes de todos los objetos
+   */
+  @Benchmark
+  public void tickWithReports(Blackhole blackhole) {
+    refillIfDue();
+    simulator.execute(1, new BlackholeOutputStream(blackhole));
+    ticks++;
+  }
+
+  /**
+   * Un tick completo midiendo el tiempo de cada fase con {@link SimulationMetrics}
+   */
+  @Benchmark
+  public void tickPhases() {
+    simulator.setMetrics(metrics);
+    tick();
+  }
+
+  /**
+   * Fase de escritura de informes
+   */
+  @Benchmark
+  public void reports(Blackhole blackhole) {
+    simulator.generateReports(new BlackholeOutputStream(blackhole), simulator.getJunctions(),
+        simulator.getRoads(), simulator.getVehicles());
+  }
+
+  /**
+   * Repone los vehículos que han llegado a su destino para que entren en el siguiente tick
+   */
+  private void refillIfDue() {
+    if (ticks % REFILL_INTERVAL == 0) {
+      int arrived = vehicles - activeVehicles();
+      for (Event e : generator.generateVehicleEvents(ticks, nextVehicle, arrived)) {
+        simulator.addEvent(e);
+      }
+      nextVehicle += arrived;
+    }
+  }
+
+  private int activeVehicles() {
+    int active = 0;
+    for (Vehicle v : simulator.getVehicles()) {
+      if (!v.hasArrived()) {
+        active++;
+      }
+    }
+    return active;
+  }
+
+  /**
+   * Salida que descarta los bytes (pero sin que el JIT pueda eliminar su escritura)
+   */
+  static class BlackholeOutputStream extends OutputStream {
+
+    private final Blackhole blackhole;
+
+    BlackholeOutputStream(Blackhole blackhole) {
+      this.blackhole = blackhole;
+    }
+
+    @Override
+    public void write(int b) {
+      blackhole.consume(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      blackhole.consume(b);
+    }
+
+  }
+
+}
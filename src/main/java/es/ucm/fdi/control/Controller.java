@@ -2,22 +2,41 @@ package es.ucm.fdi.control;
 
 import es.ucm.fdi.events.Event;
 import es.ucm.fdi.events.EventBuilder;
+import es.ucm.fdi.events.EventSource;
+import es.ucm.fdi.events.IniEventSource;
 import es.ucm.fdi.ini.Ini;
 import es.ucm.fdi.ini.IniError;
 import es.ucm.fdi.ini.IniSection;
+import es.ucm.fdi.ini.MappedIniReader;
+import es.ucm.fdi.model.ReplayLog;
+import es.ucm.fdi.model.ReportFormat;
+import es.ucm.fdi.model.SimulationSnapshot;
+import es.ucm.fdi.model.SimulationMetrics;
+import es.ucm.fdi.model.SimulationProfiler;
 import es.ucm.fdi.model.TrafficSimulator;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Clase que pone en contacto la interfaz con el simulador
  */
 public class Controller {
 
+  // Secciones que se parsean a la vez cuando los eventos se cargan en paralelo
+  private static final int PARSE_BATCH_SIZE = 1 << 16;
+
   private TrafficSimulator simulator;
   private OutputStream outputStream;
+  private EventSource eventSource;
+  // Registro de los pasos ejecutados (null si no se registran)
+  private ReplayLog replayLog;
 
   public Controller(TrafficSimulator simulator) {
     this.simulator = simulator;
@@ -31,6 +50,111 @@ public class Controller {
     outputStream = os;
   }
 
+  /**
+   * Establece el número de hilos con los que avanza la simulación y con los que se parsean los
+   * eventos al cargarlos (los dos usan el pool del simulador)
+   */
+  public void setParallelism(int parallelism) {
+    simulator.setParallelism(parallelism);
+  }
+
+  /**
+   * Activa el cambio de itinerarios según el tráfico (ver
+   * {@link TrafficSimulator#setRerouting(int, double)})
+   */
+  public void setRerouting(int interval, double budget) {
+    simulator.setRerouting(interval, budget);
+  }
+
+  /**
+   * Permite dar de golpe los pasos sin informes (ver
+   * {@link TrafficSimulator#setFastForward(boolean)})
+   */
+  public void setFastForward(boolean fastForward) {
+    simulator.setFastForward(fastForward);
+  }
+
+  /**
+   * Mide cada paso de la simulación (ver {@link TrafficSimulator#setMetrics(SimulationMetrics)})
+   */
+  public void setMetrics(SimulationMetrics metrics) {
+    simulator.setMetrics(metrics);
+  }
+
+  /**
+   * Mide el avance de cada carretera y cada cruce (ver
+   * {@link TrafficSimulator#setProfiler(SimulationProfiler)})
+   */
+  public void setProfiler(SimulationProfiler profiler) {
+    simulator.setProfiler(profiler);
+  }
+
+  /**
+   * Guarda periódicamente el estado de la simulación en un fichero (ver
+   * {@link TrafficSimulator#setCheckpoints(File, int)})
+   */
+  public void setCheckpoints(File file, int interval) {
+    simulator.setCheckpoints(file, interval);
+  }
+
+  /**
+   * Espera a que se acabe de escribir el último punto de control
+   */
+  public void awaitCheckpoint() {
+    simulator.awaitCheckpoint();
+  }
+
+  /**
+   * Sustituye el estado del simulador por el punto de control guardado en el fichero. Si los
+   * eventos se leían a medida que se necesitaban, hay que volver a indicar el fichero con
+   * {@link #streamEvents(File, int)}
+   */
+  public void restoreCheckpoint(File file) {
+    closeEventSource();
+    try (InputStream in = new FileInputStream(file)) {
+      simulator.restoreCheckpoint(in);
+    } catch (IOException e) {
+      throw new IllegalStateException(
+          "Something went wrong while reading checkpoint\n" + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Empieza a registrar los pasos que se ejecuten para poder volver después a cualquiera de
+   * ellos con {@link #seek(int)}, guardando el estado completo cada {@code keyframeInterval}
+   * pasos. Activa las instantáneas del simulador, así que debe llamarse antes de empezar a
+   * ejecutar. El registro se vacía cada vez que se resetea el simulador
+   */
+  public void recordReplay(int keyframeInterval) {
+    if (replayLog != null) {
+      simulator.removeListener(replayLog);
+    }
+    simulator.setPublishSnapshots(true);
+    replayLog = new ReplayLog(keyframeInterval);
+    simulator.addListener(replayLog);
+  }
+
+  /**
+   * Devuelve el estado de la simulación tras el paso indicado sin volver a ejecutarla (ver
+   * {@link ReplayLog#seek(int)}). El coste depende de la distancia al último estado completo
+   * guardado y no de la del paso
+   *
+   * @throws IllegalStateException Si no se están registrando los pasos o no hay ninguno
+   */
+  public SimulationSnapshot seek(int time) {
+    if (replayLog == null) {
+      throw new IllegalStateException("Ticks are not being recorded");
+    }
+    return replayLog.seek(time);
+  }
+
+  /**
+   * Establece el formato en el que se escriben los informes en la salida
+   */
+  public void setReportFormat(ReportFormat format) {
+    simulator.setReportFormat(format);
+  }
+
   /**
    * Ejecuta la simulación tantos pasos como se le indiquen
    */
@@ -38,10 +162,18 @@ public class Controller {
     simulator.execute(ticks, outputStream);
   }
 
+  /**
+   * Ejecuta la simulación tantos pasos como se le indiquen escribiendo sólo el informe del último
+   */
+  public void runToEnd(int ticks) {
+    simulator.executeToEnd(ticks, outputStream);
+  }
+
   /**
    * Resetea el simulador
    */
   public void reset() {
+    closeEventSource();
     simulator.reset();
   }
 
@@ -51,23 +183,106 @@ public class Controller {
   public void loadEvents(InputStream is) {
     try {
       Ini ini = new Ini(is);
-      for (IniSection section : ini.getSections()) {
-        try {
-          Event event = EventBuilder.parse(section);
-          if (event == null) {
-            throw new IllegalStateException(
-                "Event not recognized\n" + section);
-          }
-          simulator.addEvent(event);
-        } catch (IllegalStateException e) {
-          throw new IllegalStateException(
-              "Failed while trying to load events\n" + e.getMessage(), e);
+      loadEvents(ini.getSections());
+    } catch (IOException | IniError e) {
+      throw new IllegalStateException(
+          "Something went wrong while reading ini file\n" + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Carga los eventos de un fichero leyéndolo sección a sección, sin cargarlo entero en memoria
+   */
+  public void loadEvents(File file) {
+    try (MappedIniReader reader = new MappedIniReader(file)) {
+      List<IniSection> batch = new ArrayList<>();
+      IniSection section;
+      while ((section = reader.next()) != null) {
+        batch.add(section);
+        if (batch.size() == PARSE_BATCH_SIZE) {
+          loadEvents(batch);
+          batch.clear();
         }
       }
+      loadEvents(batch);
     } catch (IOException | IniError e) {
       throw new IllegalStateException(
           "Something went wrong while reading ini file\n" + e.getMessage(), e);
     }
   }
 
+  /**
+   * Hace que el simulador lea los eventos del fichero a medida que los necesita, teniendo en
+   * memoria sólo los de los próximos {@code window} pasos. Los eventos del fichero deben estar
+   * ordenados por tiempo salvo dentro de esa ventana
+   */
+  public void streamEvents(File file, int window) {
+    closeEventSource();
+    try {
+      eventSource = new IniEventSource(file);
+    } catch (IOException e) {
+      throw new IllegalStateException(
+          "Something went wrong while reading ini file\n" + e.getMessage(), e);
+    }
+    simulator.setEventSource(eventSource, window);
+  }
+
+  /**
+   * Cierra la fuente de eventos anterior si la había
+   */
+  private void closeEventSource() {
+    if (eventSource != null) {
+      try {
+        eventSource.close();
+      } catch (IOException e) {
+        // Ya no se va a leer más de ella
+      }
+      eventSource = null;
+    }
+  }
+
+  /**
+   * Crea los eventos de las secciones y los añade al simulador en el mismo orden. Si hay varios
+   * hilos las secciones se parsean en paralelo
+   */
+  private void loadEvents(List<IniSection> sections) {
+    ExecutorService executor = simulator.getExecutor();
+    if (executor == null) {
+      for (IniSection section : sections) {
+        addEvent(section, parseEvent(section));
+      }
+    } else {
+      List<Event> events;
+      try {
+        events = EventBuilder.parseAll(sections, executor, simulator.getParallelism());
+      } catch (IllegalStateException e) {
+        throw new IllegalStateException(
+            "Failed while trying to load events\n" + e.getMessage(), e);
+      }
+      for (int i = 0; i < sections.size(); i++) {
+        addEvent(sections.get(i), events.get(i));
+      }
+    }
+  }
+
+  private Event parseEvent(IniSection section) {
+    try {
+      return EventBuilder.parse(section);
+    } catch (IllegalStateException e) {
+      throw new IllegalStateException(
+          "Failed while trying to load events\n" + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Añade al simulador el evento creado a partir de una sección
+   */
+  private void addEvent(IniSection section, Event event) {
+    if (event == null) {
+      throw new IllegalStateException(
+          "Failed while trying to load events\nEvent not recognized\n" + section);
+    }
+    simulator.addEvent(event);
+  }
+
 }
@@ -0,0 +1,64 @@
+package es.ucm.fdi.control.layout;
+
+import es.ucm.fdi.model.SimulationSnapshot;
+
+import javax.swing.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Separa la velocidad de la simulación de la del repintado: el hilo de la simulación publica
+ * una instantánea por paso y la interfaz coge la última a un ritmo fijo. Si se publica una nueva
+ * antes de que se pinte la anterior, la anterior se descarta (como las instantáneas se comparan
+ * con la última pintada, no se pierde ningún cambio)
+ */
+class FrameSampler {
+
+  static final int FRAMES_PER_SECOND = 30;
+
+  private final Timer timer;
+  // Instantánea pendiente de pintar (null si no hay ninguna)
+  private final AtomicReference<SimulationSnapshot> pending;
+  private final AtomicLong droppedFrames;
+
+  /**
+   * @param renderer Acción que pinta una instantánea, siempre en el hilo de Swing
+   */
+  FrameSampler(Consumer<SimulationSnapshot> renderer) {
+    pending = new AtomicReference<>();
+    droppedFrames = new AtomicLong();
+    timer = new Timer(1000 / FRAMES_PER_SECOND, e -> {
+      SimulationSnapshot frame = pending.getAndSet(null);
+      if (frame != null) {
+        renderer.accept(frame);
+      }
+    });
+    timer.setCoalesce(true);
+  }
+
+  void start() {
+    timer.start();
+  }
+
+  /**
+   * Publica el estado del simulador tras un paso
+   */
+  void publish(SimulationSnapshot snapshot) {
+    if (pending.getAndSet(snapshot) != null) {
+      droppedFrames.incrementAndGet();
+    }
+  }
+
+  /**
+   * Descarta la instantánea pendiente (por ejemplo tras reiniciar el simulador)
+   */
+  void clear() {
+    pending.set(null);
+  }
+
+  long getDroppedFrames() {
+    return droppedFrames.get();
+  }
+
+}
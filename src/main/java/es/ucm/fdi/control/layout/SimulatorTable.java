@@ -1,6 +1,7 @@
 package es.ucm.fdi.control.layout;
 
 import es.ucm.fdi.model.Describable;
+import es.ucm.fdi.util.PersistentVector;
 
 import javax.swing.*;
 import javax.swing.table.AbstractTableModel;
@@ -43,13 +44,47 @@ public class SimulatorTable<T extends Describable> extends JTable {
     model.clear();
   }
 
-  public void setElements(Collection<T> elements) {
+  public void setElements(Collection<? extends T> elements) {
     clear();
     for (T element : elements) {
       addElement(element);
     }
   }
 
+  /**
+   * Actualiza la tabla, que muestra los elementos de {@code previous}, para que muestre los de
+   * {@code current}. Sólo se vuelven a describir las filas cuyo elemento ha cambiado
+   */
+  public <S extends T> void updateElements(PersistentVector<S> previous,
+                                           PersistentVector<S> current) {
+    if (current.size() < model.getRowCount()) {
+      setElements(current);
+      return;
+    }
+    int[] first = {-1};
+    int[] last = {-1};
+    current.forEachChanged(previous, index -> {
+      if (index >= model.getRowCount()) {
+        addElement(current.get(index));
+      } else {
+        model.setRow(index, current.get(index));
+        // Se notifican por tramos de filas consecutivas en lugar de una a una
+        if (index != last[0] + 1) {
+          fireRowsUpdated(first[0], last[0]);
+          first[0] = index;
+        }
+        last[0] = index;
+      }
+    });
+    fireRowsUpdated(first[0], last[0]);
+  }
+
+  private void fireRowsUpdated(int first, int last) {
+    if (first >= 0) {
+      model.fireTableRowsUpdated(first, last);
+    }
+  }
+
   private void addElement(T element) {
     model.addRow(element);
   }
@@ -97,17 +132,24 @@ public class SimulatorTable<T extends Describable> extends JTable {
       return String.class;
     }
 
-    private String[] describe(T element) {
+    private String[] describe(T element, int row) {
       Map<String, String> values = element.describe();
       String[] result = new String[titles.length];
       for (int i = 0; i < titles.length; i++) {
-        result[i] = "#".equals(titles[i]) ? "" + elements.size() : values.get(titles[i]);
+        result[i] = "#".equals(titles[i]) ? "" + row : values.get(titles[i]);
       }
       return result;
     }
 
     void addRow(T element) {
-      addRow(describe(element));
+      addRow(describe(element, elements.size()));
+    }
+
+    /**
+     * Sustituye la descripción de una fila sin notificarlo
+     */
+    void setRow(int row, T element) {
+      elements.set(row, describe(element, row));
     }
 
     private void addRow(String[] newRow) {
@@ -5,10 +5,8 @@ import es.ucm.fdi.control.Stepper;
 import es.ucm.fdi.control.layout.graphlayout.*;
 import es.ucm.fdi.events.Event;
 import es.ucm.fdi.events.EventBuilder;
-import es.ucm.fdi.model.Junction;
-import es.ucm.fdi.model.Road;
-import es.ucm.fdi.model.TrafficSimulator;
-import es.ucm.fdi.model.Vehicle;
+import es.ucm.fdi.model.*;
+import es.ucm.fdi.util.PersistentVector;
 import es.ucm.fdi.util.TextAreaOutputStream;
 
 import javax.swing.*;
@@ -36,6 +34,7 @@ public class SimulatorWindow extends JFrame {
 
   private static final String READ_FILE_ERROR = "Error reading file";
   private static final String WRITE_FILE_ERROR = "Error writing file";
+  private static final String LAYOUT_ERROR = "Error laying out the road map";
 
   private Controller controller;
 
@@ -44,11 +43,12 @@ public class SimulatorWindow extends JFrame {
   private JScrollPane eventsEditorScroll;
   private SimulatorTable<Event> eventsQueue;
   private SimulatorTextArea reportsArea;
-  private SimulatorTable<Vehicle> vehiclesTable;
-  private SimulatorTable<Road> roadsTable;
-  private SimulatorTable<Junction> junctionsTable;
+  private SimulatorTable<VehicleState> vehiclesTable;
+  private SimulatorTable<RoadState> roadsTable;
+  private SimulatorTable<JunctionState> junctionsTable;
   private GraphComponent roadMap;
   private JLabel statusBarText;
+  private JLabel droppedFramesText;
   private JSpinner stepDelay;
   private JSpinner stepCounter;
   private JTextField time;
@@ -56,6 +56,12 @@ public class SimulatorWindow extends JFrame {
   private Map<Command, SimulatorAction> actionMap;
 
   private Stepper stepper;
+  // Fotogramas que publica la simulación y que se pintan a ritmo fijo
+  private FrameSampler frameSampler;
+  // Última instantánea pintada, con la que se compara la siguiente
+  private SimulationSnapshot renderedSnapshot;
+  // Grafo de la última instantánea pintada, que se actualiza en lugar de reconstruirse
+  private Graph graph;
 
   // Dirección desde donde se abrirá el siguiente JFileChooser
   private String previousPath;
@@ -63,6 +69,9 @@ public class SimulatorWindow extends JFrame {
   public SimulatorWindow(String title, File initialFile, int steps, Dimension dimension) {
     super(title);
     controller = new Controller(new TrafficSimulator());
+    // La interfaz lee el estado desde el hilo de Swing mientras la simulación avanza
+    controller.getSimulator().setPublishSnapshots(true);
+    renderedSnapshot = SimulationSnapshot.EMPTY;
     initialize(dimension, initialFile, steps);
     stepper = new Stepper(
         () -> SwingUtilities.invokeLater(() -> {
@@ -94,8 +103,10 @@ public class SimulatorWindow extends JFrame {
     addSections(initialFile);
     addToolBar(steps);
     addStatusBar();
+    frameSampler = new FrameSampler(this::renderFrame);
     addListeners();
     setVisible(true);
+    frameSampler.start();
   }
 
   /**
@@ -192,6 +203,8 @@ public class SimulatorWindow extends JFrame {
 
     // Grafo del mapa de carreteras
     roadMap = new GraphComponent();
+    // Si falla la colocación del grafo se queda la circular
+    roadMap.setLayoutErrorHandler(e -> showErrorMessage(LAYOUT_ERROR, String.valueOf(e)));
 
     // Colocación de todos los elementos con JSplitPane
     JSplitPane topLeftSplit = createSeparator(JSplitPane.HORIZONTAL_SPLIT,
@@ -357,6 +370,8 @@ public class SimulatorWindow extends JFrame {
     statusBar.setLayout(new FlowLayout(FlowLayout.LEFT));
     statusBarText = new JLabel("Welcome to the simulator!");
     statusBar.add(statusBarText);
+    droppedFramesText = new JLabel();
+    statusBar.add(droppedFramesText);
     add(statusBar, BorderLayout.SOUTH);
   }
 
@@ -382,12 +397,15 @@ public class SimulatorWindow extends JFrame {
 
       @Override
       public void reset(TrafficSimulator.UpdateEvent ue) {
+        frameSampler.clear();
         SwingUtilities.invokeLater(() -> {
           time.setText("" + 0);
           enableActions(true, Command.MOVE_EVENTS);
           enableActions(false, Command.RUN, Command.RESET, Command.GENERATE_REPORT,
               Command.DELETE_REPORT, Command.SAVE_REPORT);
           refreshTables(Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
+          renderedSnapshot = SimulationSnapshot.EMPTY;
+          graph = null;
           roadMap.clear();
           setStatusText("Simulator has just been reset!");
         });
@@ -407,14 +425,8 @@ public class SimulatorWindow extends JFrame {
 
       @Override
       public void advanced(TrafficSimulator.UpdateEvent ue) {
-        SwingUtilities.invokeLater(() -> {
-          time.setText("" + ue.getCurrentTime());
-          refreshTables(ue.getVehicles(), ue.getRoads(), ue.getJunctions());
-          eventsQueue.setElements(ue.getEventQueue());
-          generateGraph(ue.getVehicles(), ue.getRoads(), ue.getJunctions(),
-              controller.getSimulator().getGreenRoads());
-          setStatusText("Simulator advanced " + ue.getCurrentTime() + " steps!");
-        });
+        // No se pinta cada paso: se publica y la interfaz coge el último a su ritmo
+        frameSampler.publish(ue.getSnapshot());
       }
 
       @Override
@@ -430,32 +442,72 @@ public class SimulatorWindow extends JFrame {
   }
 
   /**
-   * Genera un grafo con los objetos del simulador
+   * Pinta el último estado publicado por la simulación. Sólo se actualizan las filas de los
+   * objetos cuyo estado ha cambiado desde la instantánea anterior
+   */
+  private void renderFrame(SimulationSnapshot snapshot) {
+    time.setText("" + snapshot.getTime());
+    updateTables(renderedSnapshot, snapshot);
+    if (snapshot.getEvents() != renderedSnapshot.getEvents()) {
+      eventsQueue.setElements(snapshot.getEvents());
+    }
+    updateGraph(renderedSnapshot, snapshot);
+    renderedSnapshot = snapshot;
+    setStatusText("Simulator advanced " + snapshot.getTime() + " steps!");
+    droppedFramesText.setText(" | Dropped frames: " + frameSampler.getDroppedFrames());
+  }
+
+  /**
+   * Actualiza el grafo con los objetos que han cambiado entre dos instantáneas. Los cruces y
+   * carreteras nuevos se añaden al grafo (lo que obliga a repintar su parte estática), mientras
+   * que los semáforos y los vehículos sólo cambian lo que se pinta en cada paso
    */
-  private void generateGraph(Collection<Vehicle> vehicles, Collection<Road> roads,
-                             Collection<Junction> junctions, Set<Road> greenRoads) {
-    Graph graph = new Graph();
-    Map<String, Node> js = new HashMap<>();
-    for (Junction j : junctions) {
-      Node n = new Node(j.getId());
-      js.put(j.getId(), n);
-      graph.addNode(n);
+  private void updateGraph(SimulationSnapshot previous, SimulationSnapshot current) {
+    if (graph == null) {
+      graph = new Graph();
+      roadMap.setGraph(graph);
     }
-    Map<String, Edge> rs = new HashMap<>();
-    for (Road r : roads) {
-      Node source = js.get(r.getSource());
-      Node destiny = js.get(r.getDestiny());
-      Edge e = new Edge(r.getId(), source, destiny, r.getLength(), greenRoads.contains(r));
-      rs.put(r.getId(), e);
-      graph.addEdge(e);
+    PersistentVector<JunctionState> junctions = current.getJunctions();
+    PersistentVector<JunctionState> oldJunctions = previous.getJunctions();
+    List<Integer> changedJunctions = new ArrayList<>();
+    junctions.forEachChanged(oldJunctions, i -> {
+      changedJunctions.add(i);
+      if (i >= oldJunctions.size()) {
+        graph.addNode(new Node(junctions.get(i).getId()));
+      }
+    });
+    PersistentVector<RoadState> roads = current.getRoads();
+    for (int i = previous.getRoads().size(); i < roads.size(); i++) {
+      RoadState r = roads.get(i);
+      graph.addEdge(new Edge(r.getId(), graph.getNode(r.getSource()),
+          graph.getNode(r.getDestiny()), r.getLength(), false));
     }
-    for (Vehicle v : vehicles) {
+    for (int i : changedJunctions) {
+      if (i < oldJunctions.size()) {
+        setGreen(oldJunctions.get(i).getGreenRoadId(), false);
+      }
+      setGreen(junctions.get(i).getGreenRoadId(), true);
+    }
+    PersistentVector<VehicleState> vehicles = current.getVehicles();
+    PersistentVector<VehicleState> oldVehicles = previous.getVehicles();
+    vehicles.forEachChanged(oldVehicles, i -> {
+      if (i < oldVehicles.size() && !oldVehicles.get(i).hasArrived()) {
+        VehicleState v = oldVehicles.get(i);
+        graph.getEdge(v.getRoadId()).removeDot(v.getId());
+      }
+      VehicleState v = vehicles.get(i);
       if (!v.hasArrived()) {
-        Edge e = rs.get(v.getRoad().getId());
-        e.addDot(new Dot(v.getId(), v.getLocation(), v.hashCode()));
+        graph.getEdge(v.getRoadId()).addDot(new Dot(v.getId(), v.getLocation(),
+            v.getId().hashCode()));
       }
+    });
+    roadMap.refresh();
+  }
+
+  private void setGreen(String roadId, boolean green) {
+    if (roadId != null) {
+      graph.getEdge(roadId).setEnabled(green);
     }
-    roadMap.setGraph(graph);
   }
 
   /**
@@ -609,11 +661,20 @@ public class SimulatorWindow extends JFrame {
   /**
    * Reescribe los elementos de las tablas de los objetos simulados
    */
-  private void refreshTables(Collection<Vehicle> vehicles, Collection<Road> roads,
-                             Collection<Junction> junctions) {
+  private void refreshTables(Collection<VehicleState> vehicles, Collection<RoadState> roads,
+                             Collection<JunctionState> junctions) {
     vehiclesTable.setElements(vehicles);
     roadsTable.setElements(roads);
     junctionsTable.setElements(junctions);
   }
 
+  /**
+   * Actualiza en las tablas sólo las filas de los objetos que han cambiado
+   */
+  private void updateTables(SimulationSnapshot previous, SimulationSnapshot current) {
+    vehiclesTable.updateElements(previous.getVehicles(), current.getVehicles());
+    roadsTable.updateElements(previous.getRoads(), current.getRoads());
+    junctionsTable.updateElements(previous.getJunctions(), current.getJunctions());
+  }
+
 }
\ No newline at end of file
@@ -9,6 +9,10 @@ public class Edge {
   private Node source;
   private Node target;
   private int length;
+  /**
+   * The dots on the edge, sorted by descending location so that dots at the
+   * same location are contiguous
+   */
   private List<Dot> dots;
   private boolean enabled;
 
@@ -22,7 +26,18 @@ public class Edge {
   }
 
   public void addDot(Dot e) {
-    dots.add(e);
+    int i = dots.size();
+    while (i > 0 && dots.get(i - 1).getLocation() < e.getLocation()) {
+      i--;
+    }
+    dots.add(i, e);
+  }
+
+  /**
+   * Removes the dot with the given id, if there is one
+   */
+  public void removeDot(String dotId) {
+    dots.removeIf(d -> d.getId().equals(dotId));
   }
 
   public String getId() {
@@ -49,4 +64,8 @@ public class Edge {
     return enabled;
   }
 
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
 }
@@ -0,0 +1,261 @@
+package es.ucm.fdi.control.layout.graphlayout;
+
+/**
+ * A Fruchterman-Reingold force-directed layout: nodes repel each other, edges
+ * pull their ends together and the maximum displacement of each iteration
+ * (the temperature) decreases until the layout settles. The repulsion between
+ * every pair of nodes is approximated with a Barnes-Hut quadtree, in which a
+ * group of far away nodes acts as a single node at their center of mass, so
+ * each iteration costs O(n log n) instead of O(n^2).
+ * <p>
+ * The layout only works on arrays, so it can run in any thread while the
+ * graph it came from is modified.
+ */
+class ForceDirectedLayout {
+
+  /**
+   * Groups of nodes whose size divided by their distance is below this value
+   * are approximated by their center of mass (0 computes every pair)
+   */
+  static final double DEFAULT_THETA = 0.8;
+
+  private static final int MAX_ITERATIONS = 300;
+  private static final double COOLING = 0.97;
+
+  /**
+   * Strength of the force that pulls every node towards the origin, which
+   * keeps disconnected parts of the graph from drifting apart
+   */
+  private static final double GRAVITY = 0.01;
+
+  /**
+   * Nodes of the quadtree smaller than this are not subdivided (for nodes at
+   * the same position)
+   */
+  private static final double MIN_CELL = 1e-3;
+
+  private final double[] x;
+  private final double[] y;
+  private final int[] sources;
+  private final int[] targets;
+  private final double k;
+  private final double theta;
+  private final double[] dx;
+  private final double[] dy;
+  private double temperature;
+  private int iteration;
+
+  /**
+   * @param x            Initial x coordinate of each node (modified by the layout)
+   * @param y            Initial y coordinate of each node (modified by the layout)
+   * @param sources      Index of the source node of each edge
+   * @param targets      Index of the target node of each edge
+   * @param idealLength  Distance at which the attraction and repulsion between two
+   *                     connected nodes cancel out
+   * @param theta        Accuracy of the Barnes-Hut approximation
+   */
+  ForceDirectedLayout(double[] x, double[] y, int[] sources, int[] targets,
+                      double idealLength, double theta) {
+    this.x = x;
+    this.y = y;
+    this.sources = sources;
+    this.targets = targets;
+    this.k = idealLength;
+    this.theta = theta;
+    dx = new double[x.length];
+    dy = new double[x.length];
+    temperature = idealLength * Math.sqrt(x.length) / 2;
+  }
+
+  /**
+   * Whether the layout has settled
+   */
+  boolean isDone() {
+    return iteration >= MAX_ITERATIONS || temperature < k / 100;
+  }
+
+  /**
+   * Moves every node once
+   */
+  void step() {
+    int n = x.length;
+    if (n == 0) {
+      iteration = MAX_ITERATIONS;
+      return;
+    }
+    Cell root = buildTree();
+    double[] force = new double[2];
+    for (int i = 0; i < n; i++) {
+      force[0] = 0;
+      force[1] = 0;
+      repulsion(root, i, force);
+      dx[i] = force[0] - GRAVITY * x[i];
+      dy[i] = force[1] - GRAVITY * y[i];
+    }
+    for (int e = 0; e < sources.length; e++) {
+      int s = sources[e], t = targets[e];
+      if (s == t) {
+        continue;
+      }
+      double ex = x[s] - x[t], ey = y[s] - y[t];
+      double d = Math.max(MIN_CELL, Math.sqrt(ex * ex + ey * ey));
+      // attraction d^2 / k along the edge
+      double f = d / k;
+      dx[s] -= ex * f;
+      dy[s] -= ey * f;
+      dx[t] += ex * f;
+      dy[t] += ey * f;
+    }
+    for (int i = 0; i < n; i++) {
+      double d = Math.sqrt(dx[i] * dx[i] + dy[i] * dy[i]);
+      if (d > 0) {
+        double limit = Math.min(d, temperature);
+        x[i] += dx[i] / d * limit;
+        y[i] += dy[i] / d * limit;
+      }
+    }
+    temperature *= COOLING;
+    iteration++;
+  }
+
+  double[] getX() {
+    return x;
+  }
+
+  double[] getY() {
+    return y;
+  }
+
+  /**
+   * Adds to force the repulsion k^2 / d exerted on node i by the nodes in the
+   * cell
+   */
+  void repulsion(Cell cell, int i, double[] force) {
+    if (cell == null || cell.count == 0 || (cell.count == 1 && cell.point == i)) {
+      return;
+    }
+    double cx = cell.sumX / cell.count, cy = cell.sumY / cell.count;
+    double ex = x[i] - cx, ey = y[i] - cy;
+    double d2 = ex * ex + ey * ey;
+    if (cell.children == null || 4 * cell.half * cell.half < theta * theta * d2) {
+      int mass = cell.count;
+      if (cell.children == null && cell.contains(i)) {
+        // i is one of the nodes at the same position in this leaf
+        mass--;
+        if (mass == 0) {
+          return;
+        }
+      }
+      if (d2 < MIN_CELL * MIN_CELL) {
+        // Nodes at the same position: push them apart in a direction that
+        // depends on the node
+        ex = Math.cos(i);
+        ey = Math.sin(i);
+        d2 = 1;
+      }
+      // (ex, ey) / d has length 1 and the force is k^2 / d per node
+      double f = mass * k * k / d2;
+      force[0] += ex * f;
+      force[1] += ey * f;
+    } else {
+      for (Cell child : cell.children) {
+        repulsion(child, i, force);
+      }
+    }
+  }
+
+  Cell buildTree() {
+    double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+    double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+    for (int i = 0; i < x.length; i++) {
+      minX = Math.min(minX, x[i]);
+      minY = Math.min(minY, y[i]);
+      maxX = Math.max(maxX, x[i]);
+      maxY = Math.max(maxY, y[i]);
+    }
+    double half = Math.max(MIN_CELL, Math.max(maxX - minX, maxY - minY) / 2) * 1.01;
+    Cell root = new Cell((minX + maxX) / 2, (minY + maxY) / 2, half);
+    for (int i = 0; i < x.length; i++) {
+      root.insert(i);
+    }
+    return root;
+  }
+
+  /**
+   * A square of the quadtree: a leaf with the nodes inside it or an inner
+   * node with four children. Both know how many nodes they contain and the
+   * sum of their coordinates
+   */
+  final class Cell {
+
+    final double centerX;
+    final double centerY;
+    final double half;
+    int count;
+    double sumX;
+    double sumY;
+    Cell[] children;
+    /**
+     * The node in a leaf (the first one if they are at the same position)
+     */
+    int point = -1;
+    /**
+     * More nodes in a leaf too small to be subdivided
+     */
+    int[] others;
+
+    Cell(double centerX, double centerY, double half) {
+      this.centerX = centerX;
+      this.centerY = centerY;
+      this.half = half;
+    }
+
+    void insert(int i) {
+      count++;
+      sumX += x[i];
+      sumY += y[i];
+      if (children != null) {
+        child(i).insert(i);
+      } else if (point == -1) {
+        point = i;
+      } else if (half < MIN_CELL) {
+        int size = others == null ? 0 : others.length;
+        int[] grown = new int[size + 1];
+        if (others != null) {
+          System.arraycopy(others, 0, grown, 0, size);
+        }
+        grown[size] = i;
+        others = grown;
+      } else {
+        double h = half / 2;
+        children = new Cell[]{
+            new Cell(centerX - h, centerY - h, h), new Cell(centerX + h, centerY - h, h),
+            new Cell(centerX - h, centerY + h, h), new Cell(centerX + h, centerY + h, h)
+        };
+        child(point).insert(point);
+        point = -1;
+        child(i).insert(i);
+      }
+    }
+
+    boolean contains(int i) {
+      if (point == i) {
+        return true;
+      }
+      if (others != null) {
+        for (int o : others) {
+          if (o == i) {
+            return true;
+          }
+        }
+      }
+      return false;
+    }
+
+    private Cell child(int i) {
+      return children[(x[i] < centerX ? 0 : 1) + (y[i] < centerY ? 0 : 2)];
+    }
+
+  }
+
+}
@@ -1,24 +1,40 @@
 package es.ucm.fdi.control.layout.graphlayout;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class Graph {
 
   private List<Edge> edges;
   private List<Node> nodes;
+  private Map<String, Edge> edgesById;
+  private Map<String, Node> nodesById;
+
+  /**
+   * Incremented every time a node or an edge is added, so that views can
+   * tell when the static part of the graph has to be laid out again
+   */
+  private int version;
 
   public Graph() {
     edges = new ArrayList<>();
     nodes = new ArrayList<>();
+    edgesById = new HashMap<>();
+    nodesById = new HashMap<>();
   }
 
   public void addEdge(Edge e) {
     edges.add(e);
+    edgesById.put(e.getId(), e);
+    version++;
   }
 
   public void addNode(Node n) {
     nodes.add(n);
+    nodesById.put(n.getId(), n);
+    version++;
   }
 
   public List<Edge> getEdges() {
@@ -30,23 +46,15 @@ public class Graph {
   }
 
   public Node getNode(String id) {
-    Node result = null;
-    for (Node n : nodes) {
-      if (n.getId().equals(id)) {
-        result = n;
-      }
-    }
-    return result;
+    return nodesById.get(id);
   }
 
   public Edge getEdge(String id) {
-    Edge result = null;
-    for (Edge e : edges) {
-      if (e.getId().equals(id)) {
-        result = e;
-      }
-    }
-    return result;
+    return edgesById.get(id);
+  }
+
+  public int getVersion() {
+    return version;
   }
 
 }
@@ -2,8 +2,19 @@ package es.ucm.fdi.control.layout.graphlayout;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
 
 public class GraphComponent extends JComponent {
 
@@ -19,6 +30,36 @@ public class GraphComponent extends JComponent {
    */
   private static final int DOT_RADIUS = 5;
 
+  /**
+   * Distance between consecutive nodes of the circular layout, in world units
+   */
+  private static final double NODE_SPACING = 100;
+
+  /**
+   * Below this scale (pixels per world unit) labels and dots are not drawn
+   * and edges are colored by the density of dots instead
+   */
+  private static final double DETAIL_SCALE = 0.5;
+
+  private static final double MIN_SCALE = 0.001;
+  private static final double MAX_SCALE = 20;
+  private static final double ZOOM_STEP = 1.1;
+
+  /**
+   * Margin around the graph when it is fitted to the component, in pixels
+   */
+  private static final int FIT_MARGIN = 50;
+
+  /**
+   * How often the layout being computed is shown, in milliseconds
+   */
+  private static final long LAYOUT_PUBLISH_INTERVAL = 100;
+
+  /**
+   * Number of finished layouts remembered
+   */
+  private static final int LAYOUT_CACHE_SIZE = 8;
+
   /**
    * Available dot colors for this graph component
    */
@@ -32,24 +73,10 @@ public class GraphComponent extends JComponent {
   };
 
   /**
-   * An inner class that represent a location of a node. Fields cX and cY are
-   * the center of the node, and fields tX and tY are the location where the
-   * label of the node is drawn. This is calculated for each node in the
-   * method {@code calculateNodeCoordinates()}
+   * Colors of the edges with the lowest and highest density when zoomed out
    */
-  private class Point {
-    int cX;
-    int cY;
-    int tX;
-    int tY;
-
-    public Point(int cX, int cY, int tX, int tY) {
-      this.cX = cX;
-      this.cY = cY;
-      this.tX = tX;
-      this.tY = tY;
-    }
-  }
+  private static final Color EMPTY_EDGE_COLOR = new Color(0x009933);
+  private static final Color FULL_EDGE_COLOR = new Color(0xff0000);
 
   /**
    * The graph to layout
@@ -57,27 +84,150 @@ public class GraphComponent extends JComponent {
   private Graph graph;
 
   /**
-   * A map to store the location of each node
+   * A map to store the location of each node, in world coordinates. This is
+   * calculated for each node in the method {@code calculateNodeCoordinates()}
    */
-  private Map<String, Point> nodesPositions;
+  private Map<String, Point2D.Double> nodesPositions;
+
+  /**
+   * Finds the nodes and edges in the visible part of the world
+   */
+  private SpatialIndex index;
+
+  /**
+   * The version of the graph laid out in nodesPositions and index
+   */
+  private int layoutVersion;
+
+  /**
+   * The layout being computed, if any
+   */
+  private LayoutWorker layoutWorker;
+
+  /**
+   * Receives the errors of the layout computation (which leave the circular
+   * layout on screen). By default they are ignored
+   */
+  private Consumer<Throwable> layoutErrorHandler = e -> { };
+
+  /**
+   * Finished layouts by graph topology (see {@code topologyKey()}), so that
+   * loading the same network again doesn't compute it again
+   */
+  private final Map<String, Map<String, Point2D.Double>> layoutCache =
+      new LinkedHashMap<String, Map<String, Point2D.Double>>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Map<String, Point2D.Double>> e) {
+          return size() > LAYOUT_CACHE_SIZE;
+        }
+      };
+
+  /**
+   * The view transformation: a point (x,y) of the world is drawn at
+   * (x * scale + offsetX, y * scale + offsetY)
+   */
+  private double scale;
+  private double offsetX;
+  private double offsetY;
+
+  /**
+   * Whether the view follows the size of the component and the graph. It
+   * stops doing so when the user pans or zooms, until a double click
+   */
+  private boolean autoFit;
 
   /**
    * width and height of the window when it was last resized. When change we
-   * recalculate the location of nodes to scale the graph, etc.
+   * fit the graph again (if autoFit) and redraw the static layer
    */
   private int lastWidth;
   private int lastHeight;
 
+  /**
+   * The visible nodes, edges and labels, which only change when the graph
+   * gets new nodes or edges, the component is resized or the view is moved.
+   * Only the arrows (whose color depends on the traffic lights) and the dots
+   * are drawn on every repaint
+   */
+  private BufferedImage staticLayer;
+
+  /**
+   * Where the last drag event happened
+   */
+  private java.awt.Point dragStart;
+
   public GraphComponent() {
     nodesPositions = new HashMap<>();
     setMinimumSize(new Dimension(500, 500));
     setPreferredSize(new Dimension(500, 500));
     lastWidth = -1;
     lastHeight = -1;
+    scale = 1;
+    autoFit = true;
+    addMouseHandlers();
+  }
+
+  private void addMouseHandlers() {
+    MouseAdapter handler = new MouseAdapter() {
+      @Override
+      public void mousePressed(MouseEvent e) {
+        dragStart = e.getPoint();
+      }
+
+      @Override
+      public void mouseDragged(MouseEvent e) {
+        if (dragStart != null) {
+          offsetX += e.getX() - dragStart.x;
+          offsetY += e.getY() - dragStart.y;
+          dragStart = e.getPoint();
+          viewChanged();
+        }
+      }
+
+      @Override
+      public void mouseWheelMoved(MouseWheelEvent e) {
+        zoom(Math.pow(ZOOM_STEP, -e.getPreciseWheelRotation()), e.getX(), e.getY());
+      }
+
+      @Override
+      public void mouseClicked(MouseEvent e) {
+        if (e.getClickCount() == 2) {
+          autoFit = true;
+          fit();
+          refresh();
+        }
+      }
+    };
+    addMouseListener(handler);
+    addMouseMotionListener(handler);
+    addMouseWheelListener(handler);
+  }
+
+  /**
+   * Zooms in (factor > 1) or out keeping the point (x,y) of the component
+   * over the same point of the world
+   */
+  private void zoom(double factor, int x, int y) {
+    double newScale = Math.max(MIN_SCALE, Math.min(MAX_SCALE, scale * factor));
+    offsetX = x - (x - offsetX) * newScale / scale;
+    offsetY = y - (y - offsetY) * newScale / scale;
+    scale = newScale;
+    viewChanged();
+  }
+
+  private void viewChanged() {
+    autoFit = false;
+    staticLayer = null;
+    refresh();
   }
 
   public void clear() {
+    cancelLayout();
     graph = null;
+    staticLayer = null;
+    autoFit = true;
     refresh();
   }
 
@@ -98,43 +248,48 @@ public class GraphComponent extends JComponent {
 
   private void drawMap(Graphics g) {
 
-    // if the size of the component has changed since the last time we
-    // calculated the positions of the nodes, then we recalculate again.
-    // This way the map get scaled down/up.
+    // if the graph has changed since the last time we calculated the
+    // positions of the nodes, then we recalculate again.
+    if (index == null || layoutVersion != graph.getVersion()) {
+      calculateNodeCoordinates();
+      if (autoFit) {
+        fit();
+      }
+      staticLayer = null;
+    }
+    // if the size of the component has changed the map gets scaled down/up
     if (lastHeight != getHeight() || lastWidth != getWidth()) {
       lastHeight = getHeight();
       lastWidth = getWidth();
-      calculateNodeCoordinates();
+      if (autoFit) {
+        fit();
+      }
+      staticLayer = null;
     }
 
-    // draw nodes
-    for (Node j : graph.getNodes()) {
-      Point p = nodesPositions.get(j.getId());
-      g.setColor(Color.BLUE);
-      g.fillOval(p.cX - NODE_RADIUS / 2, p.cY - NODE_RADIUS / 2,
-          NODE_RADIUS, NODE_RADIUS);
-      g.setColor(Color.BLACK);
-      g.drawString(j.getId(), p.tX, p.tY);
+    Rectangle2D visible = visibleWorld();
+    Collection<Edge> edges = index.edgesIn(visible);
+    if (staticLayer == null) {
+      drawStaticLayer(index.nodesIn(visible), edges);
     }
+    g.drawImage(staticLayer, 0, 0, null);
 
-    // draw edges
-    for (Edge e : graph.getEdges()) {
-      Point p1 = nodesPositions.get(e.getSource().getId());
-      Point p2 = nodesPositions.get(e.getTarget().getId());
+    if (scale < DETAIL_SCALE) {
+      drawDensities(g, edges);
+      return;
+    }
+    for (Edge e : edges) {
+      Point2D.Double p1 = nodesPositions.get(e.getSource().getId());
+      Point2D.Double p2 = nodesPositions.get(e.getTarget().getId());
+      int x1 = screenX(p1.x), y1 = screenY(p1.y);
+      int x2 = screenX(p2.x), y2 = screenY(p2.y);
 
-      // draw the edge
-      //Color arrowColor = Math.random() > 0.5 ? Color.RED : Color.GREEN;
+      // draw the arrow
       Color arrowColor = e.isEnabled() ? Color.GREEN : Color.RED;
-      drawArrowLine(g, p1.cX, p1.cY, p2.cX, p2.cY, 15, 5, Color.BLACK,
-          arrowColor);
-      int idx = (p1.cX + p2.cX) / 2;
-      int idy = (p1.cY + p2.cY) / 2;
-      g.setColor(Color.RED);
-      g.drawString(e.getId(), idx, idy);
+      drawArrow(g, x1, y1, x2, y2, 15, 5, arrowColor);
 
       // draw dots as circles. Dots at the same location are drawn with
-      // circles of
-      // different diameter.
+      // circles of different diameter.
       int lastLocation = -1;
       int diam = DOT_RADIUS;
       for (Dot d : e.getDots()) {
@@ -144,39 +299,274 @@ public class GraphComponent extends JComponent {
         } else {
           diam += DOT_RADIUS;
         }
-        Color dotColor = DOT_COLORS[d.getValue() % DOT_COLORS.length];
-        drawCircleOnALine(g, p1.cX, p1.cY, p2.cX, p2.cY, e.getLength(), d.getLocation(), diam,
+        Color dotColor = DOT_COLORS[Math.floorMod(d.getValue(), DOT_COLORS.length)];
+        drawCircleOnALine(g, x1, y1, x2, y2, e.getLength(), d.getLocation(), diam,
             dotColor, d.getId());
       }
     }
   }
 
   /**
-   * put the objects in a circle, for each one store the center coordinate and
-   * a coordinate for a corresponding text.
+   * Draws the visible nodes, edge lines and (if zoomed in enough) labels into
+   * the static layer
+   */
+  private void drawStaticLayer(Collection<Node> nodes, Collection<Edge> edges) {
+    staticLayer = new BufferedImage(Math.max(1, lastWidth), Math.max(1, lastHeight),
+        BufferedImage.TYPE_INT_ARGB);
+    boolean details = scale >= DETAIL_SCALE;
+    int radius = details ? NODE_RADIUS : Math.max(2, (int) (NODE_RADIUS * scale / DETAIL_SCALE));
+    Graphics2D g = staticLayer.createGraphics();
+    try {
+      g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+          RenderingHints.VALUE_ANTIALIAS_ON);
+      g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
+          RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+      g.setFont(getFont());
+
+      // draw nodes
+      for (Node j : nodes) {
+        Point2D.Double p = nodesPositions.get(j.getId());
+        int cX = screenX(p.x), cY = screenY(p.y);
+        g.setColor(Color.BLUE);
+        g.fillOval(cX - radius / 2, cY - radius / 2, radius, radius);
+        if (details) {
+          g.setColor(Color.BLACK);
+          g.drawString(j.getId(), cX + radius / 2 + 2, cY - radius / 2);
+        }
+      }
+
+      // draw edges
+      for (Edge e : edges) {
+        Point2D.Double p1 = nodesPositions.get(e.getSource().getId());
+        Point2D.Double p2 = nodesPositions.get(e.getTarget().getId());
+        int x1 = screenX(p1.x), y1 = screenY(p1.y);
+        int x2 = screenX(p2.x), y2 = screenY(p2.y);
+        g.setColor(Color.BLACK);
+        g.drawLine(x1, y1, x2, y2);
+        if (details) {
+          g.setColor(Color.RED);
+          g.drawString(e.getId(), (x1 + x2) / 2, (y1 + y2) / 2);
+        }
+      }
+    } finally {
+      g.dispose();
+    }
+  }
+
+  /**
+   * Draws each visible edge with a color between EMPTY_EDGE_COLOR and
+   * FULL_EDGE_COLOR depending on its number of dots per unit of length,
+   * relative to the densest visible edge. Empty edges are left black
+   */
+  private void drawDensities(Graphics g, Collection<Edge> edges) {
+    double maxDensity = 0;
+    for (Edge e : edges) {
+      maxDensity = Math.max(maxDensity, density(e));
+    }
+    if (maxDensity == 0) {
+      return;
+    }
+    for (Edge e : edges) {
+      double density = density(e);
+      if (density > 0) {
+        Point2D.Double p1 = nodesPositions.get(e.getSource().getId());
+        Point2D.Double p2 = nodesPositions.get(e.getTarget().getId());
+        g.setColor(blend(EMPTY_EDGE_COLOR, FULL_EDGE_COLOR, density / maxDensity));
+        g.drawLine(screenX(p1.x), screenY(p1.y), screenX(p2.x), screenY(p2.y));
+      }
+    }
+  }
+
+  private static double density(Edge e) {
+    return (double) e.getDots().size() / Math.max(1, e.getLength());
+  }
+
+  private static Color blend(Color from, Color to, double t) {
+    return new Color(
+        (int) (from.getRed() + (to.getRed() - from.getRed()) * t),
+        (int) (from.getGreen() + (to.getGreen() - from.getGreen()) * t),
+        (int) (from.getBlue() + (to.getBlue() - from.getBlue()) * t));
+  }
+
+  /**
+   * The part of the world shown in the component, with a margin so that
+   * nodes and labels partially inside are not left out
+   */
+  private Rectangle2D visibleWorld() {
+    double margin = (NODE_RADIUS + 100) / scale;
+    return new Rectangle2D.Double(-offsetX / scale - margin, -offsetY / scale - margin,
+        getWidth() / scale + 2 * margin, getHeight() / scale + 2 * margin);
+  }
+
+  private int screenX(double x) {
+    return (int) Math.round(x * scale + offsetX);
+  }
+
+  private int screenY(double y) {
+    return (int) Math.round(y * scale + offsetY);
+  }
+
+  /**
+   * Sets the view so that the whole graph fits in the component
+   */
+  private void fit() {
+    if (nodesPositions.isEmpty()) {
+      return;
+    }
+    double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+    double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+    for (Point2D.Double p : nodesPositions.values()) {
+      minX = Math.min(minX, p.x);
+      minY = Math.min(minY, p.y);
+      maxX = Math.max(maxX, p.x);
+      maxY = Math.max(maxY, p.y);
+    }
+    double width = Math.max(1, getWidth() - 2 * FIT_MARGIN);
+    double height = Math.max(1, getHeight() - 2 * FIT_MARGIN);
+    scale = Math.max(MIN_SCALE, Math.min(MAX_SCALE,
+        Math.min(width / Math.max(1, maxX - minX), height / Math.max(1, maxY - minY))));
+    scale = Math.min(scale, 1);
+    offsetX = getWidth() / 2.0 - (minX + maxX) / 2 * scale;
+    offsetY = getHeight() / 2.0 - (minY + maxY) / 2 * scale;
+    staticLayer = null;
+  }
+
+  /**
+   * Lays out the graph. A layout of the same topology computed before is
+   * reused; otherwise nodes that were already laid out keep their positions,
+   * new ones are put in a circle and a force-directed layout starts from
+   * there in the background, showing its progress as it goes
    */
   private void calculateNodeCoordinates() {
+    cancelLayout();
+    layoutVersion = graph.getVersion();
+    String key = topologyKey();
+    Map<String, Point2D.Double> cached = layoutCache.get(key);
+    if (cached != null) {
+      nodesPositions = new HashMap<>(cached);
+      index = new SpatialIndex(graph, nodesPositions);
+      return;
+    }
+
+    List<Node> nodes = graph.getNodes();
+    int n = nodes.size();
+    double r = Math.max(NODE_SPACING, n * NODE_SPACING / (2 * Math.PI));
+    double slice = 2 * Math.PI / n;
+    String[] ids = new String[n];
+    double[] x = new double[n];
+    double[] y = new double[n];
+    Map<String, Integer> indices = new HashMap<>();
+    for (int i = 0; i < n; i++) {
+      ids[i] = nodes.get(i).getId();
+      indices.put(ids[i], i);
+      Point2D.Double p = nodesPositions.get(ids[i]);
+      x[i] = p != null ? p.x : r * Math.cos(slice * i);
+      y[i] = p != null ? p.y : r * Math.sin(slice * i);
+    }
+    List<Edge> edges = graph.getEdges();
+    int[] sources = new int[edges.size()];
+    int[] targets = new int[edges.size()];
+    for (int e = 0; e < edges.size(); e++) {
+      sources[e] = indices.get(edges.get(e).getSource().getId());
+      targets[e] = indices.get(edges.get(e).getTarget().getId());
+    }
+    setPositions(ids, x, y);
+    layoutWorker = new LayoutWorker(key, ids, new ForceDirectedLayout(x.clone(), y.clone(),
+        sources, targets, NODE_SPACING, ForceDirectedLayout.DEFAULT_THETA));
+    layoutWorker.execute();
+  }
 
-    int r = Math.min(lastHeight, lastWidth) / 2 - NODE_RADIUS - 50; // 50
-    // for
-    // text
-    int tr = (r + NODE_RADIUS + 10);
+  private void setPositions(String[] ids, double[] x, double[] y) {
+    nodesPositions = new HashMap<>();
+    for (int i = 0; i < ids.length; i++) {
+      nodesPositions.put(ids[i], new Point2D.Double(x[i], y[i]));
+    }
+    index = new SpatialIndex(graph, nodesPositions);
+  }
 
-    int xc = lastWidth / 2 - 10;
-    int yc = lastHeight / 2 - 10;
+  private void cancelLayout() {
+    if (layoutWorker != null) {
+      layoutWorker.cancel(false);
+      layoutWorker = null;
+    }
+  }
 
-    double slice = 2 * Math.PI / graph.getNodes().size();
-    int i = 0;
+  /**
+   * Identifies the nodes and edges of the graph, in order
+   */
+  private String topologyKey() {
+    StringBuilder key = new StringBuilder();
     for (Node n : graph.getNodes()) {
+      key.append(n.getId()).append(',');
+    }
+    key.append(';');
+    for (Edge e : graph.getEdges()) {
+      key.append(e.getSource().getId()).append('>').append(e.getTarget().getId()).append(',');
+    }
+    return key.toString();
+  }
 
-      double angle = slice * i;
-      int cX = (int) (xc + r * Math.cos(angle));
-      int cY = (int) (yc + r * Math.sin(angle));
-      int tX = (int) (xc + tr * Math.cos(angle));
-      int tY = (int) (yc + tr * Math.sin(angle));
+  /**
+   * Runs a force-directed layout outside the event dispatch thread,
+   * publishing the positions from time to time
+   */
+  private class LayoutWorker extends SwingWorker<double[][], double[][]> {
+
+    private final String key;
+    private final String[] ids;
+    private final ForceDirectedLayout layout;
 
-      nodesPositions.put(n.getId(), new Point(cX, cY, tX, tY));
-      i++;
+    LayoutWorker(String key, String[] ids, ForceDirectedLayout layout) {
+      this.key = key;
+      this.ids = ids;
+      this.layout = layout;
+    }
+
+    @Override
+    protected double[][] doInBackground() {
+      long lastPublish = System.currentTimeMillis();
+      while (!layout.isDone() && !isCancelled()) {
+        layout.step();
+        if (System.currentTimeMillis() - lastPublish >= LAYOUT_PUBLISH_INTERVAL) {
+          publish(new double[][]{layout.getX().clone(), layout.getY().clone()});
+          lastPublish = System.currentTimeMillis();
+        }
+      }
+      return new double[][]{layout.getX(), layout.getY()};
+    }
+
+    @Override
+    protected void process(List<double[][]> chunks) {
+      if (layoutWorker == this) {
+        double[][] last = chunks.get(chunks.size() - 1);
+        show(last[0], last[1]);
+      }
+    }
+
+    @Override
+    protected void done() {
+      if (layoutWorker != this || isCancelled()) {
+        return;
+      }
+      try {
+        double[][] result = get();
+        show(result[0], result[1]);
+        layoutCache.put(key, new HashMap<>(nodesPositions));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (ExecutionException e) {
+        layoutErrorHandler.accept(e.getCause());
+      }
+      layoutWorker = null;
+    }
+
+    private void show(double[] x, double[] y) {
+      setPositions(ids, x, y);
+      if (autoFit) {
+        fit();
+      }
+      staticLayer = null;
+      refresh();
     }
 
   }
@@ -222,12 +612,11 @@ public class GraphComponent extends JComponent {
   }
 
   /**
-   * Draws a line from (x1,y1) to (x2,y2) with an arrow of width d and height
-   * h. The color of the line is lineColor and that of the arrow is
-   * arrowColor.
+   * Draws an arrow of width d and height h at the end (x2,y2) of the line
+   * from (x1,y1). The line itself is part of the static layer.
    */
-  private void drawArrowLine(Graphics g, int x1, int y1, int x2, int y2,
-                             int d, int h, Color lineColor, Color arrowColor) {
+  private void drawArrow(Graphics g, int x1, int y1, int x2, int y2,
+                         int d, int h, Color arrowColor) {
     int dx = x2 - x1, dy = y2 - y1;
     double D = Math.sqrt(dx * dx + dy * dy);
     double xm = D - d, xn = xm, ym = h, yn = -h, x;
@@ -244,15 +633,19 @@ public class GraphComponent extends JComponent {
     int[] xpoints = {x2, (int) xm, (int) xn};
     int[] ypoints = {y2, (int) ym, (int) yn};
 
-    g.setColor(lineColor);
-    g.drawLine(x1, y1, x2, y2);
     g.setColor(arrowColor);
     g.fillPolygon(xpoints, ypoints, 3);
   }
 
+  /**
+   * Sets the graph to draw. A graph that is updated in place only needs
+   * {@link #refresh()}: new nodes and edges are detected on the next repaint.
+   */
   public void setGraph(Graph graph) {
+    cancelLayout();
     this.graph = graph;
-    calculateNodeCoordinates();
+    index = null;
+    staticLayer = null;
     refresh();
   }
 
@@ -260,4 +653,12 @@ public class GraphComponent extends JComponent {
     repaint();
   }
 
+  /**
+   * Sets who receives the errors of the layout computation, which are
+   * otherwise ignored. It is called on the event dispatch thread
+   */
+  public void setLayoutErrorHandler(Consumer<Throwable> handler) {
+    layoutErrorHandler = handler;
+  }
+
 }
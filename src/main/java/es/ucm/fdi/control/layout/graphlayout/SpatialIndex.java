@@ -0,0 +1,129 @@
+package es.ucm.fdi.control.layout.graphlayout;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.*;
+import java.util.function.IntConsumer;
+
+/**
+ * A uniform grid over the nodes and edges of a graph, used to find the ones
+ * that intersect a rectangle (the visible part of the map) without looking at
+ * the rest. Each node is stored in the cell that contains it and each edge in
+ * every cell its segment crosses.
+ */
+class SpatialIndex {
+
+  private final double minX;
+  private final double minY;
+  private final double cellSize;
+  private final int columns;
+  private final int rows;
+  private final List<List<Node>> nodeCells;
+  private final List<List<Edge>> edgeCells;
+
+  /**
+   * @param graph     The graph to index
+   * @param positions The position of each node, by id
+   */
+  SpatialIndex(Graph graph, Map<String, Point2D.Double> positions) {
+    double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+    double x0 = Double.POSITIVE_INFINITY, y0 = Double.POSITIVE_INFINITY;
+    for (Point2D.Double p : positions.values()) {
+      x0 = Math.min(x0, p.x);
+      y0 = Math.min(y0, p.y);
+      maxX = Math.max(maxX, p.x);
+      maxY = Math.max(maxY, p.y);
+    }
+    if (positions.isEmpty()) {
+      x0 = y0 = maxX = maxY = 0;
+    }
+    minX = x0;
+    minY = y0;
+    // About one node per cell
+    int side = (int) Math.ceil(Math.sqrt(Math.max(1, graph.getNodes().size())));
+    cellSize = Math.max(1, Math.max(maxX - minX, maxY - minY) / side);
+    columns = (int) ((maxX - minX) / cellSize) + 1;
+    rows = (int) ((maxY - minY) / cellSize) + 1;
+    nodeCells = new ArrayList<>(columns * rows);
+    edgeCells = new ArrayList<>(columns * rows);
+    for (int i = 0; i < columns * rows; i++) {
+      nodeCells.add(new ArrayList<>());
+      edgeCells.add(new ArrayList<>());
+    }
+
+    for (Node n : graph.getNodes()) {
+      Point2D.Double p = positions.get(n.getId());
+      nodeCells.get(row(p.y) * columns + column(p.x)).add(n);
+    }
+    for (Edge e : graph.getEdges()) {
+      addEdge(e, positions.get(e.getSource().getId()), positions.get(e.getTarget().getId()));
+    }
+  }
+
+  /**
+   * Adds the edge to the cells crossed by the segment from p1 to p2: for each
+   * row of cells, the columns between the points where the segment enters and
+   * leaves the row
+   */
+  private void addEdge(Edge e, Point2D.Double p1, Point2D.Double p2) {
+    double top = Math.min(p1.y, p2.y);
+    double bottom = Math.max(p1.y, p2.y);
+    for (int r = row(top); r <= row(bottom); r++) {
+      double from = Math.max(top, minY + r * cellSize);
+      double to = Math.min(bottom, minY + (r + 1) * cellSize);
+      double xFrom = p1.y == p2.y ? p1.x : xAt(p1, p2, from);
+      double xTo = p1.y == p2.y ? p2.x : xAt(p1, p2, to);
+      int last = column(Math.max(xFrom, xTo));
+      for (int c = column(Math.min(xFrom, xTo)); c <= last; c++) {
+        edgeCells.get(r * columns + c).add(e);
+      }
+    }
+  }
+
+  private static double xAt(Point2D.Double p1, Point2D.Double p2, double y) {
+    return p1.x + (p2.x - p1.x) * (y - p1.y) / (p2.y - p1.y);
+  }
+
+  private int column(double x) {
+    return Math.max(0, Math.min(columns - 1, (int) ((x - minX) / cellSize)));
+  }
+
+  private int row(double y) {
+    return Math.max(0, Math.min(rows - 1, (int) ((y - minY) / cellSize)));
+  }
+
+  /**
+   * Returns the nodes in the cells that intersect the rectangle
+   */
+  List<Node> nodesIn(Rectangle2D area) {
+    List<Node> result = new ArrayList<>();
+    forEachCell(area, i -> result.addAll(nodeCells.get(i)));
+    return result;
+  }
+
+  /**
+   * Returns the edges that cross the cells that intersect the rectangle, each
+   * of them once
+   */
+  Collection<Edge> edgesIn(Rectangle2D area) {
+    Set<Edge> result = new LinkedHashSet<>();
+    forEachCell(area, i -> result.addAll(edgeCells.get(i)));
+    return result;
+  }
+
+  private void forEachCell(Rectangle2D area, IntConsumer visitor) {
+    if (area.getMaxX() < minX || area.getMaxY() < minY
+        || area.getMinX() > minX + columns * cellSize
+        || area.getMinY() > minY + rows * cellSize) {
+      return;
+    }
+    int lastRow = row(area.getMaxY());
+    int lastColumn = column(area.getMaxX());
+    for (int r = row(area.getMinY()); r <= lastRow; r++) {
+      for (int c = column(area.getMinX()); c <= lastColumn; c++) {
+        visitor.accept(r * columns + c);
+      }
+    }
+  }
+
+}
@@ -4,13 +4,18 @@ import es.ucm.fdi.ini.IniSection;
 import es.ucm.fdi.model.Describable;
 import es.ucm.fdi.model.TrafficSimulator;
 
+import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 
 /**
- * Clase que representa un evento abstracto en la simulación
+ * Clase que representa un evento abstracto en la simulación. Es serializable para guardar los
+ * eventos pendientes en los puntos de control del simulador
  */
-public abstract class Event implements Describable {
+public abstract class Event implements Describable, Serializable {
+
+  private static final long serialVersionUID = 1L;
 
   /**
    * Títulos de la descripción
@@ -71,11 +76,24 @@ public abstract class Event implements Describable {
      */
     String getEventFileTemplate();
 
+    /**
+     * Devuelve la etiqueta de las secciones de las que construye eventos
+     */
+    String getSectionTag();
+
+    /**
+     * Devuelve el valor de la clave type de las secciones de las que construye eventos (null si
+     * no deben tenerla)
+     */
+    default String getType() {
+      return null;
+    }
+
     /**
      * Comprueba que el tipo especificado sea el mismo que la subclase de Event concreta
      */
     default boolean matchesType(IniSection section) {
-      return section.getValue("type") == null;
+      return Objects.equals(getType(), section.getValue("type"));
     }
 
     /**
@@ -2,6 +2,12 @@ package es.ucm.fdi.events;
 
 import es.ucm.fdi.ini.IniSection;
 
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
 /**
  * Constructora de eventos
  */
@@ -20,23 +26,74 @@ public class EventBuilder {
       new MakeVehicleFaultyEvent.Builder()
   };
 
+  /**
+   * Constructoras por etiqueta de sección y valor de la clave type (null si no tiene)
+   */
+  private static final Map<String, Map<String, Event.Builder>> BUILDERS = new HashMap<>();
+
+  // Secciones que parsea cada tarea por cada hilo (para equilibrar la carga)
+  private static final int CHUNKS_PER_THREAD = 8;
+
+  static {
+    for (Event.Builder builder : SUPPORTED_EVENTS) {
+      BUILDERS.computeIfAbsent(builder.getSectionTag(), tag -> new HashMap<>())
+          .put(builder.getType(), builder);
+    }
+  }
+
   /**
    * Dado un ini decide de qué evento se trata (null si no se corresponde con ninguno) y lo
    * devuelve ya creado
    */
   public static Event parse(IniSection section) throws IllegalStateException {
-    int i = 0;
-    Event result = null;
+    Map<String, Event.Builder> types = BUILDERS.get(section.getTag());
+    Event.Builder builder = types == null ? null : types.get(section.getValue("type"));
+    if (builder == null) {
+      return null;
+    }
     try {
-      while (i < SUPPORTED_EVENTS.length && result == null) {
-        result = SUPPORTED_EVENTS[i].parse(section);
-        i++;
-      }
+      return builder.parse(section);
     } catch (IllegalArgumentException e) {
       throw new IllegalStateException(
           "Something went wrong while parsing section\n" + section + "\n" + e.getMessage(), e);
     }
-    return result;
+  }
+
+  /**
+   * Igual que {@link #parse(IniSection)} para todas las secciones de la lista, repartiéndolas en
+   * bloques entre los hilos del ejecutor. El resultado está en el mismo orden que las secciones
+   * y, si alguna falla, se lanza el error de la primera de ellas
+   */
+  public static List<Event> parseAll(List<IniSection> sections, ExecutorService executor,
+                                     int parallelism) throws IllegalStateException {
+    Event[] events = new Event[sections.size()];
+    int chunkSize = Math.max(1, sections.size() / (parallelism * CHUNKS_PER_THREAD));
+    List<Callable<Void>> chunks = new ArrayList<>();
+    for (int from = 0; from < sections.size(); from += chunkSize) {
+      int start = from;
+      int end = Math.min(sections.size(), from + chunkSize);
+      chunks.add(() -> {
+        for (int i = start; i < end; i++) {
+          events[i] = parse(sections.get(i));
+        }
+        return null;
+      });
+    }
+    try {
+      // Los bloques están en orden, así que el primer error es el de la primera sección que falla
+      for (Future<Void> chunk : executor.invokeAll(chunks)) {
+        chunk.get();
+      }
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while parsing events", e);
+    }
+    return Arrays.asList(events);
   }
 
 }
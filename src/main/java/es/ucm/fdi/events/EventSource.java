@@ -0,0 +1,19 @@
+package es.ucm.fdi.events;
+
+import java.io.Closeable;
+
+/**
+ * Fuente de eventos que el simulador lee a medida que los necesita, en lugar de tenerlos todos
+ * cargados desde el principio
+ */
+public interface EventSource extends Closeable {
+
+  /**
+   * Devuelve el siguiente evento o null si no quedan más. Los eventos deben venir ordenados por
+   * tiempo (salvo dentro de la ventana de lectura del simulador)
+   *
+   * @throws IllegalStateException si no se ha podido leer o construir el evento
+   */
+  Event next();
+
+}
@@ -0,0 +1,45 @@
+package es.ucm.fdi.events;
+
+import es.ucm.fdi.ini.IniError;
+import es.ucm.fdi.ini.IniSection;
+import es.ucm.fdi.ini.MappedIniReader;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Fuente que va construyendo los eventos de un fichero ini sección a sección
+ */
+public class IniEventSource implements EventSource {
+
+  private final MappedIniReader reader;
+
+  public IniEventSource(File file) throws IOException {
+    reader = new MappedIniReader(file);
+  }
+
+  @Override
+  public Event next() {
+    IniSection section;
+    try {
+      section = reader.next();
+    } catch (IOException | IniError e) {
+      throw new IllegalStateException(
+          "Something went wrong while reading ini file\n" + e.getMessage(), e);
+    }
+    if (section == null) {
+      return null;
+    }
+    Event event = EventBuilder.parse(section);
+    if (event == null) {
+      throw new IllegalStateException("Event not recognized\n" + section);
+    }
+    return event;
+  }
+
+  @Override
+  public void close() throws IOException {
+    reader.close();
+  }
+
+}
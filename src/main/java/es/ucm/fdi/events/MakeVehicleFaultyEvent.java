@@ -5,6 +5,8 @@ import es.ucm.fdi.model.TrafficSimulator;
 
 public class MakeVehicleFaultyEvent extends Event {
 
+  private static final long serialVersionUID = 1L;
+
   private static final String SECTION_TAG_NAME = "make_vehicle_faulty";
   private static final String[] ATTRIBUTES = {"time", "vehicles", "duration"};
 
@@ -33,7 +35,7 @@ public class MakeVehicleFaultyEvent extends Event {
 
     @Override
     public Event parse(IniSection section) {
-      if (!section.getTag().equals(SECTION_TAG_NAME)) {
+      if (!section.getTag().equals(getSectionTag())) {
         return null;
       }
       int time = parsePositiveInt(section, ATTRIBUTES[0], 0);
@@ -42,6 +44,11 @@ public class MakeVehicleFaultyEvent extends Event {
       return new MakeVehicleFaultyEvent(time, "", vehicles, duration);
     }
 
+    @Override
+    public String getSectionTag() {
+      return SECTION_TAG_NAME;
+    }
+
     @Override
     public String getEventName() {
       return "Make Vehicle Faulty";
@@ -6,6 +6,8 @@ import es.ucm.fdi.model.TrafficSimulator;
 
 public class NewBicycleEvent extends NewVehicleEvent {
 
+  private static final long serialVersionUID = 1L;
+
   private static final String FRIENDLY_CLASS_NAME = "New Bike";
 
   NewBicycleEvent(int time, String id, int maxSpeed, String[] itinerary) {
@@ -14,7 +16,7 @@ public class NewBicycleEvent extends NewVehicleEvent {
 
   @Override
   public void execute(TrafficSimulator simulator) {
-    simulator.addSimulatedObject(new Bicycle(id, maxSpeed, simulator.getPath(itinerary)));
+    simulator.addSimulatedObject(new Bicycle(id, maxSpeed, getItinerary(simulator)));
   }
 
   @Override
@@ -25,8 +27,8 @@ public class NewBicycleEvent extends NewVehicleEvent {
   static class Builder extends NewVehicleEvent.Builder {
 
     @Override
-    public boolean matchesType(IniSection section) {
-      return Bicycle.TYPE.equals(section.getValue("type"));
+    public String getType() {
+      return Bicycle.TYPE;
     }
 
     @Override
@@ -6,6 +6,8 @@ import es.ucm.fdi.model.TrafficSimulator;
 
 public class NewCarEvent extends NewVehicleEvent {
 
+  private static final long serialVersionUID = 1L;
+
   private static final String FRIENDLY_CLASS_NAME = "New Car";
   private static final String[] ATTRIBUTES = {"resistance", "fault_probability",
       "max_fault_duration", "seed"};
@@ -27,7 +29,7 @@ public class NewCarEvent extends NewVehicleEvent {
 
   @Override
   public void execute(TrafficSimulator simulator) {
-    simulator.addSimulatedObject(new Car(id, maxSpeed, simulator.getPath(itinerary),
+    simulator.addSimulatedObject(new Car(id, maxSpeed, getItinerary(simulator),
         resistance, faultProbability, maxFaultDuration, seed));
   }
 
@@ -39,8 +41,8 @@ public class NewCarEvent extends NewVehicleEvent {
   static class Builder extends NewVehicleEvent.Builder {
 
     @Override
-    public boolean matchesType(IniSection section) {
-      return Car.TYPE.equals(section.getValue("type"));
+    public String getType() {
+      return Car.TYPE;
     }
 
     @Override
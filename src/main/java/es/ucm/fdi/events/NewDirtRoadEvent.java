@@ -6,6 +6,8 @@ import es.ucm.fdi.model.TrafficSimulator;
 
 public class NewDirtRoadEvent extends NewRoadEvent {
 
+  private static final long serialVersionUID = 1L;
+
   private static final String FRIENDLY_CLASS_NAME = "New Dirt Road";
 
   NewDirtRoadEvent(int time, String id, String sourceId, String destinationId, int maxSpeed,
@@ -27,8 +29,8 @@ public class NewDirtRoadEvent extends NewRoadEvent {
 
 
     @Override
-    public boolean matchesType(IniSection section) {
-      return DirtRoad.TYPE.equals(section.getValue("type"));
+    public String getType() {
+      return DirtRoad.TYPE;
     }
 
     @Override
@@ -6,6 +6,8 @@ import es.ucm.fdi.model.TrafficSimulator;
 
 public class NewJunctionEvent extends Event {
 
+  private static final long serialVersionUID = 1L;
+
   private static final String FRIENDLY_CLASS_NAME = "New Junction";
   protected static final String SECTION_TAG_NAME = "new_junction";
   protected static final String[] ATTRIBUTES = {"time", "id"};
@@ -28,7 +30,7 @@ public class NewJunctionEvent extends Event {
 
     @Override
     public Event parse(IniSection section) {
-      if (!section.getTag().equals(SECTION_TAG_NAME) || !matchesType(section)) {
+      if (!section.getTag().equals(getSectionTag()) || !matchesType(section)) {
         return null;
       }
       int time = parsePositiveInt(section, ATTRIBUTES[0], 0);
@@ -40,6 +42,11 @@ public class NewJunctionEvent extends Event {
       return new NewJunctionEvent(time, id);
     }
 
+    @Override
+    public String getSectionTag() {
+      return SECTION_TAG_NAME;
+    }
+
     @Override
     public String getEventName() {
       return FRIENDLY_CLASS_NAME;
@@ -6,6 +6,8 @@ import es.ucm.fdi.model.TrafficSimulator;
 
 public class NewLaneRoadEvent extends NewRoadEvent {
 
+  private static final long serialVersionUID = 1L;
+
   private static final String FRIENDLY_CLASS_NAME = "New Lane Road";
   private static final String[] ATTRIBUTES = {"lanes"};
 
@@ -31,8 +33,8 @@ public class NewLaneRoadEvent extends NewRoadEvent {
   static class Builder extends NewRoadEvent.Builder {
 
     @Override
-    public boolean matchesType(IniSection section) {
-      return LaneRoad.TYPE.equals(section.getValue("type"));
+    public String getType() {
+      return LaneRoad.TYPE;
     }
 
     @Override
@@ -6,6 +6,8 @@ import es.ucm.fdi.model.TrafficSimulator;
 
 public class NewMostCrowdedJunctionEvent extends NewJunctionEvent {
 
+  private static final long serialVersionUID = 1L;
+
   private static final String FRIENDLY_CLASS_NAME = "New MC Junction";
 
   NewMostCrowdedJunctionEvent(int time, String id) {
@@ -25,8 +27,8 @@ public class NewMostCrowdedJunctionEvent extends NewJunctionEvent {
   static class Builder extends NewJunctionEvent.Builder {
 
     @Override
-    public boolean matchesType(IniSection section) {
-      return MostCrowdedJunction.TYPE.equals(section.getValue("type"));
+    public String getType() {
+      return MostCrowdedJunction.TYPE;
     }
 
     @Override
@@ -6,6 +6,8 @@ import es.ucm.fdi.model.TrafficSimulator;
 
 public class NewRoadEvent extends Event {
 
+  private static final long serialVersionUID = 1L;
+
   private static final String FRIENDLY_CLASS_NAME = "New Road";
   protected static final String SECTION_TAG_NAME = "new_road";
   protected static final String[] ATTRIBUTES = {"time", "id", "src", "dest", "max_speed", "length"};
@@ -38,7 +40,7 @@ public class NewRoadEvent extends Event {
 
     @Override
     public Event parse(IniSection section) {
-      if (!section.getTag().equals(SECTION_TAG_NAME) || !matchesType(section)) {
+      if (!section.getTag().equals(getSectionTag()) || !matchesType(section)) {
         return null;
       }
       int time = parsePositiveInt(section, ATTRIBUTES[0], 0);
@@ -55,6 +57,11 @@ public class NewRoadEvent extends Event {
       return new NewRoadEvent(time, id, src, dest, maxSpeed, length);
     }
 
+    @Override
+    public String getSectionTag() {
+      return SECTION_TAG_NAME;
+    }
+
     @Override
     public String getEventName() {
       return FRIENDLY_CLASS_NAME;
@@ -6,6 +6,8 @@ import es.ucm.fdi.model.TrafficSimulator;
 
 public class NewRoundRobinJunctionEvent extends NewJunctionEvent {
 
+  private static final long serialVersionUID = 1L;
+
   private static final String FRIENDLY_CLASS_NAME = "New RR Junction";
   private static final String[] ATTRIBUTES = {"min_time_slice", "max_time_slice"};
 
@@ -31,8 +33,8 @@ public class NewRoundRobinJunctionEvent extends NewJunctionEvent {
   static class Builder extends NewJunctionEvent.Builder {
 
     @Override
-    public boolean matchesType(IniSection section) {
-      return RoundRobinJunction.TYPE.equals(section.getValue("type"));
+    public String getType() {
+      return RoundRobinJunction.TYPE;
     }
 
     @Override
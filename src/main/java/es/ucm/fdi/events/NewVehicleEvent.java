@@ -1,17 +1,30 @@
 package es.ucm.fdi.events;
 
 import es.ucm.fdi.ini.IniSection;
+import es.ucm.fdi.model.Junction;
 import es.ucm.fdi.model.TrafficSimulator;
 import es.ucm.fdi.model.Vehicle;
 
+import java.util.Queue;
+
 public class NewVehicleEvent extends Event {
 
+  private static final long serialVersionUID = 1L;
+
   private static final String FRIENDLY_CLASS_NAME = "New Vehicle";
   protected static final String SECTION_TAG_NAME = "new_vehicle";
   protected static final String[] ATTRIBUTES = {"time", "id", "max_speed", "itinerary"};
+  /**
+   * Claves que pueden sustituir a itinerary para que se calcule el itinerario más rápido
+   */
+  protected static final String[] ROUTE_ATTRIBUTES = {"origin", "destination"};
 
   protected int maxSpeed;
   protected String[] itinerary;
+  /**
+   * Si es cierto, itinerary sólo contiene el origen y el destino
+   */
+  protected boolean shortestPath;
 
   NewVehicleEvent(int time, String id, int maxSpeed, String[] itinerary) {
     super(time, id);
@@ -21,7 +34,17 @@ public class NewVehicleEvent extends Event {
 
   @Override
   public void execute(TrafficSimulator simulator) {
-    simulator.addSimulatedObject(new Vehicle(id, maxSpeed, simulator.getPath(itinerary)));
+    simulator.addSimulatedObject(new Vehicle(id, maxSpeed, getItinerary(simulator)));
+  }
+
+  /**
+   * Devuelve el itinerario del vehículo, calculándolo si sólo se indicaron el origen y el destino
+   */
+  protected Queue<Junction> getItinerary(TrafficSimulator simulator) {
+    if (shortestPath) {
+      return simulator.getShortestPath(itinerary[0], itinerary[1]);
+    }
+    return simulator.getPath(itinerary);
   }
 
   @Override
@@ -33,14 +56,21 @@ public class NewVehicleEvent extends Event {
 
     @Override
     public Event parse(IniSection section) {
-      if (!section.getTag().equals(SECTION_TAG_NAME) || !matchesType(section)) {
+      if (!section.getTag().equals(getSectionTag()) || !matchesType(section)) {
         return null;
       }
       int time = parsePositiveInt(section, ATTRIBUTES[0], 0);
       String id = getId(section);
       int maxSpeed = parsePositiveInt(section, ATTRIBUTES[2]);
-      String[] itinerary = parseIdList(section, ATTRIBUTES[3], 2);
-      return parseType(section, time, id, maxSpeed, itinerary);
+      boolean shortestPath = section.getValue(ATTRIBUTES[3]) == null
+          && section.getValue(ROUTE_ATTRIBUTES[0]) != null;
+      String[] itinerary = shortestPath
+          ? new String[]{parseString(section, ROUTE_ATTRIBUTES[0]),
+          parseString(section, ROUTE_ATTRIBUTES[1])}
+          : parseIdList(section, ATTRIBUTES[3], 2);
+      NewVehicleEvent event = parseType(section, time, id, maxSpeed, itinerary);
+      event.shortestPath = shortestPath;
+      return event;
     }
 
     public NewVehicleEvent parseType(IniSection section, int time, String id, int maxSpeed,
@@ -48,6 +78,11 @@ public class NewVehicleEvent extends Event {
       return new NewVehicleEvent(time, id, maxSpeed, itinerary);
     }
 
+    @Override
+    public String getSectionTag() {
+      return SECTION_TAG_NAME;
+    }
+
     @Override
     public String getEventName() {
       return FRIENDLY_CLASS_NAME;
@@ -0,0 +1,79 @@
+package es.ucm.fdi.ini;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An {@link IniWriter} that builds {@link IniSection}s in memory instead of writing text, so
+ * that code written against {@link IniWriter} can also produce sections without formatting and
+ * parsing them again.
+ */
+public class IniSectionWriter extends IniWriter {
+
+  private final List<IniSection> sections;
+  private IniSection current;
+  private String key;
+  private final StringBuilder value;
+
+  public IniSectionWriter() {
+    sections = new ArrayList<>();
+    value = new StringBuilder();
+  }
+
+  /**
+   * Returns the sections written so far, in order
+   */
+  public List<IniSection> getSections() {
+    return Collections.unmodifiableList(sections);
+  }
+
+  @Override
+  public void beginSection(String tag) {
+    current = new IniSection(tag);
+    sections.add(current);
+  }
+
+  @Override
+  public void endSection() {
+    current = null;
+  }
+
+  @Override
+  public IniWriter key(String key) {
+    if (current == null) {
+      throw new IllegalStateException("Key " + key + " written outside a section");
+    }
+    this.key = key;
+    value.setLength(0);
+    return this;
+  }
+
+  @Override
+  public IniWriter append(String text) {
+    value.append(text);
+    return this;
+  }
+
+  @Override
+  public IniWriter append(char c) {
+    value.append(c);
+    return this;
+  }
+
+  @Override
+  public IniWriter append(int number) {
+    value.append(number);
+    return this;
+  }
+
+  @Override
+  public void endValue() {
+    current.setValue(key, value.toString());
+  }
+
+  @Override
+  public void flush() {
+  }
+
+}
@@ -0,0 +1,190 @@
+package es.ucm.fdi.ini;
+
+import java.io.*;
+
+/**
+ * A streaming generator of INI files.
+ * <p>
+ * Sections are written directly into a buffered {@link Writer}, without building any
+ * {@link Ini} or {@link IniSection} in memory, using the same layout as
+ * {@link Ini#store(OutputStream)}. Values may be written at once with
+ * {@link #setValue(String, String)} or piece by piece between {@link #key(String)} and
+ * {@link #endValue()}.
+ * <p>
+ * As it is meant to be used while generating reports, I/O errors are thrown as
+ * {@link UncheckedIOException}.
+ */
+public class IniWriter implements Flushable {
+
+  private static final int BUFFER_SIZE = 1 << 16;
+  private static final String LINE_SEPARATOR = System.lineSeparator();
+
+  private final Writer out;
+
+  /**
+   * Scratch buffer used to write numbers without creating strings
+   */
+  private final char[] digits = new char[11];
+
+  /**
+   * Creates a generator that writes into an {@link OutputStream} (which is never closed)
+   *
+   * @param out An output stream to which sections are written
+   */
+  public IniWriter(OutputStream out) {
+    this(new OutputStreamWriter(out));
+  }
+
+  /**
+   * Creates a generator that writes into a {@link Writer}
+   *
+   * @param out A writer to which sections are written
+   */
+  public IniWriter(Writer out) {
+    this.out = new BufferedWriter(out, BUFFER_SIZE);
+  }
+
+  /**
+   * Creates a generator without any output, for subclasses that override all the methods that
+   * write (see {@link IniSectionWriter})
+   */
+  protected IniWriter() {
+    out = null;
+  }
+
+  /**
+   * Starts a new section
+   *
+   * @param tag The tag of the section
+   */
+  public void beginSection(String tag) {
+    write('[');
+    write(tag);
+    write(']');
+    write(LINE_SEPARATOR);
+  }
+
+  /**
+   * Ends the current section
+   */
+  public void endSection() {
+    write(LINE_SEPARATOR);
+  }
+
+  /**
+   * Writes a whole key-value line
+   *
+   * @param key   The key
+   * @param value The value
+   */
+  public void setValue(String key, String value) {
+    key(key).append(value).endValue();
+  }
+
+  /**
+   * Writes a whole key-value line
+   *
+   * @param key   The key
+   * @param value The value
+   */
+  public void setValue(String key, int value) {
+    key(key).append(value).endValue();
+  }
+
+  /**
+   * Starts a key-value line. Its value is written with the {@code append} methods until
+   * {@link #endValue()} is called
+   *
+   * @param key The key
+   * @return this generator
+   */
+  public IniWriter key(String key) {
+    write(key);
+    write(" = ");
+    return this;
+  }
+
+  /**
+   * Appends some text to the current value
+   *
+   * @return this generator
+   */
+  public IniWriter append(String text) {
+    write(text);
+    return this;
+  }
+
+  /**
+   * Appends a character to the current value
+   *
+   * @return this generator
+   */
+  public IniWriter append(char c) {
+    write(c);
+    return this;
+  }
+
+  /**
+   * Appends a number to the current value
+   *
+   * @return this generator
+   */
+  public IniWriter append(int number) {
+    if (number == Integer.MIN_VALUE) {
+      write(Integer.toString(number));
+      return this;
+    }
+    boolean negative = number < 0;
+    int n = negative ? -number : number;
+    int i = digits.length;
+    do {
+      digits[--i] = (char) ('0' + n % 10);
+      n /= 10;
+    } while (n > 0);
+    if (negative) {
+      digits[--i] = '-';
+    }
+    try {
+      out.write(digits, i, digits.length - i);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return this;
+  }
+
+  /**
+   * Ends the current key-value line
+   */
+  public void endValue() {
+    write(LINE_SEPARATOR);
+  }
+
+  /**
+   * Writes all buffered data into the underlying writer
+   */
+  @Override
+  public void flush() {
+    try {
+      out.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void write(String s) {
+    try {
+      out.write(s);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void write(char c) {
+    try {
+      out.write(c);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+}
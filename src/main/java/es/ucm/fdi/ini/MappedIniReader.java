@@ -0,0 +1,213 @@
+package es.ucm.fdi.ini;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A streaming reader of INI files.
+ * <p>
+ * Unlike {@link Ini}, which keeps every section in memory, this reader maps the file into
+ * memory window by window and returns its sections one at a time, so very large files can be
+ * processed using a bounded amount of heap. Lines are tokenized by hand, without regular
+ * expressions, but the accepted syntax is exactly that of {@link Ini#load(InputStream)}:
+ * comments, blank lines, sections whose tag starts with '!' (which are skipped) and key-value
+ * lines.
+ */
+public class MappedIniReader implements Closeable {
+
+  private static final long DEFAULT_WINDOW_SIZE = 1L << 26;
+
+  private final FileChannel channel;
+  private final long fileSize;
+  private final long windowSize;
+  private final Charset charset;
+
+  /**
+   * The mapped region of the file currently being read
+   */
+  private MappedByteBuffer window;
+  private long windowEnd;
+
+  /**
+   * The bytes of the current line (without its terminator)
+   */
+  private byte[] line = new byte[256];
+  private int lineLength;
+
+  /**
+   * Whether a '\n' following a '\r' must be skipped
+   */
+  private boolean skipLF;
+
+  /**
+   * The section whose key-value lines are being read
+   */
+  private IniSection current;
+
+  /**
+   * Opens an INI file
+   *
+   * @param path The file to be read
+   * @throws IOException Exceptions thrown when opening the file
+   */
+  public MappedIniReader(Path path) throws IOException {
+    this(path, DEFAULT_WINDOW_SIZE);
+  }
+
+  /**
+   * Opens an INI file
+   *
+   * @param file The file to be read
+   * @throws IOException Exceptions thrown when opening the file
+   */
+  public MappedIniReader(File file) throws IOException {
+    this(file.toPath());
+  }
+
+  /**
+   * Opens an INI file mapping at most {@code windowSize} bytes at a time
+   */
+  MappedIniReader(Path path, long windowSize) throws IOException {
+    this.channel = FileChannel.open(path, StandardOpenOption.READ);
+    this.fileSize = channel.size();
+    this.windowSize = windowSize;
+    this.charset = Charset.defaultCharset();
+  }
+
+  /**
+   * Reads the next section of the file
+   *
+   * @return the next section, or null if there are no more sections
+   * @throws IOException Exceptions thrown when reading the file
+   * @throws IniError    If a line is not valid
+   */
+  public IniSection next() throws IOException {
+    while (readLine()) {
+      String text = new String(line, 0, lineLength, charset);
+      if (isComment(text) || isBlank(text, 0)) {
+        continue;
+      }
+      String tag = sectionTag(text);
+      if (tag != null) {
+        IniSection finished = current;
+        current = new IniSection(tag);
+        if (isVisible(finished)) {
+          return finished;
+        }
+      } else {
+        int equals = text.indexOf('=');
+        if (current == null || equals < 0) {
+          throw new IniError("Syntax error: " + text);
+        }
+        current.setValue(text.substring(0, equals).trim(), text.substring(equals + 1).trim());
+      }
+    }
+    IniSection finished = current;
+    current = null;
+    return isVisible(finished) ? finished : null;
+  }
+
+  @Override
+  public void close() throws IOException {
+    window = null;
+    channel.close();
+  }
+
+  /**
+   * Sections whose tag starts with '!' are ignored
+   */
+  private static boolean isVisible(IniSection section) {
+    return section != null && !section.getTag().startsWith("!");
+  }
+
+  private static boolean isComment(String text) {
+    if (text.isEmpty()) {
+      return false;
+    }
+    char c = text.charAt(0);
+    return c == ';' || c == ',' || c == '#';
+  }
+
+  /**
+   * Same characters as \s in regular expressions
+   */
+  private static boolean isWhitespace(char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+  }
+
+  private static boolean isBlank(String text, int from) {
+    for (int i = from; i < text.length(); i++) {
+      if (!isWhitespace(text.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the (trimmed) tag if the line is a section line, or null otherwise
+   */
+  private static String sectionTag(String text) {
+    int start = 0;
+    while (start < text.length() && isWhitespace(text.charAt(start))) {
+      start++;
+    }
+    if (start == text.length() || text.charAt(start) != '[') {
+      return null;
+    }
+    int end = text.indexOf(']', start + 1);
+    if (end < 0 || !isBlank(text, end + 1)) {
+      return null;
+    }
+    return text.substring(start + 1, end).trim();
+  }
+
+  /**
+   * Reads the next line into {@link #line}. Lines end with '\n', '\r' or "\r\n", as in
+   * {@link BufferedReader#readLine()}
+   *
+   * @return false if the end of the file was reached before reading any character
+   */
+  private boolean readLine() throws IOException {
+    lineLength = 0;
+    boolean read = false;
+    while (true) {
+      if (window == null || !window.hasRemaining()) {
+        if (windowEnd >= fileSize) {
+          return read;
+        }
+        long size = Math.min(windowSize, fileSize - windowEnd);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, windowEnd, size);
+        windowEnd += size;
+      }
+      while (window.hasRemaining()) {
+        byte b = window.get();
+        if (skipLF) {
+          skipLF = false;
+          if (b == '\n') {
+            continue;
+          }
+        }
+        if (b == '\n') {
+          return true;
+        }
+        if (b == '\r') {
+          skipLF = true;
+          return true;
+        }
+        if (lineLength == line.length) {
+          byte[] bigger = new byte[line.length * 2];
+          System.arraycopy(line, 0, bigger, 0, lineLength);
+          line = bigger;
+        }
+        line[lineLength++] = b;
+        read = true;
+      }
+    }
+  }
+
+}
@@ -4,7 +4,12 @@ import es.ucm.fdi.control.Controller;
 import es.ucm.fdi.control.layout.SimulatorWindow;
 import es.ucm.fdi.exceptions.SimulatorError;
 import es.ucm.fdi.ini.Ini;
+import es.ucm.fdi.ini.IniSection;
+import es.ucm.fdi.model.ReportFormat;
+import es.ucm.fdi.model.SimulationMetrics;
+import es.ucm.fdi.model.SimulationProfiler;
 import es.ucm.fdi.model.TrafficSimulator;
+import es.ucm.fdi.report.BinaryReportConverter;
 import org.apache.commons.cli.*;
 
 import java.io.*;
@@ -12,11 +17,28 @@ import java.io.*;
 public class Main {
 
   private final static Integer TIME_LIMIT_DEFAULT_VALUE = 10;
+  private final static Integer PARALLELISM_DEFAULT_VALUE = 1;
+  private final static Double REROUTE_BUDGET_DEFAULT_VALUE = 0.1;
+  private final static Integer CHECKPOINT_INTERVAL_DEFAULT_VALUE = 100;
 
   private static Integer timeLimit = null;
   private static String infile = null;
   private static String outfile = null;
   private static Boolean guiMode = null;
+  private static Integer parallelism = PARALLELISM_DEFAULT_VALUE;
+  private static ReportFormat reportFormat = ReportFormat.INI;
+  private static Integer eventWindow = null;
+  private static Integer rerouteInterval = null;
+  private static Double rerouteBudget = REROUTE_BUDGET_DEFAULT_VALUE;
+  private static Boolean finalReport = false;
+  private static Boolean measureTicks = false;
+  // Carreteras y cruces más lentos que se muestran (null si no se perfila)
+  private static Integer profileLimit = null;
+  private static String checkpointFile = null;
+  private static Integer checkpointInterval = CHECKPOINT_INTERVAL_DEFAULT_VALUE;
+  private static String resumeFile = null;
+  // Pasos tras los que se interrumpe la simulación en los tests (null si no se interrumpe)
+  private static Integer resumeAfter = null;
 
   private static void parseArgs(String[] args) {
 
@@ -31,9 +53,17 @@ public class Main {
       CommandLine line = parser.parse(cmdLineOptions, args);
       parseHelpOption(line, cmdLineOptions);
       parseMode(line);
+      parseCheckpointOptions(line);
       parseInFileOption(line);
       parseOutFileOption(line);
       parseStepsOption(line);
+      parseParallelismOption(line);
+      parseFormatOption(line);
+      parseEventWindowOption(line);
+      parseRerouteOptions(line);
+      finalReport = line.hasOption("final-report");
+      measureTicks = line.hasOption("metrics");
+      parseProfileOption(line);
 
       // if there are some remaining arguments, then something wrong is
       // provided in the command line!
@@ -76,6 +106,43 @@ public class Main {
             .hasArg()
             .desc("Ticks to execute the simulator's main loop (default value is "
                 + TIME_LIMIT_DEFAULT_VALUE + ").").build());
+    cmdLineOptions.addOption(Option.builder("p").longOpt("parallelism").hasArg()
+        .desc("Threads used to advance roads and junctions in batch mode (default value is "
+            + PARALLELISM_DEFAULT_VALUE + ").").build());
+    cmdLineOptions.addOption(Option.builder("f").longOpt("format").hasArg()
+        .desc("Reports format in batch mode: 'ini' or 'binary' (default value is 'ini').")
+        .build());
+    cmdLineOptions.addOption(Option.builder("w").longOpt("window").hasArg()
+        .desc("Read events lazily in batch mode, keeping in memory only those that happen in "
+            + "the given number of ticks (the file must be sorted by time).").build());
+    cmdLineOptions.addOption(Option.builder("r").longOpt("reroute").hasArg()
+        .desc("Reroute vehicles according to traffic every given number of ticks in batch "
+            + "mode.").build());
+    cmdLineOptions.addOption(Option.builder().longOpt("reroute-budget").hasArg()
+        .desc("Maximum fraction of each tick's time spent rerouting (default value is "
+            + REROUTE_BUDGET_DEFAULT_VALUE + ").").build());
+    cmdLineOptions.addOption(Option.builder().longOpt("final-report")
+        .desc("Write only the report of the last tick in batch mode, skipping ahead over ticks "
+            + "where nothing but vehicle positions changes.").build());
+    cmdLineOptions.addOption(Option.builder().longOpt("checkpoint").hasArg()
+        .desc("Save the simulation state to the given file periodically in batch mode.")
+        .build());
+    cmdLineOptions.addOption(Option.builder().longOpt("checkpoint-interval").hasArg()
+        .desc("Ticks between checkpoints (default value is " + CHECKPOINT_INTERVAL_DEFAULT_VALUE
+            + ").").build());
+    cmdLineOptions.addOption(Option.builder().longOpt("resume").hasArg()
+        .desc("Resume the simulation from the given checkpoint in batch mode and execute the "
+            + "given number of ticks from there. The events file is only needed with -w. "
+            + "Rerouting continues as saved in the checkpoint unless -r is given, and the "
+            + "parallelism is always the one given on the command line.")
+        .build());
+    cmdLineOptions.addOption(Option.builder().longOpt("metrics")
+        .desc("Measure each tick in batch mode, publish the measures through JMX and write a "
+            + "summary to the standard error at the end.").build());
+    cmdLineOptions.addOption(Option.builder().longOpt("profile").hasArg()
+        .desc("Measure the advance time and queues of each road and junction in batch mode and "
+            + "write the given number of slowest ones to the standard error at the end.")
+        .build());
 
     return cmdLineOptions;
   }
@@ -94,7 +161,10 @@ public class Main {
 
   private static void parseInFileOption(CommandLine line) throws ParseException {
     infile = line.getOptionValue("i");
-    if (!guiMode && infile == null) {
+    // Al continuar desde un punto de control los eventos ya están en él salvo si se leen a
+    // medida que se necesitan
+    boolean eventsNeeded = resumeFile == null || line.hasOption("w");
+    if (!guiMode && infile == null && eventsNeeded) {
       throw new ParseException("An events file is missing");
     }
   }
@@ -115,6 +185,95 @@ public class Main {
     }
   }
 
+  private static void parseParallelismOption(CommandLine line) throws ParseException {
+    String p = line.getOptionValue("p", PARALLELISM_DEFAULT_VALUE.toString());
+    try {
+      parallelism = Integer.parseInt(p);
+    } catch (NumberFormatException e) {
+      throw new ParseException("Invalid value for parallelism: " + p);
+    }
+    if (parallelism < 1) {
+      throw new ParseException("Parallelism must be at least 1: " + p);
+    }
+  }
+
+  private static void parseFormatOption(CommandLine line) throws ParseException {
+    String f = line.getOptionValue("f", ReportFormat.INI.name());
+    try {
+      reportFormat = ReportFormat.parse(f);
+    } catch (IllegalArgumentException e) {
+      throw new ParseException("Invalid value for format: " + f);
+    }
+  }
+
+  private static void parseEventWindowOption(CommandLine line) throws ParseException {
+    String w = line.getOptionValue("w");
+    if (w != null) {
+      try {
+        eventWindow = Integer.parseInt(w);
+      } catch (NumberFormatException e) {
+        throw new ParseException("Invalid value for window: " + w);
+      }
+      if (eventWindow < 1) {
+        throw new ParseException("Window must be at least 1: " + w);
+      }
+    }
+  }
+
+  private static void parseRerouteOptions(CommandLine line) throws ParseException {
+    String r = line.getOptionValue("r");
+    if (r != null) {
+      try {
+        rerouteInterval = Integer.parseInt(r);
+      } catch (NumberFormatException e) {
+        throw new ParseException("Invalid value for reroute: " + r);
+      }
+      if (rerouteInterval < 1) {
+        throw new ParseException("Reroute interval must be at least 1: " + r);
+      }
+    }
+    String b = line.getOptionValue("reroute-budget", REROUTE_BUDGET_DEFAULT_VALUE.toString());
+    try {
+      rerouteBudget = Double.parseDouble(b);
+    } catch (NumberFormatException e) {
+      throw new ParseException("Invalid value for reroute budget: " + b);
+    }
+    if (!(rerouteBudget > 0)) {
+      throw new ParseException("Reroute budget must be positive: " + b);
+    }
+  }
+
+  private static void parseProfileOption(CommandLine line) throws ParseException {
+    String p = line.getOptionValue("profile");
+    if (p == null) {
+      profileLimit = null;
+      return;
+    }
+    try {
+      profileLimit = Integer.parseInt(p);
+    } catch (NumberFormatException e) {
+      throw new ParseException("Invalid value for profile: " + p);
+    }
+    if (profileLimit < 1) {
+      throw new ParseException("Profile must show at least 1 object: " + p);
+    }
+  }
+
+  private static void parseCheckpointOptions(CommandLine line) throws ParseException {
+    checkpointFile = line.getOptionValue("checkpoint");
+    resumeFile = line.getOptionValue("resume");
+    String c = line.getOptionValue("checkpoint-interval",
+        CHECKPOINT_INTERVAL_DEFAULT_VALUE.toString());
+    try {
+      checkpointInterval = Integer.parseInt(c);
+    } catch (NumberFormatException e) {
+      throw new ParseException("Invalid value for checkpoint interval: " + c);
+    }
+    if (checkpointInterval < 1) {
+      throw new ParseException("Checkpoint interval must be at least 1: " + c);
+    }
+  }
+
   /**
    * This method run the simulator on all files that ends with .ini if the
    * given path, and compares that output to the expected output. It assumes
@@ -125,7 +284,69 @@ public class Main {
    * @throws IOException
    */
   static void test(String path) throws IOException {
+    test(path, PARALLELISM_DEFAULT_VALUE);
+  }
+
+  /**
+   * Igual que {@link #test(String)} pero escribiendo los informes en el formato indicado. Si es
+   * binario se convierten a ini antes de compararlos con la salida esperada
+   */
+  static void test(String path, ReportFormat format) throws IOException {
+    reportFormat = format;
+    try {
+      test(path, PARALLELISM_DEFAULT_VALUE);
+    } finally {
+      reportFormat = ReportFormat.INI;
+    }
+  }
+
+  /**
+   * Igual que {@link #test(String)} pero leyendo los eventos a medida que se necesitan con la
+   * ventana indicada
+   */
+  static void testEventWindow(String path, int window) throws IOException {
+    eventWindow = window;
+    try {
+      test(path, PARALLELISM_DEFAULT_VALUE);
+    } finally {
+      eventWindow = null;
+    }
+  }
+
+  /**
+   * Igual que {@link #test(String)} pero escribiendo sólo el informe del último paso, que se
+   * compara con el del último paso de la salida esperada
+   */
+  static void testFinalReport(String path) throws IOException {
+    finalReport = true;
+    try {
+      test(path, PARALLELISM_DEFAULT_VALUE);
+    } finally {
+      finalReport = false;
+    }
+  }
 
+  /**
+   * Igual que {@link #test(String)} pero interrumpiendo la simulación: se ejecutan los primeros
+   * pasos guardando un punto de control en el último y el resto continuando desde él. Se compara
+   * sólo el informe de los pasos ejecutados tras continuar
+   */
+  static void testResume(String path, int ticks) throws IOException {
+    resumeAfter = ticks;
+    try {
+      test(path, PARALLELISM_DEFAULT_VALUE);
+    } finally {
+      resumeAfter = null;
+    }
+  }
+
+  /**
+   * Igual que {@link #test(String)} pero avanzando la simulación con tantos hilos como se
+   * indiquen
+   */
+  static void test(String path, int parallelism) throws IOException {
+
+    Main.parallelism = parallelism;
     File dir = new File(path);
 
     if (!dir.exists()) {
@@ -156,12 +377,40 @@ public class Main {
    */
   private static boolean test(String inFile, String outFile,
                               String expectedOutFile, int timeLimit) throws IOException {
-    outfile = outFile;
     infile = inFile;
     Main.timeLimit = timeLimit;
-    startBatchMode();
-    boolean equalOutput = (new Ini(outfile)).equals(new Ini(
-        expectedOutFile));
+    if (reportFormat == ReportFormat.BINARY) {
+      File binaryFile = File.createTempFile("report", ".bin");
+      try {
+        outfile = binaryFile.getAbsolutePath();
+        startBatchMode();
+        try (InputStream in = new FileInputStream(binaryFile);
+             OutputStream out = new FileOutputStream(outFile)) {
+          BinaryReportConverter.toIni(in, out);
+        }
+      } finally {
+        binaryFile.delete();
+      }
+      outfile = outFile;
+    } else if (resumeAfter != null) {
+      outfile = outFile;
+      startInterruptedBatchMode(timeLimit);
+    } else {
+      outfile = outFile;
+      startBatchMode();
+    }
+    Ini expected = new Ini(expectedOutFile);
+    if (finalReport || resumeAfter != null) {
+      Ini ticks = new Ini();
+      for (IniSection section : expected.getSections()) {
+        int time = Integer.parseInt(section.getValue("time"));
+        if (finalReport ? time == timeLimit : time > resumeAfter) {
+          ticks.addSection(section);
+        }
+      }
+      expected = ticks;
+    }
+    boolean equalOutput = (new Ini(outfile)).equals(expected);
     System.out.println("Result for: '"
         + infile
         + "' : "
@@ -170,6 +419,30 @@ public class Main {
     return equalOutput;
   }
 
+  /**
+   * Ejecuta en modo batch los primeros resumeAfter pasos guardando un punto de control y después
+   * el resto hasta timeLimit continuando desde él (sólo el informe de estos queda en outfile)
+   */
+  private static void startInterruptedBatchMode(int timeLimit) throws IOException {
+    File checkpoint = File.createTempFile("checkpoint", ".bin");
+    try {
+      checkpointFile = checkpoint.getAbsolutePath();
+      checkpointInterval = resumeAfter;
+      Main.timeLimit = resumeAfter;
+      startBatchMode();
+      checkpointFile = null;
+      resumeFile = checkpoint.getAbsolutePath();
+      Main.timeLimit = timeLimit - resumeAfter;
+      startBatchMode();
+    } finally {
+      checkpointFile = null;
+      checkpointInterval = CHECKPOINT_INTERVAL_DEFAULT_VALUE;
+      resumeFile = null;
+      Main.timeLimit = timeLimit;
+      checkpoint.delete();
+    }
+  }
+
   /**
    * Ejecutar el simulador en modo gui
    */
@@ -208,20 +481,61 @@ public class Main {
     });
 
     Controller controller = new Controller(simulator);
+    controller.setParallelism(parallelism);
+    controller.setReportFormat(reportFormat);
+    controller.setFastForward(finalReport);
+    if (checkpointFile != null) {
+      controller.setCheckpoints(new File(checkpointFile), checkpointInterval);
+    }
+    SimulationMetrics metrics = null;
+    if (measureTicks) {
+      metrics = new SimulationMetrics();
+      metrics.register();
+      controller.setMetrics(metrics);
+    }
+    SimulationProfiler profiler = null;
+    if (profileLimit != null) {
+      profiler = new SimulationProfiler();
+      controller.setProfiler(profiler);
+    }
+    File input = infile == null ? null : new File(infile);
+    if (input != null && !input.isFile()) {
+      throw new SimulatorError("Something went wrong with input file (" + infile + ")");
+    }
     try {
-      controller.loadEvents(new FileInputStream(infile));
+      if (resumeFile != null) {
+        controller.restoreCheckpoint(new File(resumeFile));
+      }
+      // Al continuar desde un punto de control las opciones indicadas sustituyen a las guardadas
+      if (rerouteInterval != null) {
+        controller.setRerouting(rerouteInterval, rerouteBudget);
+      }
+      if (eventWindow != null) {
+        controller.streamEvents(input, eventWindow);
+      } else if (resumeFile == null) {
+        controller.loadEvents(input);
+      }
 
       try {
         controller.setOutputStream(outfile == null ? System.out : new FileOutputStream(outfile));
       } catch (IOException e) {
         throw new SimulatorError("Something went wrong with output file (" + outfile + ")", e);
       }
-      controller.run(timeLimit);
+      if (finalReport) {
+        controller.runToEnd(timeLimit);
+      } else {
+        controller.run(timeLimit);
+      }
+      controller.awaitCheckpoint();
+      if (metrics != null) {
+        metrics.writeSummary(System.err);
+      }
+      if (profiler != null) {
+        profiler.writeReport(System.err, profileLimit);
+      }
 
     } catch (IllegalStateException e) {
       throw new SimulatorError("Load failed", e);
-    } catch (IOException e) {
-      throw new SimulatorError("Something went wrong with input file (" + infile + ")", e);
     }
   }
 
@@ -1,6 +1,7 @@
 package es.ucm.fdi.model;
 
-import java.util.Map;
+import es.ucm.fdi.ini.IniWriter;
+
 import java.util.Queue;
 
 /**
@@ -8,6 +9,8 @@ import java.util.Queue;
  */
 public class Bicycle extends Vehicle {
 
+  private static final long serialVersionUID = 1L;
+
   public static final String TYPE = "bike";
 
   public Bicycle(String id, int maxSpeed, Queue<Junction> itinerary) {
@@ -22,9 +25,14 @@ public class Bicycle extends Vehicle {
   }
 
   @Override
-  public void fillReportDetails(Map<String, String> kvps) {
-    kvps.put("type", TYPE);
-    super.fillReportDetails(kvps);
+  protected void writeReportDetails(IniWriter writer) {
+    writer.setValue("type", TYPE);
+    super.writeReportDetails(writer);
+  }
+
+  @Override
+  protected String getType() {
+    return TYPE;
   }
 
 }
@@ -0,0 +1,145 @@
+package es.ucm.fdi.model;
+
+import es.ucm.fdi.report.BinaryReportReader;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Escribe los informes de cada tick en el formato binario por columnas descrito en
+ * {@link BinaryReportReader}
+ */
+class BinaryReportWriter {
+
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final DataOutputStream out;
+  // Cuerpo del tick: se escribe aparte porque hasta terminarlo no se conocen las cadenas nuevas
+  private final ByteArrayOutputStream bodyBuffer;
+  private final DataOutputStream body;
+  private final Map<String, Integer> dictionary;
+  private final List<String> newStrings;
+  private int[] column;
+
+  BinaryReportWriter(OutputStream os) throws IOException {
+    out = new DataOutputStream(new BufferedOutputStream(os, BUFFER_SIZE));
+    bodyBuffer = new ByteArrayOutputStream(BUFFER_SIZE);
+    body = new DataOutputStream(bodyBuffer);
+    dictionary = new HashMap<>();
+    newStrings = new ArrayList<>();
+    column = new int[0];
+    out.writeInt(BinaryReportReader.MAGIC);
+    out.writeInt(BinaryReportReader.VERSION);
+  }
+
+  /**
+   * Escribe los informes de los objetos indicados como un tick
+   */
+  void writeTick(int time, Collection<Junction> junctions, Collection<Road> roads,
+                 Collection<Vehicle> vehicles) throws IOException {
+    bodyBuffer.reset();
+    writeJunctions(junctions);
+    writeRoads(roads);
+    writeVehicles(vehicles);
+
+    out.writeInt(time);
+    out.writeInt(newStrings.size());
+    for (String s : newStrings) {
+      out.writeUTF(s);
+    }
+    newStrings.clear();
+    bodyBuffer.writeTo(out);
+    out.flush();
+  }
+
+  private void writeJunctions(Collection<Junction> junctions) throws IOException {
+    body.writeInt(junctions.isEmpty() ? -1 : intern(junctions.iterator().next().getReportHeader()));
+    body.writeInt(junctions.size());
+    for (Junction j : junctions) {
+      body.writeInt(intern(j.getId()));
+      body.writeInt(intern(j.getType()));
+      body.writeInt(j.incomingRoads.size());
+      for (Junction.IncomingRoad r : j.incomingRoads.values()) {
+        body.writeInt(intern(r.road.getId()));
+        body.writeInt(intern(r.lightColor()));
+        body.writeInt(r.vehicleList.size());
+        for (Vehicle v : r.vehicleList) {
+          body.writeInt(intern(v.getId()));
+        }
+      }
+    }
+  }
+
+  private void writeRoads(Collection<Road> roads) throws IOException {
+    body.writeInt(roads.isEmpty() ? -1 : intern(roads.iterator().next().getReportHeader()));
+    body.writeInt(roads.size());
+    for (Road r : roads) {
+      body.writeInt(intern(r.getId()));
+      body.writeInt(intern(r.getType()));
+      body.writeInt(r.vehicleList.size());
+      for (int i = 0; i < r.vehicleList.size(); i++) {
+        Vehicle v = r.vehicleList.get(i);
+        body.writeInt(intern(v.getId()));
+        body.writeInt(v.getLocation());
+      }
+    }
+  }
+
+  /**
+   * Los vehículos se escriben columna a columna
+   */
+  private void writeVehicles(Collection<Vehicle> vehicles) throws IOException {
+    body.writeInt(vehicles.isEmpty() ? -1 :
+        intern(vehicles.iterator().next().getReportHeader()));
+    int n = vehicles.size();
+    body.writeInt(n);
+    if (column.length < n) {
+      column = new int[n];
+    }
+    for (int field = 0; field < 7; field++) {
+      int i = 0;
+      for (Vehicle v : vehicles) {
+        column[i++] = vehicleField(v, field);
+      }
+      for (i = 0; i < n; i++) {
+        body.writeInt(column[i]);
+      }
+    }
+  }
+
+  private int vehicleField(Vehicle v, int field) {
+    switch (field) {
+      case 0:
+        return intern(v.getId());
+      case 1:
+        return intern(v.getType());
+      case 2:
+        return v.hasArrived() ? -1 : intern(v.getRoad().getId());
+      case 3:
+        return v.getLocation();
+      case 4:
+        return v.currentSpeed;
+      case 5:
+        return v.kilometrage;
+      default:
+        return v.faulty;
+    }
+  }
+
+  /**
+   * Devuelve el índice de la cadena en el diccionario, añadiéndola si no estaba (-1 si es null)
+   */
+  private int intern(String s) {
+    if (s == null) {
+      return -1;
+    }
+    Integer index = dictionary.get(s);
+    if (index == null) {
+      index = dictionary.size();
+      dictionary.put(s, index);
+      newStrings.add(s);
+    }
+    return index;
+  }
+
+}
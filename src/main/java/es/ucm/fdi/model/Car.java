@@ -1,6 +1,7 @@
 package es.ucm.fdi.model;
 
-import java.util.Map;
+import es.ucm.fdi.ini.IniWriter;
+
 import java.util.Queue;
 import java.util.Random;
 
@@ -9,6 +10,8 @@ import java.util.Random;
  */
 public class Car extends Vehicle {
 
+  private static final long serialVersionUID = 1L;
+
   public static final String TYPE = "car";
 
   private int resistance;
@@ -42,10 +45,34 @@ public class Car extends Vehicle {
     super.advance();
   }
 
+  /**
+   * Mientras se cumple la condición para averiarse se saca un número aleatorio en cada paso,
+   * así que sólo se pueden saltar los pasos anteriores
+   */
+  @Override
+  int steadyTicks(int roadSpeed) {
+    int ticks = super.steadyTicks(roadSpeed);
+    if (faulty == 0) {
+      int margin = resistance - (kilometrage - lastTimeFaulty);
+      int speed = steadySpeed(roadSpeed);
+      if (margin < 0) {
+        ticks = 0;
+      } else if (speed > 0) {
+        ticks = Math.min(ticks, margin / speed + 1);
+      }
+    }
+    return ticks;
+  }
+
+  @Override
+  protected void writeReportDetails(IniWriter writer) {
+    writer.setValue("type", TYPE);
+    super.writeReportDetails(writer);
+  }
+
   @Override
-  public void fillReportDetails(Map<String, String> kvps) {
-    kvps.put("type", TYPE);
-    super.fillReportDetails(kvps);
+  protected String getType() {
+    return TYPE;
   }
 
 }
@@ -0,0 +1,133 @@
+package es.ucm.fdi.model;
+
+import es.ucm.fdi.exceptions.SimulatorError;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Escribe los puntos de control del simulador en un fichero con el formato:
+ * <pre>
+ * fichero := MAGIC VERSION estado
+ * </pre>
+ * donde el estado es la serialización del simulador comprimida con deflate.
+ * <p>
+ * El estado se serializa en el hilo de la simulación, porque cambia en cuanto avanza, pero se
+ * comprime y se escribe en un hilo aparte. Cada punto de control se escribe en un fichero
+ * temporal que después sustituye al anterior, así que el fichero siempre tiene uno completo
+ */
+class CheckpointWriter {
+
+  static final int MAGIC = 0x54534350; // "TSCP"
+  static final int VERSION = 1;
+
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final Path file;
+  private final ExecutorService executor;
+  // Escritura en curso (null si no hay ninguna)
+  private Future<?> pending;
+
+  CheckpointWriter(File file) {
+    this.file = file.toPath().toAbsolutePath();
+    executor = Executors.newSingleThreadExecutor(r -> {
+      Thread thread = new Thread(r, "checkpoint-writer");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Empieza a escribir el estado serializado en segundo plano. Si aún se está escribiendo el
+   * anterior se espera a que acabe, para no acumular estados en memoria
+   */
+  void write(byte[] state) {
+    await();
+    pending = executor.submit(() -> {
+      writeFile(state);
+      return null;
+    });
+  }
+
+  /**
+   * Espera a que se acabe de escribir el último punto de control
+   *
+   * @throws SimulatorError Si no se ha podido escribir
+   */
+  void await() {
+    if (pending == null) {
+      return;
+    }
+    try {
+      pending.get();
+    } catch (ExecutionException e) {
+      throw new SimulatorError("Failed while writing checkpoint " + file, e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      pending = null;
+    }
+  }
+
+  /**
+   * Espera al último punto de control y termina el hilo que los escribe
+   */
+  void close() {
+    try {
+      await();
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private void writeFile(byte[] state) throws IOException {
+    Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+    try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp), BUFFER_SIZE)) {
+      write(state, out);
+    }
+    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Escribe la cabecera y el estado serializado comprimido
+   */
+  static void write(byte[] state, OutputStream out) throws IOException {
+    DataOutputStream data = new DataOutputStream(out);
+    data.writeInt(MAGIC);
+    data.writeInt(VERSION);
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try {
+      DeflaterOutputStream compressed = new DeflaterOutputStream(data, deflater, BUFFER_SIZE);
+      compressed.write(state);
+      compressed.finish();
+      compressed.flush();
+    } finally {
+      deflater.end();
+    }
+  }
+
+  /**
+   * Comprueba la cabecera y devuelve un flujo del que leer el estado serializado
+   */
+  static ObjectInputStream read(InputStream in) throws IOException {
+    DataInputStream data = new DataInputStream(new BufferedInputStream(in, BUFFER_SIZE));
+    if (data.readInt() != MAGIC) {
+      throw new IOException("Not a checkpoint");
+    }
+    int version = data.readInt();
+    if (version != VERSION) {
+      throw new IOException("Unsupported checkpoint version " + version);
+    }
+    return new ObjectInputStream(new InflaterInputStream(data));
+  }
+
+}
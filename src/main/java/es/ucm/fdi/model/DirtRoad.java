@@ -1,12 +1,14 @@
 package es.ucm.fdi.model;
 
-import java.util.Map;
+import es.ucm.fdi.ini.IniWriter;
 
 /**
  * Carretera de barro que es más lenta cuantos más vehículos averiados la recorran
  */
 public class DirtRoad extends Road {
 
+  private static final long serialVersionUID = 1L;
+
   public static final String TYPE = "dirt";
 
   public DirtRoad(String id, int length, int maxSpeed, String sourceId,
@@ -25,9 +27,14 @@ public class DirtRoad extends Road {
   }
 
   @Override
-  public void fillReportDetails(Map<String, String> kvps) {
-    kvps.put("type", TYPE);
-    super.fillReportDetails(kvps);
+  protected void writeReportDetails(IniWriter writer) {
+    writer.setValue("type", TYPE);
+    super.writeReportDetails(writer);
+  }
+
+  @Override
+  protected String getType() {
+    return TYPE;
   }
 
 }
@@ -1,5 +1,10 @@
 package es.ucm.fdi.model;
 
+import es.ucm.fdi.ini.IniWriter;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.*;
 
 import static java.util.stream.Collectors.joining;
@@ -9,36 +14,58 @@ import static java.util.stream.Collectors.joining;
  */
 public class Junction extends SimulatedObject {
 
+  private static final long serialVersionUID = 1L;
+
   private static final String SECTION_TAG_NAME = "junction_report";
   public static final String[] INFO = {"ID", "Green", "Red"};
 
-  protected Map<Road, IncomingRoad> incomingRoads;
+  protected transient Map<Road, IncomingRoad> incomingRoads;
+  /**
+   * Primera carretera entrante desde cada cruce, por id del cruce de origen
+   */
+  private transient Map<String, Road> roadsBySource;
   /**
    * Carretera con semáforo en verde actualmente
    */
-  protected IncomingRoad currentRoadOn;
+  protected transient IncomingRoad currentRoadOn;
   /**
    * Siguiente carretera a la del semáforo en verde
    */
-  protected Iterator<IncomingRoad> nextRoad;
+  protected transient Iterator<IncomingRoad> nextRoad;
+  /**
+   * Carreteras ya devueltas por nextRoad (para poder recrearlo al restaurar el cruce)
+   */
+  private int nextRoadPosition;
 
   public Junction(String id) {
     super(id);
     incomingRoads = new LinkedHashMap<>();
+    roadsBySource = new HashMap<>();
   }
 
   /**
    * Añade una carretera entrante al cruce
    */
   public void addRoad(Road road) {
-    incomingRoads.put(road, new IncomingRoad(road));
+    wakeUp();
+    incomingRoads.put(road, createIncomingRoad(road));
+    roadsBySource.putIfAbsent(road.getSource(), road);
+  }
+
+  /**
+   * Crea la carretera entrante que guarda la cola de vehículos de una carretera
+   */
+  protected IncomingRoad createIncomingRoad(Road road) {
+    return new IncomingRoad(road);
   }
 
   /**
    * Introduce un vehículo en el cruce
    */
   public void vehicleIn(Vehicle vehicle) {
+    wakeUp();
     incomingRoads.get(vehicle.getRoad()).vehicleIn(vehicle);
+    markChanged();
   }
 
   /**
@@ -55,6 +82,74 @@ public class Junction extends SimulatedObject {
         currentRoadOn.vehicleOut();
       }
       switchLights();
+      markChanged();
+    }
+  }
+
+  /**
+   * Determina si hay vehículos esperando en alguna carretera entrante
+   */
+  boolean hasWaitingVehicles() {
+    for (IncomingRoad r : incomingRoads.values()) {
+      if (!r.isEmpty()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Devuelve el número de vehículos esperando en todas las carreteras entrantes
+   */
+  int queuedVehicles() {
+    int count = 0;
+    for (IncomingRoad r : incomingRoads.values()) {
+      count += r.vehicleCount();
+    }
+    return count;
+  }
+
+  /**
+   * Devuelve cuántas veces seguidas se puede avanzar el cruce con {@link #skipIdle(int)}: todas
+   * si no hay vehículos esperando y ninguna en caso contrario
+   */
+  int steadyTicks() {
+    return hasWaitingVehicles() ? 0 : Integer.MAX_VALUE;
+  }
+
+  /**
+   * Deja el cruce como si hubiera avanzado {@code ticks} veces sin vehículos esperando, sin
+   * tener que dar todos esos pasos
+   */
+  void skipIdle(int ticks) {
+    if (ticks > 0 && !incomingRoads.isEmpty()) {
+      if (currentRoadOn == null) {
+        switchLights();
+        ticks--;
+      }
+      // Cada avance sólo pone en verde la siguiente carretera, así que se repite cada vuelta
+      for (int i = ticks % incomingRoads.size(); i > 0; i--) {
+        switchLights();
+      }
+      markChanged();
+    }
+  }
+
+  /**
+   * Avisa al planificador (si lo hay) de que el cruce tiene que volver a avanzar en cada paso
+   */
+  private void wakeUp() {
+    if (scheduler != null) {
+      scheduler.wake(this);
+    }
+  }
+
+  /**
+   * Aplica los pasos que el cruce se ha saltado mientras el planificador lo tenía dormido
+   */
+  private void catchUp() {
+    if (scheduler != null) {
+      scheduler.catchUp(this);
     }
   }
 
@@ -77,7 +172,9 @@ public class Junction extends SimulatedObject {
     // Reinicia el iterador cada vuelta
     if (nextRoad == null || !nextRoad.hasNext()) {
       nextRoad = incomingRoads.values().iterator();
+      nextRoadPosition = 0;
     }
+    nextRoadPosition++;
     return nextRoad.next();
   }
 
@@ -85,22 +182,90 @@ public class Junction extends SimulatedObject {
    * Devuelve la carretera que une el cruce con id previousJunction con esta (si existe)
    */
   public Road getStraightRoad(String previousJunction) {
-    for (Road r : incomingRoads.keySet()) {
-      if (r.getSource().equals(previousJunction)) {
-        return r;
+    return roadsBySource.get(previousJunction);
+  }
+
+  /**
+   * Estima el tiempo que espera en el cruce un vehículo que llega por la carretera indicada:
+   * cada vehículo de su cola sale en una vuelta de los semáforos
+   */
+  double estimatedWaitingTime(Road road) {
+    IncomingRoad incoming = incomingRoads.get(road);
+    return incoming == null ? 0 : (double) incoming.vehicleCount() * incomingRoads.size();
+  }
+
+  /**
+   * Devuelve las carreteras que llegan al cruce (la primera desde cada cruce de origen)
+   */
+  Collection<Road> getIncomingRoads() {
+    return roadsBySource.values();
+  }
+
+  /**
+   * Guarda las carreteras entrantes en orden con su semáforo y su cola, y cuál está en verde
+   */
+  @Override
+  void writeLinks(ObjectOutputStream out, RoadMap map) throws IOException {
+    out.writeInt(incomingRoads.size());
+    for (IncomingRoad r : incomingRoads.values()) {
+      out.writeInt(map.indexOf(r.road));
+      out.writeBoolean(r.greenLight);
+      out.writeInt(r.vehicleCount());
+      for (Vehicle v : r.vehicleList) {
+        out.writeInt(map.indexOf(v));
       }
     }
-    return null;
+    out.writeInt(currentRoadOn == null ? -1 : map.indexOf(currentRoadOn.road));
   }
 
   @Override
-  public void fillReportDetails(Map<String, String> kvps) {
-    kvps.put("queues", incomingRoads.entrySet().stream()
-        .map(e -> "(" + e.getKey() + "," + e.getValue().lightColor() + ",["
-            + e.getValue().vehicleList.stream()
-            .map(Vehicle::toString)
-            .collect(joining(",")) + "])")
-        .collect(joining(",")));
+  void readLinks(ObjectInputStream in, RoadMap map) throws IOException {
+    incomingRoads = new LinkedHashMap<>();
+    roadsBySource = new HashMap<>();
+    for (int i = in.readInt(); i > 0; i--) {
+      Road road = (Road) map.getObject(in.readInt());
+      IncomingRoad incoming = createIncomingRoad(road);
+      incoming.greenLight = in.readBoolean();
+      for (int j = in.readInt(); j > 0; j--) {
+        incoming.vehicleIn((Vehicle) map.getObject(in.readInt()));
+      }
+      incomingRoads.put(road, incoming);
+      roadsBySource.putIfAbsent(road.getSource(), road);
+    }
+    int green = in.readInt();
+    currentRoadOn = green < 0 ? null : incomingRoads.get(map.getObject(green));
+    nextRoad = null;
+    if (nextRoadPosition > 0) {
+      nextRoad = incomingRoads.values().iterator();
+      for (int i = 0; i < nextRoadPosition; i++) {
+        nextRoad.next();
+      }
+    }
+  }
+
+  @Override
+  protected void writeReportDetails(IniWriter writer) {
+    catchUp();
+    writer.key("queues");
+    boolean first = true;
+    for (IncomingRoad r : incomingRoads.values()) {
+      if (!first) {
+        writer.append(',');
+      }
+      first = false;
+      writer.append('(').append(r.road.getId()).append(',').append(r.lightColor())
+          .append(",[");
+      boolean firstVehicle = true;
+      for (Vehicle v : r.vehicleList) {
+        if (!firstVehicle) {
+          writer.append(',');
+        }
+        firstVehicle = false;
+        writer.append(v.getId());
+      }
+      writer.append("])");
+    }
+    writer.endValue();
   }
 
   @Override
@@ -110,6 +275,7 @@ public class Junction extends SimulatedObject {
 
   @Override
   public Map<String, String> describe() {
+    catchUp();
     Map<String, String> result = new HashMap<>();
     result.put(INFO[0], id);
     result.put(INFO[1], currentRoadOn == null ? "[]" : "[(" + currentRoadOn.road + "," +
@@ -0,0 +1,23 @@
+package es.ucm.fdi.model;
+
+/**
+ * Estado inmutable de un cruce
+ */
+public class JunctionState extends ObjectState {
+
+  private final String greenRoadId;
+
+  JunctionState(Junction junction) {
+    super(junction);
+    Road green = junction.getGreenRoad();
+    greenRoadId = green == null ? null : green.getId();
+  }
+
+  /**
+   * Devuelve el id de la carretera con el semáforo en verde o null si no hay ninguna
+   */
+  public String getGreenRoadId() {
+    return greenRoadId;
+  }
+
+}
@@ -6,6 +6,8 @@ package es.ucm.fdi.model;
  */
 public abstract class JunctionWithTimeSlice extends Junction {
 
+  private static final long serialVersionUID = 1L;
+
   protected int timeLapse;
   protected int timeUnits;
   protected int timesUsed;
@@ -21,8 +23,58 @@ public abstract class JunctionWithTimeSlice extends Junction {
    * Sobreescrito para usar la nueva IncomingRoad
    */
   @Override
-  public void addRoad(Road road) {
-    incomingRoads.put(road, new IncomingRoad(road));
+  protected IncomingRoad createIncomingRoad(Road road) {
+    return new IncomingRoad(road);
+  }
+
+  /**
+   * Devuelve cuántas veces tiene que avanzar el cruce hasta que cambien sus semáforos: los
+   * avances anteriores sólo incrementan timeUnits
+   */
+  private int ticksToNextChange() {
+    return currentRoadOn == null ? 1 : timeLapse - timeUnits;
+  }
+
+  /**
+   * Mientras la carretera en verde no tenga vehículos, los avances anteriores al siguiente cambio
+   * de semáforo sólo incrementan timeUnits aunque haya vehículos esperando en rojo
+   */
+  @Override
+  int steadyTicks() {
+    if (currentRoadOn == null || !currentRoadOn.isEmpty() || !hasWaitingVehicles()) {
+      return super.steadyTicks();
+    }
+    return ticksToNextChange() - 1;
+  }
+
+  /**
+   * Salta de un cambio de semáforo al siguiente. En cuanto un cambio sin vehículos deja igual
+   * la duración del verde, las vueltas siguientes son todas iguales y basta con dar las que
+   * sobran tras quitar las vueltas completas a todas las carreteras
+   */
+  @Override
+  void skipIdle(int ticks) {
+    if (ticks <= 0 || incomingRoads.isEmpty()) {
+      return;
+    }
+    boolean steady = false;
+    while (!steady && ticks >= ticksToNextChange()) {
+      int lapse = timeLapse;
+      boolean used = currentRoadOn == null || timesUsed > 0;
+      ticks -= ticksToNextChange();
+      timeUnits = currentRoadOn == null ? timeUnits : timeLapse - 1;
+      switchLights();
+      steady = !used && timeLapse == lapse;
+    }
+    if (steady) {
+      for (int i = ticks / timeLapse % incomingRoads.size(); i > 0; i--) {
+        timeUnits = timeLapse - 1;
+        switchLights();
+      }
+      ticks %= timeLapse;
+    }
+    timeUnits += ticks;
+    markChanged();
   }
 
   protected class IncomingRoad extends Junction.IncomingRoad {
@@ -1,6 +1,6 @@
 package es.ucm.fdi.model;
 
-import java.util.Map;
+import es.ucm.fdi.ini.IniWriter;
 
 /**
  * Autopista con varios carriles que permite a los coches ir a mayor velocidad esquivando
@@ -8,6 +8,8 @@ import java.util.Map;
  */
 public class LaneRoad extends Road {
 
+  private static final long serialVersionUID = 1L;
+
   public static final String TYPE = "lanes";
 
   private int lanes;
@@ -20,7 +22,7 @@ public class LaneRoad extends Road {
 
   @Override
   protected int calculateBaseSpeed() {
-    return Math.min(maxSpeed, maxSpeed * lanes / Math.max(vehicleList.sizeOfValues(), 1) + 1);
+    return Math.min(maxSpeed, maxSpeed * lanes / Math.max(vehicleList.size(), 1) + 1);
   }
 
   @Override
@@ -29,9 +31,14 @@ public class LaneRoad extends Road {
   }
 
   @Override
-  public void fillReportDetails(Map<String, String> kvps) {
-    kvps.put("type", TYPE);
-    super.fillReportDetails(kvps);
+  protected void writeReportDetails(IniWriter writer) {
+    writer.setValue("type", TYPE);
+    super.writeReportDetails(writer);
+  }
+
+  @Override
+  protected String getType() {
+    return TYPE;
   }
 
 }
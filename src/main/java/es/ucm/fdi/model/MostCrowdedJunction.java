@@ -1,6 +1,6 @@
 package es.ucm.fdi.model;
 
-import java.util.Map;
+import es.ucm.fdi.ini.IniWriter;
 
 /**
  * Cruce que actualiza el semáforo a la carretera con más vehículos a la espera más cercana en el
@@ -9,6 +9,8 @@ import java.util.Map;
  */
 public class MostCrowdedJunction extends JunctionWithTimeSlice {
 
+  private static final long serialVersionUID = 1L;
+
   public static final String TYPE = "mc";
 
   public MostCrowdedJunction(String id) {
@@ -58,9 +60,14 @@ public class MostCrowdedJunction extends JunctionWithTimeSlice {
   }
 
   @Override
-  public void fillReportDetails(Map<String, String> kvps) {
-    super.fillReportDetails(kvps);
-    kvps.put("type", TYPE);
+  protected void writeReportDetails(IniWriter writer) {
+    super.writeReportDetails(writer);
+    writer.setValue("type", TYPE);
+  }
+
+  @Override
+  protected String getType() {
+    return TYPE;
   }
 
 }
@@ -0,0 +1,34 @@
+package es.ucm.fdi.model;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Estado inmutable de un objeto de la simulación en un paso concreto. Guarda la descripción ya
+ * calculada, de modo que se puede consultar desde cualquier hilo mientras la simulación sigue
+ */
+public abstract class ObjectState implements Describable {
+
+  private final String id;
+  private final Map<String, String> description;
+
+  ObjectState(SimulatedObject object) {
+    id = object.getId();
+    description = Collections.unmodifiableMap(object.describe());
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  @Override
+  public Map<String, String> describe() {
+    return description;
+  }
+
+  @Override
+  public String toString() {
+    return id;
+  }
+
+}
@@ -0,0 +1,258 @@
+package es.ucm.fdi.model;
+
+import es.ucm.fdi.events.Event;
+import es.ucm.fdi.util.PersistentVector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Registro de una ejecución que permite volver a obtener el estado de cualquier paso ya
+ * ejecutado sin volver a simularlo, por ejemplo para moverse hacia atrás y hacia delante por
+ * una simulación terminada. No depende de que la simulación sea repetible (el cambio de
+ * itinerarios con presupuesto limitado no lo es): se guarda lo que ocurrió.
+ * <p>
+ * De cada paso sólo se guardan los estados de los objetos que han cambiado en él (vehículos que
+ * se han movido o averiado, semáforos que han cambiado...) y, cada cierto número de pasos
+ * registrados, la instantánea completa. Para obtener un paso se parte de la última instantánea
+ * completa anterior y se le aplican los cambios de los pasos siguientes, así que el coste
+ * depende de la distancia a ella y no de lo lejos que esté el paso.
+ * <p>
+ * Se registra como observador del simulador y se alimenta de sus instantáneas (ver
+ * {@link TrafficSimulator#setPublishSnapshots(boolean)}). Los pasos que se dan de golpe con
+ * {@link TrafficSimulator#setFastForward(boolean)} se registran como uno solo
+ */
+public class ReplayLog implements TrafficSimulator.Listener {
+
+  private final int keyframeInterval;
+  // Pasos registrados en orden de tiempo
+  private final List<Tick> ticks;
+  private SimulationSnapshot last;
+  // Último paso reconstruido, desde el que se sigue si el siguiente está más cerca que la
+  // instantánea completa (al avanzar poco a poco)
+  private int cachedIndex;
+  private SimulationSnapshot cached;
+
+  /**
+   * @param keyframeInterval Cada cuántos pasos registrados se guarda la instantánea completa
+   */
+  public ReplayLog(int keyframeInterval) {
+    if (keyframeInterval < 1) {
+      throw new IllegalArgumentException("Keyframe interval must be at least 1");
+    }
+    this.keyframeInterval = keyframeInterval;
+    ticks = new ArrayList<>();
+    clear();
+  }
+
+  /**
+   * Borra todos los pasos registrados
+   */
+  public synchronized void clear() {
+    ticks.clear();
+    last = null;
+    cached = null;
+  }
+
+  /**
+   * Registra el estado tras un paso, que debe ser posterior a los ya registrados
+   */
+  public synchronized void record(SimulationSnapshot snapshot) {
+    if (snapshot == last) {
+      return;
+    }
+    if (last != null && snapshot.getTime() <= last.getTime()) {
+      throw new IllegalArgumentException("Tick " + snapshot.getTime()
+          + " recorded after tick " + last.getTime());
+    }
+    ticks.add(ticks.size() % keyframeInterval == 0
+        ? new Tick(snapshot) : new Tick(last, snapshot));
+    last = snapshot;
+  }
+
+  /**
+   * Devuelve el número de pasos registrados
+   */
+  public synchronized int size() {
+    return ticks.size();
+  }
+
+  /**
+   * Devuelve el tiempo del primer paso registrado
+   *
+   * @throws IllegalStateException Si no hay ninguno
+   */
+  public synchronized int getFirstTime() {
+    checkNotEmpty();
+    return ticks.get(0).time;
+  }
+
+  /**
+   * Devuelve el tiempo del último paso registrado
+   *
+   * @throws IllegalStateException Si no hay ninguno
+   */
+  public synchronized int getLastTime() {
+    checkNotEmpty();
+    return last.getTime();
+  }
+
+  /**
+   * Devuelve el estado de la simulación en el tiempo indicado. Si no se registró ningún paso con
+   * ese tiempo (porque se saltó o porque aún no se ha ejecutado) devuelve el del último anterior
+   *
+   * @throws IllegalArgumentException Si el tiempo es anterior al primer paso registrado
+   * @throws IllegalStateException    Si no hay ningún paso registrado
+   */
+  public synchronized SimulationSnapshot seek(int time) {
+    checkNotEmpty();
+    int index = indexOf(time);
+    if (index < 0) {
+      throw new IllegalArgumentException("Tick " + time + " is before the first recorded tick "
+          + ticks.get(0).time);
+    }
+    int keyframe = index - index % keyframeInterval;
+    SimulationSnapshot snapshot;
+    int from;
+    if (cached != null && cachedIndex <= index && cachedIndex >= keyframe) {
+      snapshot = cached;
+      from = cachedIndex + 1;
+    } else {
+      snapshot = ticks.get(keyframe).keyframe;
+      from = keyframe + 1;
+    }
+    if (from <= index) {
+      PersistentVector.Builder<VehicleState> vehicles = snapshot.getVehicles().toBuilder();
+      PersistentVector.Builder<RoadState> roads = snapshot.getRoads().toBuilder();
+      PersistentVector.Builder<JunctionState> junctions = snapshot.getJunctions().toBuilder();
+      List<Event> events = snapshot.getEvents();
+      for (int i = from; i <= index; i++) {
+        Tick tick = ticks.get(i);
+        tick.vehicles.applyTo(vehicles);
+        tick.roads.applyTo(roads);
+        tick.junctions.applyTo(junctions);
+        if (tick.events != null) {
+          events = tick.events;
+        }
+      }
+      snapshot = new SimulationSnapshot(ticks.get(index).time, vehicles.build(), roads.build(),
+          junctions.build(), events);
+    }
+    cachedIndex = index;
+    cached = snapshot;
+    return snapshot;
+  }
+
+  /**
+   * Devuelve la posición del último paso registrado con un tiempo menor o igual que el indicado
+   * (-1 si no hay ninguno)
+   */
+  private int indexOf(int time) {
+    int low = 0;
+    int high = ticks.size() - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      if (ticks.get(middle).time <= time) {
+        low = middle + 1;
+      } else {
+        high = middle - 1;
+      }
+    }
+    return high;
+  }
+
+  private void checkNotEmpty() {
+    if (ticks.isEmpty()) {
+      throw new IllegalStateException("No tick has been recorded");
+    }
+  }
+
+  @Override
+  public void registered(TrafficSimulator.UpdateEvent ue) {
+  }
+
+  @Override
+  public void reset(TrafficSimulator.UpdateEvent ue) {
+    clear();
+  }
+
+  @Override
+  public void newEvent(TrafficSimulator.UpdateEvent ue) {
+  }
+
+  @Override
+  public void advanced(TrafficSimulator.UpdateEvent ue) {
+    record(ue.getSnapshot());
+  }
+
+  @Override
+  public void error(TrafficSimulator.UpdateEvent ue, String msg) {
+  }
+
+  /**
+   * Paso registrado: la instantánea completa o sólo lo que ha cambiado desde el anterior
+   */
+  private static class Tick {
+
+    final int time;
+    final SimulationSnapshot keyframe;
+    final Changes<VehicleState> vehicles;
+    final Changes<RoadState> roads;
+    final Changes<JunctionState> junctions;
+    // Cola de eventos si ha cambiado (null si es la del paso anterior)
+    final List<Event> events;
+
+    Tick(SimulationSnapshot keyframe) {
+      time = keyframe.getTime();
+      this.keyframe = keyframe;
+      vehicles = null;
+      roads = null;
+      junctions = null;
+      events = null;
+    }
+
+    Tick(SimulationSnapshot previous, SimulationSnapshot current) {
+      time = current.getTime();
+      keyframe = null;
+      vehicles = new Changes<>(previous.getVehicles(), current.getVehicles());
+      roads = new Changes<>(previous.getRoads(), current.getRoads());
+      junctions = new Changes<>(previous.getJunctions(), current.getJunctions());
+      events = current.getEvents() == previous.getEvents() ? null : current.getEvents();
+    }
+
+  }
+
+  /**
+   * Estados que han cambiado en un paso con sus posiciones. Como los objetos no se quitan del
+   * simulador, las posiciones a partir del tamaño anterior son objetos nuevos
+   */
+  private static class Changes<S> {
+
+    private final int[] indices;
+    private final Object[] states;
+
+    Changes(PersistentVector<S> previous, PersistentVector<S> current) {
+      List<Integer> changed = new ArrayList<>();
+      current.forEachChanged(previous, changed::add);
+      indices = new int[changed.size()];
+      states = new Object[changed.size()];
+      for (int i = 0; i < indices.length; i++) {
+        indices[i] = changed.get(i);
+        states[i] = current.get(indices[i]);
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    void applyTo(PersistentVector.Builder<S> builder) {
+      for (int i = 0; i < indices.length; i++) {
+        if (indices[i] < builder.size()) {
+          builder.set(indices[i], (S) states[i]);
+        } else {
+          builder.add((S) states[i]);
+        }
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,31 @@
+package es.ucm.fdi.model;
+
+/**
+ * Formatos en los que el simulador puede escribir los informes de cada paso
+ */
+public enum ReportFormat {
+
+  /**
+   * Secciones ini en texto (formato por defecto)
+   */
+  INI,
+
+  /**
+   * Formato binario por columnas con diccionario de cadenas, ver
+   * {@link es.ucm.fdi.report.BinaryReportReader}
+   */
+  BINARY;
+
+  /**
+   * Devuelve el formato a partir de su nombre sin distinguir mayúsculas
+   */
+  public static ReportFormat parse(String name) {
+    for (ReportFormat format : values()) {
+      if (format.name().equalsIgnoreCase(name)) {
+        return format;
+      }
+    }
+    throw new IllegalArgumentException("Unknown report format " + name);
+  }
+
+}
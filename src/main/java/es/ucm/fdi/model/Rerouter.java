@@ -0,0 +1,343 @@
+package es.ucm.fdi.model;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Cambia el itinerario de los vehículos cuando hay un camino bastante más rápido hasta su destino
+ * según el estado actual del tráfico. El peso de cada carretera es el tiempo estimado para
+ * recorrerla con su ocupación actual más la espera en la cola de su cruce de destino.
+ * <p>
+ * Para cada destino se guarda el árbol de caminos más rápidos hacia él. Cuando el peso de una
+ * carretera baja sólo se propaga la mejora desde su cruce de origen; cuando sube una carretera
+ * del árbol, el árbol se vuelve a calcular la próxima vez que se necesite. Los pesos que cambian
+ * poco no se actualizan, así que los árboles no cambian con cada vehículo que entra o sale.
+ * <p>
+ * Como el coste de revisar todas las carreteras y vehículos puede ser mayor que el de un paso,
+ * cada vez sólo se hace lo que dé tiempo dentro del presupuesto (una fracción de lo que tarda un
+ * paso), y la siguiente vez se continúa por donde se quedó. Cada vuelta de revisión de los pesos
+ * de las carreteras va seguida de al menos un turno de revisión de itinerarios, aunque la
+ * vuelta haya agotado el presupuesto, para que ninguna de las dos deje de avanzar. Las mejoras
+ * de los pesos se aplican a cada árbol cuando se vuelve a usar, así que su coste cuenta en el
+ * presupuesto del vehículo que lo necesita
+ */
+class Rerouter implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Cambio relativo del peso de una carretera a partir del cual se actualiza
+   */
+  private static final double WEIGHT_CHANGE = 0.1;
+
+  /**
+   * Mejora relativa mínima del tiempo restante para cambiar de itinerario
+   */
+  private static final double MIN_IMPROVEMENT = 0.1;
+
+  /**
+   * Vehículos revisados entre dos comprobaciones del presupuesto
+   */
+  private static final int VEHICLES_PER_CHECK = 16;
+
+  /**
+   * Carreteras cuyo peso se revisa entre dos comprobaciones del presupuesto
+   */
+  private static final int ROADS_PER_CHECK = 64;
+
+  /**
+   * Peso con el que se suaviza la media de lo que tarda un paso
+   */
+  private static final double TICK_TIME_SMOOTHING = 0.2;
+
+  private final RoadMap roadMap;
+  private final int interval;
+  private final double budget;
+
+  /**
+   * Peso de cada carretera por su posición en la lista del mapa, tal y como lo usan los árboles
+   */
+  private double[] weights;
+  private final Map<Road, Integer> roadIndices;
+  private final Map<Junction, Tree> trees;
+  // Siguiente carretera cuyo peso hay que revisar (el número de carreteras si ya se han revisado
+  // todas en esta vuelta)
+  private int nextRoad;
+  // Si se ha terminado una vuelta de pesos y los itinerarios aún no han tenido su turno
+  private boolean vehiclesTurn;
+  private int nextVehicle;
+  private double averageTickNanos;
+
+  /**
+   * @param interval Cada cuántos pasos se revisan los itinerarios
+   * @param budget   Fracción del tiempo de un paso que se puede dedicar a revisarlos (infinito
+   *                 para revisar siempre todos, con lo que el resultado no depende del tiempo)
+   */
+  Rerouter(RoadMap roadMap, int interval, double budget) {
+    this.roadMap = roadMap;
+    this.interval = interval;
+    this.budget = budget;
+    weights = new double[0];
+    roadIndices = new HashMap<>();
+    trees = new HashMap<>();
+  }
+
+  /**
+   * Registra lo que ha tardado en avanzar el último paso
+   */
+  void tickFinished(long nanos) {
+    averageTickNanos = averageTickNanos == 0 ? nanos
+        : averageTickNanos + TICK_TIME_SMOOTHING * (nanos - averageTickNanos);
+  }
+
+  /**
+   * Revisa los itinerarios si toca en este paso
+   */
+  void reroute(int time) {
+    if (time % interval != 0) {
+      return;
+    }
+    long start = System.nanoTime();
+    double allowed = Double.isInfinite(budget) ? budget : budget * averageTickNanos;
+    if (allowed <= 0) {
+      return;
+    }
+    addNewRoads();
+    // Se comprueba cada VEHICLES_PER_CHECK vehículos y tras cada árbol calculado o mejorado.
+    // Si en esta vez se han revisado pesos, también antes del primer vehículo
+    int unchecked = 0;
+    if (!vehiclesTurn) {
+      if (!updateWeights(start, allowed)) {
+        return;
+      }
+      vehiclesTurn = true;
+      unchecked = VEHICLES_PER_CHECK;
+    }
+    List<Vehicle> vehicles = roadMap.getVehicles();
+    for (int checked = 0; checked < vehicles.size(); checked++) {
+      if (unchecked >= VEHICLES_PER_CHECK) {
+        if (System.nanoTime() - start >= allowed) {
+          return;
+        }
+        unchecked = 0;
+      }
+      if (nextVehicle >= vehicles.size()) {
+        nextVehicle = 0;
+      }
+      Vehicle v = vehicles.get(nextVehicle++);
+      vehiclesTurn = false;
+      boolean updatedTree = !v.hasArrived() && reroute(v);
+      unchecked = updatedTree ? VEHICLES_PER_CHECK : unchecked + 1;
+    }
+    vehiclesTurn = false;
+  }
+
+  /**
+   * Revisa el itinerario del vehículo
+   *
+   * @return Si ha hecho falta calcular o mejorar el árbol de su destino
+   */
+  private boolean reroute(Vehicle v) {
+    List<Junction> remaining = v.getItinerary();
+    if (remaining.size() < 2) {
+      return false;
+    }
+    Junction next = remaining.get(0);
+    Junction destination = remaining.get(remaining.size() - 1);
+    double current = 0;
+    for (int i = 1; i < remaining.size(); i++) {
+      current += weight(remaining.get(i).getStraightRoad(remaining.get(i - 1).getId()));
+    }
+    Tree tree = trees.get(destination);
+    boolean updatedTree = tree == null || !tree.valid || !tree.decreased.isEmpty();
+    tree = getTree(destination);
+    Double best = tree.times.get(next);
+    if (best != null && best < current * (1 - MIN_IMPROVEMENT)) {
+      List<String> path = new ArrayList<>();
+      path.add(next.getId());
+      for (Road r = tree.next.get(next); r != null; ) {
+        path.add(r.getDestiny());
+        r = tree.next.get(roadMap.junctionSearch(r.getDestiny()));
+      }
+      v.reroute(roadMap.getPath(path.toArray(new String[0])));
+    }
+    return updatedTree;
+  }
+
+  /**
+   * Da peso a las carreteras añadidas al mapa desde la última vez
+   */
+  private void addNewRoads() {
+    List<Road> roads = roadMap.getRoads();
+    int known = roadIndices.size();
+    if (roads.size() != known) {
+      // Los árboles no tienen en cuenta las carreteras nuevas
+      weights = Arrays.copyOf(weights, roads.size());
+      for (int i = known; i < roads.size(); i++) {
+        roadIndices.put(roads.get(i), i);
+        weights[i] = currentWeight(roads.get(i));
+      }
+      trees.clear();
+    }
+  }
+
+  /**
+   * Recalcula los pesos de las carreteras, continuando la vuelta anterior si no se terminó, e
+   * invalida los árboles que usan carreteras cuyo peso sube bastante. Las que bajan bastante se
+   * apuntan en cada árbol para mejorarlo cuando se use
+   *
+   * @return Si se ha terminado la vuelta dentro del presupuesto
+   */
+  private boolean updateWeights(long start, double allowed) {
+    List<Road> roads = roadMap.getRoads();
+    if (nextRoad >= roads.size()) {
+      nextRoad = 0;
+    }
+    while (nextRoad < roads.size()) {
+      int end = Math.min(roads.size(), nextRoad + ROADS_PER_CHECK);
+      for (; nextRoad < end; nextRoad++) {
+        updateWeight(roads.get(nextRoad), nextRoad);
+      }
+      if (nextRoad < roads.size() && System.nanoTime() - start >= allowed) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void updateWeight(Road r, int i) {
+    double weight = currentWeight(r);
+    if (Math.abs(weight - weights[i]) > WEIGHT_CHANGE * weights[i]) {
+      for (Tree tree : trees.values()) {
+        if (!tree.valid) {
+          continue;
+        }
+        if (weight < weights[i]) {
+          tree.decrease(r);
+        } else if (tree.next.get(roadMap.junctionSearch(r.getSource())) == r) {
+          tree.valid = false;
+        }
+      }
+      weights[i] = weight;
+    }
+  }
+
+  private double currentWeight(Road r) {
+    return r.estimatedTravelTime()
+        + roadMap.junctionSearch(r.getDestiny()).estimatedWaitingTime(r);
+  }
+
+  private double weight(Road r) {
+    return weights[roadIndices.get(r)];
+  }
+
+  private Tree getTree(Junction destination) {
+    Tree tree = trees.get(destination);
+    if (tree == null || !tree.valid) {
+      tree = new Tree(destination);
+      trees.put(destination, tree);
+    } else if (!tree.decreased.isEmpty()) {
+      tree.relax(tree.decreased);
+      tree.decreased.clear();
+    }
+    return tree;
+  }
+
+  /**
+   * Caminos más rápidos desde cada cruce hasta un destino: para cada cruce, el tiempo hasta el
+   * destino y la primera carretera del camino
+   */
+  private class Tree implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    final Map<Junction, Double> times;
+    final Map<Junction, Road> next;
+    // Carreteras cuyo peso ha bajado desde la última vez que se usó
+    final List<Road> decreased;
+    boolean valid;
+
+    Tree(Junction destination) {
+      times = new HashMap<>();
+      next = new HashMap<>();
+      decreased = new ArrayList<>();
+      valid = true;
+      times.put(destination, 0.0);
+      PriorityQueue<Step> pending = new PriorityQueue<>();
+      pending.add(new Step(destination, 0));
+      propagate(pending);
+    }
+
+    /**
+     * Apunta que el peso de la carretera ha bajado. Si hay más pendientes que carreteras sale más
+     * barato volver a calcular el árbol
+     */
+    void decrease(Road r) {
+      if (decreased.size() >= weights.length) {
+        valid = false;
+        decreased.clear();
+      } else {
+        decreased.add(r);
+      }
+    }
+
+    /**
+     * Mejora los caminos que pasan por las carreteras cuyo peso ha bajado
+     */
+    void relax(List<Road> roads) {
+      PriorityQueue<Step> pending = new PriorityQueue<>();
+      for (Road r : roads) {
+        Double time = times.get(roadMap.junctionSearch(r.getDestiny()));
+        if (time != null) {
+          improve(r, time, pending);
+        }
+      }
+      propagate(pending);
+    }
+
+    /**
+     * Algoritmo de Dijkstra sobre las carreteras en sentido contrario
+     */
+    private void propagate(PriorityQueue<Step> pending) {
+      while (!pending.isEmpty()) {
+        Step step = pending.poll();
+        if (step.time > times.get(step.junction)) {
+          continue;
+        }
+        for (Road r : step.junction.getIncomingRoads()) {
+          improve(r, step.time, pending);
+        }
+      }
+    }
+
+    private void improve(Road r, double timeFromDestiny, PriorityQueue<Step> pending) {
+      Junction source = roadMap.junctionSearch(r.getSource());
+      double time = timeFromDestiny + weight(r);
+      Double best = times.get(source);
+      if (best == null || time < best) {
+        times.put(source, time);
+        next.put(source, r);
+        pending.add(new Step(source, time));
+      }
+    }
+
+  }
+
+  private static class Step implements Comparable<Step> {
+
+    final Junction junction;
+    final double time;
+
+    Step(Junction junction, double time) {
+      this.junction = junction;
+      this.time = time;
+    }
+
+    @Override
+    public int compareTo(Step o) {
+      return Double.compare(time, o.time);
+    }
+
+  }
+
+}
@@ -1,8 +1,11 @@
 package es.ucm.fdi.model;
 
-import es.ucm.fdi.util.MultiTreeMap;
+import es.ucm.fdi.ini.IniWriter;
+import es.ucm.fdi.util.DescendingIntKeyList;
 
-import java.util.Comparator;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -13,13 +16,18 @@ import static java.util.stream.Collectors.joining;
  */
 public class Road extends SimulatedObject {
 
+  private static final long serialVersionUID = 1L;
+
   private static final String SECTION_TAG_NAME = "road_report";
   public static final String[] INFO = {"ID", "Source", "Target", "Length",
       "Max Speed", "Vehicles"};
 
   protected int length;
   protected int maxSpeed;
-  protected MultiTreeMap<Integer, Vehicle> vehicleList;
+  /**
+   * Vehículos ordenados por su posición en la carretera (de más a menos avanzados)
+   */
+  protected transient DescendingIntKeyList<Vehicle> vehicleList;
   protected String sourceId;
   protected String destinationId;
 
@@ -27,7 +35,7 @@ public class Road extends SimulatedObject {
     super(id);
     this.length = length;
     this.maxSpeed = maxSpeed;
-    vehicleList = new MultiTreeMap<>(Comparator.comparing(Integer::intValue).reversed());
+    vehicleList = new DescendingIntKeyList<>();
     this.sourceId = sourceId;
     this.destinationId = destinationId;
   }
@@ -36,6 +44,10 @@ public class Road extends SimulatedObject {
     return length;
   }
 
+  public int getMaxSpeed() {
+    return maxSpeed;
+  }
+
   public String getSource() {
     return sourceId;
   }
@@ -44,12 +56,33 @@ public class Road extends SimulatedObject {
     return destinationId;
   }
 
-  public void vehicleIn(Vehicle vehicle) {
-    vehicleList.putValue(0, vehicle);
+  /**
+   * Sincronizado porque en modo paralelo el cruce de origen (que mete vehículos) y el de destino
+   * (que los saca) pueden avanzar a la vez
+   */
+  public synchronized void vehicleIn(Vehicle vehicle) {
+    if (vehicleList.isEmpty() && scheduler != null) {
+      scheduler.wake(this);
+    }
+    vehicleList.add(0, vehicle);
+    markChanged();
+  }
+
+  public synchronized void vehicleOut(Vehicle vehicle) {
+    if (vehicleList.remove(vehicle)) {
+      markChanged();
+    }
+  }
+
+  int vehicleCount() {
+    return vehicleList.size();
   }
 
-  public void vehicleOut(Vehicle vehicle) {
-    vehicleList.removeValue(vehicle.getLocation(), vehicle);
+  /**
+   * Determina si hay algún vehículo en la carretera (si no, avanzar no hace nada)
+   */
+  boolean hasVehicles() {
+    return !vehicleList.isEmpty();
   }
 
   /**
@@ -58,30 +91,92 @@ public class Road extends SimulatedObject {
    */
   @Override
   public void advance() {
-    if (vehicleList.sizeOfValues() > 0) {
+    if (!vehicleList.isEmpty()) {
       int baseSpeed = calculateBaseSpeed();
       int faultyVehicles = 0;
-      // Nuevo mapa donde almacenar los vehículos
-      MultiTreeMap<Integer, Vehicle> temp =
-          new MultiTreeMap<>(Comparator.comparing(Integer::intValue).reversed());
-      for (Vehicle v : vehicleList.innerValues()) {
+      for (int i = 0; i < vehicleList.size(); i++) {
+        Vehicle v = vehicleList.get(i);
         int reductionFactor = calculateReductionFactor(faultyVehicles);
         if (v.getFaulty() > 0) {
           faultyVehicles++;
         }
         v.setCurrentSpeed(baseSpeed / reductionFactor);
         v.advance();
-        temp.putValue(v.getLocation(), v);
+        vehicleList.setKey(i, v.getLocation());
       }
-      vehicleList = temp;
+      // Se reordena sobre la misma lista en lugar de crear una nueva cada vez
+      vehicleList.restoreOrder();
+      markChanged();
     }
   }
 
+  /**
+   * Devuelve cuántos pasos seguidos se pueden dar de golpe con {@link #skip(int)}: mientras
+   * ningún vehículo llegue al cruce, empiece o acabe una avería ni se adelante a un vehículo
+   * averiado, todos mantienen su velocidad
+   */
+  int steadyTicks() {
+    int baseSpeed = calculateBaseSpeed();
+    int faultyVehicles = 0;
+    // Posición del último vehículo averiado, el más cercano por delante a los siguientes
+    int faultyLocation = 0;
+    int ticks = Integer.MAX_VALUE;
+    for (int i = 0; i < vehicleList.size() && ticks > 0; i++) {
+      Vehicle v = vehicleList.get(i);
+      int speed = baseSpeed / calculateReductionFactor(faultyVehicles);
+      ticks = Math.min(ticks, v.steadyTicks(speed));
+      if (v.getFaulty() > 0) {
+        faultyVehicles++;
+        faultyLocation = v.getLocation();
+      } else if (faultyVehicles > 0 && v.steadySpeed(speed) > 0) {
+        ticks = Math.min(ticks, (faultyLocation - v.getLocation()) / v.steadySpeed(speed) + 1);
+      }
+    }
+    return ticks;
+  }
+
+  /**
+   * Hace avanzar a los vehículos de golpe tantos pasos como se indiquen (como mucho
+   * {@link #steadyTicks()})
+   */
+  void skip(int ticks) {
+    if (!vehicleList.isEmpty()) {
+      int baseSpeed = calculateBaseSpeed();
+      int faultyVehicles = 0;
+      for (int i = 0; i < vehicleList.size(); i++) {
+        Vehicle v = vehicleList.get(i);
+        int reductionFactor = calculateReductionFactor(faultyVehicles);
+        if (v.getFaulty() > 0) {
+          faultyVehicles++;
+        }
+        v.skip(ticks, baseSpeed / reductionFactor);
+        vehicleList.setKey(i, v.getLocation());
+      }
+      // Como las velocidades no cambian, el orden final es el mismo que paso a paso
+      vehicleList.restoreOrder();
+      markChanged();
+    }
+  }
+
+  /**
+   * Estima el tiempo que tardaría un vehículo en recorrer la carretera con la ocupación actual
+   */
+  double estimatedTravelTime() {
+    int faultyVehicles = 0;
+    for (int i = 0; i < vehicleList.size(); i++) {
+      if (vehicleList.get(i).getFaulty() > 0) {
+        faultyVehicles++;
+      }
+    }
+    int speed = calculateBaseSpeed() / calculateReductionFactor(faultyVehicles);
+    return (double) length / Math.max(1, speed);
+  }
+
   /**
    * Calcula la velocidad base que tienen los vehículo de la carrtera
    */
   protected int calculateBaseSpeed() {
-    return Math.min(maxSpeed, maxSpeed / Math.max(vehicleList.sizeOfValues(), 1) + 1);
+    return Math.min(maxSpeed, maxSpeed / Math.max(vehicleList.size(), 1) + 1);
   }
 
   /**
@@ -91,11 +186,40 @@ public class Road extends SimulatedObject {
     return faultyVehicles > 0 ? 2 : 1;
   }
 
+  /**
+   * Guarda los vehículos en su orden con sus claves
+   */
+  @Override
+  void writeLinks(ObjectOutputStream out, RoadMap map) throws IOException {
+    out.writeInt(vehicleList.size());
+    for (int i = 0; i < vehicleList.size(); i++) {
+      out.writeInt(map.indexOf(vehicleList.get(i)));
+      out.writeInt(vehicleList.getKey(i));
+    }
+  }
+
   @Override
-  public void fillReportDetails(Map<String, String> kvps) {
-    kvps.put("state", vehicleList.valuesList().stream()
-        .map(v -> "(" + v + "," + v.getLocation() + ")")
-        .collect(joining(",")));
+  void readLinks(ObjectInputStream in, RoadMap map) throws IOException {
+    int size = in.readInt();
+    vehicleList = new DescendingIntKeyList<>(size);
+    for (int i = 0; i < size; i++) {
+      Vehicle v = (Vehicle) map.getObject(in.readInt());
+      // Las claves ya están ordenadas, así que cada vehículo se añade al final
+      vehicleList.add(in.readInt(), v);
+    }
+  }
+
+  @Override
+  protected void writeReportDetails(IniWriter writer) {
+    writer.key("state");
+    for (int i = 0; i < vehicleList.size(); i++) {
+      Vehicle v = vehicleList.get(i);
+      if (i > 0) {
+        writer.append(',');
+      }
+      writer.append('(').append(v.getId()).append(',').append(v.getLocation()).append(')');
+    }
+    writer.endValue();
   }
 
   @Override
@@ -111,7 +235,7 @@ public class Road extends SimulatedObject {
     result.put(INFO[2], destinationId);
     result.put(INFO[3], "" + length);
     result.put(INFO[4], "" + maxSpeed);
-    result.put(INFO[5], "[" + vehicleList.valuesList().stream()
+    result.put(INFO[5], "[" + vehicleList.stream()
         .map(SimulatedObject::getId)
         .collect(joining(",")) + "]");
     return result;
@@ -1,19 +1,47 @@
 package es.ucm.fdi.model;
 
+import es.ucm.fdi.util.IdIndex;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
 import java.util.*;
 
 /**
- * Clase que representa el mapa de carreteras, uniendo cruces, carrteras y vehículos
+ * Clase que representa el mapa de carreteras, uniendo cruces, carrteras y vehículos.
+ * <p>
+ * Al serializarlo se escriben primero todos los objetos, cada uno sin referencias a los demás, y
+ * después las referencias entre ellos como índices (ver
+ * {@link SimulatedObject#writeLinks(ObjectOutputStream, RoadMap)}). Serializar directamente las
+ * referencias recorrería el mapa en profundidad: de un vehículo a su carretera, a su cruce,
+ * a otra carretera... y en mapas grandes desbordaría la pila
  */
-public class RoadMap {
+public class RoadMap implements Serializable {
+
+  private static final long serialVersionUID = 1L;
 
-  private Map<String, Vehicle> vehicles;
-  private Map<String, Road> roads;
-  private Map<String, Junction> junctions;
+  /**
+   * Índice de cada objeto en objects a partir de su id. Los ids son únicos entre todos los tipos,
+   * así que basta una sola búsqueda para encontrar cualquier objeto
+   */
+  private transient IdIndex ids;
+  private transient List<SimulatedObject> objects;
 
-  private Collection<Vehicle> unmodifiableVehicleList;
-  private Collection<Road> unmodifiableRoadList;
-  private Collection<Junction> unmodifiableJunctionList;
+  // Listas en orden de inserción para poder recorrerlas (y repartirlas) por índice
+  private transient List<Vehicle> vehicleList;
+  private transient List<Road> roadList;
+  private transient List<Junction> junctionList;
+
+  private transient List<Vehicle> unmodifiableVehicleList;
+  private transient List<Road> unmodifiableRoadList;
+  private transient List<Junction> unmodifiableJunctionList;
+
+  /**
+   * Itinerarios ya creados, para que los vehículos con el mismo itinerario lo compartan
+   */
+  private transient Map<List<String>, Route> routes;
+  private transient RoutePlanner planner;
 
   public RoadMap() {
     reset();
@@ -23,19 +51,23 @@ public class RoadMap {
    * Devuelve el mapa a su estado inicial
    */
   public void reset() {
-    vehicles = new LinkedHashMap<>();
-    unmodifiableVehicleList = Collections.unmodifiableCollection(vehicles.values());
-    roads = new LinkedHashMap<>();
-    unmodifiableRoadList = Collections.unmodifiableCollection(roads.values());
-    junctions = new LinkedHashMap<>();
-    unmodifiableJunctionList = Collections.unmodifiableCollection(junctions.values());
+    ids = new IdIndex();
+    objects = new ArrayList<>();
+    vehicleList = new ArrayList<>();
+    unmodifiableVehicleList = Collections.unmodifiableList(vehicleList);
+    roadList = new ArrayList<>();
+    unmodifiableRoadList = Collections.unmodifiableList(roadList);
+    junctionList = new ArrayList<>();
+    unmodifiableJunctionList = Collections.unmodifiableList(junctionList);
+    routes = new HashMap<>();
+    planner = new RoutePlanner(this);
   }
 
   /**
    * Determina si el objeto con el id indicado se encuentra en el mapa
    */
   public boolean contains(String id) {
-    return vehicles.containsKey(id) || roads.containsKey(id) || junctions.containsKey(id);
+    return ids.indexOf(id) >= 0;
   }
 
   /**
@@ -61,13 +93,14 @@ public class RoadMap {
     List<Junction> itinerary = v.getItinerary();
     // Comprueba que el itinerario del vehículo es posible
     for (Junction j : itinerary) {
-      if (!junctions.containsKey(j.getId())) {
+      if (junctionSearch(j.getId()) == null) {
         throw new IllegalArgumentException("Junction " + j + " in vehicle's " + v
             + " itinerary does not exists in the road map");
       }
     }
     v.moveToNextRoad();
-    vehicles.put(v.getId(), v);
+    register(v);
+    vehicleList.add(v);
   }
 
   /**
@@ -75,78 +108,105 @@ public class RoadMap {
    */
   private void addRoad(Road r) {
     Junction destination = junctionSearch(r.getDestiny());
-    if (!junctions.containsKey(r.getSource())) {
+    if (junctionSearch(r.getSource()) == null) {
       throw new IllegalArgumentException("Couldn't find source for road " + r.getId());
     }
     if (destination == null) {
       throw new IllegalArgumentException("Couldn't find destination for road " + r.getId());
     }
     destination.addRoad(r);
-    roads.put(r.getId(), r);
+    register(r);
+    roadList.add(r);
+    planner.roadsChanged();
   }
 
   /**
    * Añade un cruce al mapa
    */
   private void addJunction(Junction j) {
-    junctions.put(j.getId(), j);
+    register(j);
+    junctionList.add(j);
+  }
+
+  /**
+   * Asigna al objeto el siguiente índice
+   */
+  private void register(SimulatedObject o) {
+    ids.add(o.getId());
+    objects.add(o);
+  }
+
+  /**
+   * Devuelve la posición del objeto en el mapa (en orden de inserción) o -1 si no está
+   */
+  int indexOf(SimulatedObject o) {
+    return ids.indexOf(o.getId());
+  }
+
+  /**
+   * Devuelve el número de objetos del mapa
+   */
+  int size() {
+    return objects.size();
+  }
+
+  /**
+   * Devuelve el objeto en la posición indicada del mapa
+   */
+  SimulatedObject getObject(int index) {
+    return objects.get(index);
   }
 
   /**
    * Devuelve el objeto buscado si existe o null en caso contrario
    */
   public SimulatedObject searchById(String id) {
-    if (vehicles.containsKey(id)) {
-      return vehicles.get(id);
-    }
-    if (roads.containsKey(id)) {
-      return roads.get(id);
-    }
-    if (junctions.containsKey(id)) {
-      return junctions.get(id);
-    }
-    return null;
+    int index = ids.indexOf(id);
+    return index < 0 ? null : objects.get(index);
   }
 
   /**
    * Devuelve el vehículo con el id indicado si existe o null en caso contrario
    */
   public Vehicle vehicleSearch(String id) {
-    return vehicles.get(id);
+    SimulatedObject o = searchById(id);
+    return o instanceof Vehicle ? (Vehicle) o : null;
   }
 
   /**
    * Devuelve la carretera con el id indicado si existe o null en caso contrario
    */
   public Road roadSearch(String id) {
-    return roads.get(id);
+    SimulatedObject o = searchById(id);
+    return o instanceof Road ? (Road) o : null;
   }
 
   /**
    * Devuelve el cruce con el id indicado si existe o null en caso contrario
    */
   public Junction junctionSearch(String id) {
-    return junctions.get(id);
+    SimulatedObject o = searchById(id);
+    return o instanceof Junction ? (Junction) o : null;
   }
 
   /**
-   * Devuelve una colección no modificable con todos los vehiculos del mapa
+   * Devuelve una lista no modificable con todos los vehiculos del mapa
    */
-  public Collection<Vehicle> getVehicles() {
+  public List<Vehicle> getVehicles() {
     return unmodifiableVehicleList;
   }
 
   /**
-   * Devuelve una colección no modificable con todas las carreteras del mapa
+   * Devuelve una lista no modificable con todas las carreteras del mapa
    */
-  public Collection<Road> getRoads() {
+  public List<Road> getRoads() {
     return unmodifiableRoadList;
   }
 
   /**
-   * Devuelve una colección no modificable con todos los cruces del mapa
+   * Devuelve una lista no modificable con todos los cruces del mapa
    */
-  public Collection<Junction> getJunctions() {
+  public List<Junction> getJunctions() {
     return unmodifiableJunctionList;
   }
 
@@ -156,7 +216,7 @@ public class RoadMap {
    */
   public Set<Road> getGreenRoads() {
     Set<Road> result = new HashSet<>();
-    for (Junction j : junctions.values()) {
+    for (Junction j : junctionList) {
       Road green = j.getGreenRoad();
       if (green != null) {
         result.add(green);
@@ -166,11 +226,31 @@ public class RoadMap {
   }
 
   /**
-   * Devuelve una cola de cruces a partir de sus ids si todos existen y hay alguna carretera que
-   * los une
+   * Devuelve el itinerario con los cruces indicados si todos existen y hay alguna carretera que
+   * los une. Las llamadas con los mismos ids devuelven el mismo itinerario
+   */
+  public Route getPath(String[] path) {
+    List<String> key = Arrays.asList(path);
+    Route route = routes.get(key);
+    if (route == null) {
+      route = new Route(findPath(path));
+      routes.put(key, route);
+    }
+    return route;
+  }
+
+  /**
+   * Devuelve el itinerario más rápido entre dos cruces según la longitud y la velocidad máxima de
+   * las carreteras
+   *
+   * @throws IllegalArgumentException Si algún cruce no existe o no hay ningún camino entre ellos
    */
-  public Queue<Junction> getPath(String[] path) {
-    Queue<Junction> result = new ArrayDeque<>();
+  public Route getShortestPath(String origin, String destination) {
+    return planner.plan(origin, destination);
+  }
+
+  private List<Junction> findPath(String[] path) {
+    List<Junction> result = new ArrayList<>(path.length);
     String previousJunctionId = null;
     for (String id : path) {
       Junction j = junctionSearch(id);
@@ -186,4 +266,46 @@ public class RoadMap {
     return result;
   }
 
+  /**
+   * Orden en el que se guardan las referencias: los itinerarios de los vehículos necesitan las
+   * carreteras entrantes de los cruces
+   */
+  private List<List<? extends SimulatedObject>> linkOrder() {
+    return Arrays.asList(junctionList, roadList, vehicleList);
+  }
+
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    out.defaultWriteObject();
+    out.writeInt(objects.size());
+    for (SimulatedObject o : objects) {
+      out.writeObject(o);
+    }
+    for (List<? extends SimulatedObject> list : linkOrder()) {
+      for (SimulatedObject o : list) {
+        o.writeLinks(out, this);
+      }
+    }
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    reset();
+    for (int i = in.readInt(); i > 0; i--) {
+      SimulatedObject o = (SimulatedObject) in.readObject();
+      register(o);
+      if (o instanceof Vehicle) {
+        vehicleList.add((Vehicle) o);
+      } else if (o instanceof Road) {
+        roadList.add((Road) o);
+      } else if (o instanceof Junction) {
+        junctionList.add((Junction) o);
+      }
+    }
+    for (List<? extends SimulatedObject> list : linkOrder()) {
+      for (SimulatedObject o : list) {
+        o.readLinks(in, this);
+      }
+    }
+  }
+
 }
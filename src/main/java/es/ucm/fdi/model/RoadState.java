@@ -0,0 +1,31 @@
+package es.ucm.fdi.model;
+
+/**
+ * Estado inmutable de una carretera
+ */
+public class RoadState extends ObjectState {
+
+  private final String source;
+  private final String destiny;
+  private final int length;
+
+  RoadState(Road road) {
+    super(road);
+    source = road.getSource();
+    destiny = road.getDestiny();
+    length = road.getLength();
+  }
+
+  public String getSource() {
+    return source;
+  }
+
+  public String getDestiny() {
+    return destiny;
+  }
+
+  public int getLength() {
+    return length;
+  }
+
+}
@@ -1,6 +1,6 @@
 package es.ucm.fdi.model;
 
-import java.util.Map;
+import es.ucm.fdi.ini.IniWriter;
 
 /**
  * Cruce que determina la duración del siguiente semáforo en verde en función del número de
@@ -8,6 +8,8 @@ import java.util.Map;
  */
 public class RoundRobinJunction extends JunctionWithTimeSlice {
 
+  private static final long serialVersionUID = 1L;
+
   public static final String TYPE = "rr";
 
   private int maxTimeSlice;
@@ -39,9 +41,14 @@ public class RoundRobinJunction extends JunctionWithTimeSlice {
   }
 
   @Override
-  public void fillReportDetails(Map<String, String> kvps) {
-    super.fillReportDetails(kvps);
-    kvps.put("type", TYPE);
+  protected void writeReportDetails(IniWriter writer) {
+    super.writeReportDetails(writer);
+    writer.setValue("type", TYPE);
+  }
+
+  @Override
+  protected String getType() {
+    return TYPE;
   }
 
 }
@@ -0,0 +1,68 @@
+package es.ucm.fdi.model;
+
+import java.util.*;
+
+/**
+ * Itinerario inmutable: la secuencia de cruces que recorre un vehículo. Como no cambia, todos los
+ * vehículos con el mismo itinerario pueden compartir la misma instancia (ver
+ * {@link RoadMap#getPath(String[])}) y cada uno guarda sólo su posición en él.
+ * <p>
+ * Es una cola de sólo lectura para que pueda usarse donde antes se usaba la cola de cruces de
+ * cada vehículo
+ */
+public final class Route extends AbstractQueue<Junction> {
+
+  private final Junction[] junctions;
+
+  public Route(Collection<Junction> junctions) {
+    this.junctions = junctions.toArray(new Junction[0]);
+  }
+
+  /**
+   * Devuelve un itinerario igual a la colección, que es la propia colección si ya lo es
+   */
+  static Route of(Collection<Junction> junctions) {
+    return junctions instanceof Route ? (Route) junctions : new Route(junctions);
+  }
+
+  /**
+   * Devuelve el cruce en la posición indicada o null si el itinerario no llega a ella
+   */
+  public Junction get(int index) {
+    return index < junctions.length ? junctions[index] : null;
+  }
+
+  /**
+   * Devuelve una vista no modificable de los cruces a partir de la posición indicada
+   */
+  public List<Junction> from(int index) {
+    return Collections.unmodifiableList(Arrays.asList(junctions)
+        .subList(Math.min(index, junctions.length), junctions.length));
+  }
+
+  @Override
+  public Iterator<Junction> iterator() {
+    return from(0).iterator();
+  }
+
+  @Override
+  public int size() {
+    return junctions.length;
+  }
+
+  @Override
+  public boolean offer(Junction junction) {
+    throw new UnsupportedOperationException("Routes can't be modified");
+  }
+
+  @Override
+  public Junction poll() {
+    throw new UnsupportedOperationException("Routes can't be modified");
+  }
+
+  @Override
+  public Junction peek() {
+    return get(0);
+  }
+
+}
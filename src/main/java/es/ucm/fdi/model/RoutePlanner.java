@@ -0,0 +1,127 @@
+package es.ucm.fdi.model;
+
+import java.util.*;
+
+/**
+ * Calcula el itinerario más rápido entre dos cruces del mapa con el algoritmo de Dijkstra, usando
+ * como peso de cada carretera el tiempo que se tarda en recorrerla a su velocidad máxima. Los
+ * itinerarios calculados se guardan por origen y destino hasta que se añade una carretera
+ */
+class RoutePlanner {
+
+  private final RoadMap roadMap;
+
+  /**
+   * Carreteras que salen de cada cruce, por id del cruce (null si hay que volver a calcularlas)
+   */
+  private Map<String, List<Road>> outgoingRoads;
+
+  private final Map<List<String>, Route> routes;
+
+  RoutePlanner(RoadMap roadMap) {
+    this.roadMap = roadMap;
+    routes = new HashMap<>();
+  }
+
+  /**
+   * Descarta los itinerarios calculados (deja de haber garantía de que sean los más rápidos)
+   */
+  void roadsChanged() {
+    outgoingRoads = null;
+    routes.clear();
+  }
+
+  /**
+   * Devuelve el itinerario más rápido del origen al destino
+   *
+   * @throws IllegalArgumentException Si algún cruce no existe o no hay ningún camino entre ellos
+   */
+  Route plan(String origin, String destination) {
+    List<String> key = Arrays.asList(origin, destination);
+    Route route = routes.get(key);
+    if (route == null) {
+      route = roadMap.getPath(search(origin, destination));
+      routes.put(key, route);
+    }
+    return route;
+  }
+
+  /**
+   * Devuelve los ids de los cruces del camino más rápido
+   */
+  private String[] search(String origin, String destination) {
+    for (String id : new String[]{origin, destination}) {
+      if (roadMap.junctionSearch(id) == null) {
+        throw new IllegalArgumentException("Junction " + id + " does not exit in road map");
+      }
+    }
+    if (origin.equals(destination)) {
+      throw new IllegalArgumentException("Origin and destination must be different junctions");
+    }
+    if (outgoingRoads == null) {
+      outgoingRoads = new HashMap<>();
+      for (Road r : roadMap.getRoads()) {
+        outgoingRoads.computeIfAbsent(r.getSource(), id -> new ArrayList<>()).add(r);
+      }
+    }
+
+    Map<String, Double> times = new HashMap<>();
+    // Última carretera del mejor camino encontrado hasta cada cruce
+    Map<String, Road> previous = new HashMap<>();
+    PriorityQueue<Step> pending = new PriorityQueue<>();
+    times.put(origin, 0.0);
+    pending.add(new Step(origin, 0));
+    while (!pending.isEmpty()) {
+      Step step = pending.poll();
+      if (step.junction.equals(destination)) {
+        return path(origin, destination, previous);
+      }
+      if (step.time > times.get(step.junction)) {
+        // Ya se había llegado antes por otro camino
+        continue;
+      }
+      for (Road r : outgoingRoads.getOrDefault(step.junction, Collections.emptyList())) {
+        double time = step.time + (double) r.getLength() / r.getMaxSpeed();
+        Double best = times.get(r.getDestiny());
+        if (best == null || time < best) {
+          times.put(r.getDestiny(), time);
+          previous.put(r.getDestiny(), r);
+          pending.add(new Step(r.getDestiny(), time));
+        }
+      }
+    }
+    throw new IllegalArgumentException("No route connects " + origin + " and " + destination);
+  }
+
+  private static String[] path(String origin, String destination, Map<String, Road> previous) {
+    Deque<String> path = new ArrayDeque<>();
+    String junction = destination;
+    path.addFirst(junction);
+    while (!junction.equals(origin)) {
+      junction = previous.get(junction).getSource();
+      path.addFirst(junction);
+    }
+    return path.toArray(new String[0]);
+  }
+
+  /**
+   * Cruce alcanzado en un tiempo dado
+   */
+  private static class Step implements Comparable<Step> {
+
+    final String junction;
+    final double time;
+
+    Step(String junction, double time) {
+      this.junction = junction;
+      this.time = time;
+    }
+
+    @Override
+    public int compareTo(Step o) {
+      return Double.compare(time, o.time);
+    }
+
+  }
+
+}
@@ -0,0 +1,179 @@
+package es.ucm.fdi.model;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Decide qué carreteras y cruces tienen que avanzar en cada paso, para que el coste de un paso
+ * dependa de los objetos con trabajo pendiente y no del tamaño del mapa.
+ * <p>
+ * Una carretera sólo avanza mientras tiene vehículos. Un cruce sin vehículos esperando se duerme
+ * hasta que le llega uno: sin vehículos sus semáforos cambian siempre igual, así que los avances
+ * que se salta se le aplican de golpe ({@link Junction#skipIdle(int)}) sólo cuando hace falta su
+ * estado ({@link #catchUp(Junction)}).
+ * <p>
+ * Los objetos avisan al planificador desde los hilos que los hacen avanzar, por eso esos métodos
+ * están sincronizados
+ */
+class Scheduler implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Pasos ya ejecutados (coincide con el tiempo actual del simulador)
+   */
+  private int time;
+
+  /**
+   * Carreteras que pueden tener vehículos (las que se han quedado vacías se quitan al empezar
+   * el siguiente paso)
+   */
+  private final Set<Road> activeRoads;
+  private final Set<Junction> awakeJunctions;
+
+  /**
+   * Pasos ya aplicados a cada cruce dormido
+   */
+  private final Map<Junction, Integer> sleepingJunctions;
+
+  Scheduler() {
+    activeRoads = new LinkedHashSet<>();
+    awakeJunctions = new LinkedHashSet<>();
+    sleepingJunctions = new HashMap<>();
+  }
+
+  /**
+   * Empieza a planificar un objeto recién añadido al mapa
+   */
+  void add(SimulatedObject o) {
+    o.scheduler = this;
+    if (o instanceof Road && ((Road) o).hasVehicles()) {
+      wake((Road) o);
+    } else if (o instanceof Junction) {
+      wake((Junction) o);
+    }
+  }
+
+  /**
+   * Vuelve a asociar los objetos de un mapa restaurado con este planificador, restaurado con él
+   */
+  void attach(RoadMap map) {
+    for (List<? extends SimulatedObject> objects
+        : Arrays.asList(map.getJunctions(), map.getRoads(), map.getVehicles())) {
+      for (SimulatedObject o : objects) {
+        o.scheduler = this;
+      }
+    }
+  }
+
+  /**
+   * Hace que la carretera avance hasta que se quede sin vehículos
+   */
+  synchronized void wake(Road road) {
+    activeRoads.add(road);
+  }
+
+  /**
+   * Hace que el cruce avance en cada paso (empezando por el actual si aún no han avanzado los
+   * cruces) hasta que se quede sin vehículos esperando
+   */
+  synchronized void wake(Junction junction) {
+    catchUp(junction);
+    sleepingJunctions.remove(junction);
+    awakeJunctions.add(junction);
+  }
+
+  /**
+   * Aplica al cruce, si está dormido, los pasos que se ha saltado
+   */
+  synchronized void catchUp(Junction junction) {
+    Integer syncedUntil = sleepingJunctions.get(junction);
+    if (syncedUntil != null && syncedUntil < time) {
+      junction.skipIdle(time - syncedUntil);
+      sleepingJunctions.put(junction, time);
+    }
+  }
+
+  /**
+   * Aplica a todos los cruces dormidos los pasos que se han saltado
+   */
+  void catchUpAll() {
+    for (Map.Entry<Junction, Integer> e : sleepingJunctions.entrySet()) {
+      if (e.getValue() < time) {
+        e.getKey().skipIdle(time - e.getValue());
+        e.setValue(time);
+      }
+    }
+  }
+
+  /**
+   * Devuelve las carreteras que tienen que avanzar en este paso
+   */
+  List<Road> roadsToAdvance() {
+    activeRoads.removeIf(r -> !r.hasVehicles());
+    return new ArrayList<>(activeRoads);
+  }
+
+  /**
+   * Devuelve los cruces que tienen que avanzar en este paso. Se llama después de que avancen
+   * las carreteras, que pueden despertar cruces
+   */
+  List<Junction> junctionsToAdvance() {
+    return new ArrayList<>(awakeJunctions);
+  }
+
+  /**
+   * Devuelve el número de vehículos esperando en los cruces (los dormidos no tienen ninguno)
+   */
+  int queuedVehicles() {
+    int count = 0;
+    for (Junction j : awakeJunctions) {
+      count += j.queuedVehicles();
+    }
+    return count;
+  }
+
+  /**
+   * Devuelve cuántos pasos seguidos se pueden dar de golpe con {@link #skip(int)}
+   */
+  int steadyTicks() {
+    int ticks = Integer.MAX_VALUE;
+    for (Road r : activeRoads) {
+      ticks = Math.min(ticks, r.steadyTicks());
+    }
+    for (Junction j : awakeJunctions) {
+      ticks = Math.min(ticks, j.steadyTicks());
+    }
+    return ticks;
+  }
+
+  /**
+   * Da de golpe tantos pasos como se indiquen (como mucho {@link #steadyTicks()}). Los cruces
+   * dormidos se ponen al día cuando haga falta, como siempre
+   */
+  void skip(int ticks) {
+    for (Road r : activeRoads) {
+      r.skip(ticks);
+    }
+    for (Junction j : awakeJunctions) {
+      j.skipIdle(ticks);
+    }
+    time += ticks;
+  }
+
+  /**
+   * Duerme los cruces que se han quedado sin vehículos esperando y da el paso por terminado
+   */
+  void tickFinished() {
+    Iterator<Junction> it = awakeJunctions.iterator();
+    while (it.hasNext()) {
+      Junction j = it.next();
+      if (!j.hasWaitingVehicles()) {
+        it.remove();
+        sleepingJunctions.put(j, time + 1);
+      }
+    }
+    time++;
+  }
+
+}
@@ -1,20 +1,44 @@
 package es.ucm.fdi.model;
 
+import es.ucm.fdi.ini.IniSection;
+import es.ucm.fdi.ini.IniSectionWriter;
+import es.ucm.fdi.ini.IniWriter;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
- * Clase que representa un objeto abstracto de la simulación
+ * Clase que representa un objeto abstracto de la simulación. Al serializarlo sólo se guarda su
+ * propio estado: las referencias a otros objetos del mapa las guarda el mapa (ver
+ * {@link #writeLinks(ObjectOutputStream, RoadMap)})
  */
-public abstract class SimulatedObject implements Describable {
+public abstract class SimulatedObject implements Describable, Serializable {
+
+  private static final long serialVersionUID = 1L;
 
   /**
    * Id único de cada objeto
    */
   protected final String id;
 
+  /**
+   * Indica si el estado del objeto ha cambiado desde la última vez que se consultó (los objetos
+   * nuevos se consideran cambiados)
+   */
+  private boolean changed;
+
+  /**
+   * Planificador que decide cuándo avanza el objeto (null si no lo gestiona ninguno)
+   */
+  transient Scheduler scheduler;
+
   public SimulatedObject(String id) {
     this.id = id;
+    changed = true;
   }
 
   /**
@@ -24,15 +48,22 @@ public abstract class SimulatedObject implements Describable {
   public abstract void advance();
 
   /**
-   * Rellena los datos del objeto para poder ser impresos en su report
+   * Escribe los datos propios del objeto en su report
    */
-  public abstract void fillReportDetails(Map<String, String> kvps);
+  protected abstract void writeReportDetails(IniWriter writer);
 
   /**
    * Devuelve el nombre del tipo del objeto para el report
    */
   protected abstract String getReportHeader();
 
+  /**
+   * Devuelve el tipo concreto del objeto que aparece en su report o null si no tiene
+   */
+  protected String getType() {
+    return null;
+  }
+
   @Override
   public abstract Map<String, String> describe();
 
@@ -41,14 +72,61 @@ public abstract class SimulatedObject implements Describable {
   }
 
   /**
-   * Genera el informe utilizando los detalles del objeto
+   * Marca el objeto como cambiado para que el simulador lo notifique al acabar el paso
+   */
+  protected void markChanged() {
+    changed = true;
+  }
+
+  /**
+   * Devuelve si el objeto ha cambiado desde la última llamada y borra la marca
+   */
+  boolean pollChanged() {
+    boolean result = changed;
+    changed = false;
+    return result;
+  }
+
+  /**
+   * Escribe las referencias a otros objetos del mapa como sus índices en él. Así serializar un
+   * objeto no obliga a serializar antes todos los que se alcanzan desde él, que en un mapa
+   * grande desbordaría la pila
+   */
+  void writeLinks(ObjectOutputStream out, RoadMap map) throws IOException {
+  }
+
+  /**
+   * Restaura las referencias escritas con {@link #writeLinks(ObjectOutputStream, RoadMap)}
+   * cuando todos los objetos del mapa ya se han leído
+   */
+  void readLinks(ObjectInputStream in, RoadMap map) throws IOException {
+  }
+
+  /**
+   * Escribe el informe del objeto como una sección ini
+   */
+  public void writeReport(IniWriter writer, int time) {
+    writer.beginSection(getReportHeader());
+    writer.setValue("id", id);
+    writer.setValue("time", time);
+    writeReportDetails(writer);
+    writer.endSection();
+  }
+
+  /**
+   * Genera el informe en un mapa (clave->valor) en el que la cabecera está asociada a la clave
+   * vacía. Pensado para consultas puntuales: los informes de la simulación se escriben
+   * directamente con {@link #writeReport(IniWriter, int)}
    */
   public Map<String, String> generateReport(int time) {
+    IniSectionWriter writer = new IniSectionWriter();
+    writeReport(writer, time);
+    IniSection section = writer.getSections().get(0);
     Map<String, String> kvps = new LinkedHashMap<>();
-    kvps.put("", getReportHeader());
-    kvps.put("id", id);
-    kvps.put("time", "" + time);
-    fillReportDetails(kvps);
+    kvps.put("", section.getTag());
+    for (String key : section.getKeys()) {
+      kvps.put(key, section.getValue(key));
+    }
     return kvps;
   }
 
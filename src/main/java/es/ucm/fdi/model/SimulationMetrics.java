@@ -0,0 +1,384 @@
+package es.ucm.fdi.model;
+
+import es.ucm.fdi.exceptions.SimulatorError;
+import es.ucm.fdi.util.Log2Histogram;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Mide en qué se va el tiempo de cada paso de la simulación (ver
+ * {@link TrafficSimulator#setMetrics(SimulationMetrics)}): lo que tarda cada fase, cuántos
+ * vehículos circulan, esperan y llegan y cuánta memoria se reserva. Los tiempos se acumulan en
+ * histogramas logarítmicos, que no crecen ni reservan memoria al medir.
+ * <p>
+ * Los pasos se miden en el hilo de la simulación y se pueden consultar desde cualquier otro: a
+ * través de observadores que reciben cada paso, de los getters o por JMX. Si el simulador no
+ * tiene métricas, medir sólo le cuesta comprobar un null en cada fase
+ */
+public class SimulationMetrics implements SimulationMetricsMXBean {
+
+  public static final String OBJECT_NAME = "es.ucm.fdi:type=SimulationMetrics";
+
+  /**
+   * Fases de un paso, en el orden en el que se ejecutan
+   */
+  public enum Phase {
+    /**
+     * Leer y ejecutar los eventos del paso
+     */
+    EVENTS,
+    /**
+     * Cambiar los itinerarios según el tráfico
+     */
+    REROUTING,
+    /**
+     * Avanzar las carreteras (o saltar pasos de golpe)
+     */
+    ROADS,
+    /**
+     * Avanzar los cruces
+     */
+    JUNCTIONS,
+    /**
+     * Recoger los objetos que han cambiado y crear la instantánea
+     */
+    CHANGES,
+    /**
+     * Avisar a los observadores del simulador
+     */
+    LISTENERS,
+    /**
+     * Escribir los informes
+     */
+    REPORTS,
+    /**
+     * Serializar los puntos de control
+     */
+    CHECKPOINTS
+  }
+
+  private static final Phase[] PHASES = Phase.values();
+
+  private final Log2Histogram tickNanos;
+  private final Log2Histogram[] phaseNanos;
+  private final Log2Histogram allocatedBytes;
+  private final List<Listener> listeners;
+  // Null si la JVM no permite medir la memoria reservada por un hilo
+  private final com.sun.management.ThreadMXBean threads;
+
+  // Paso en curso (sólo los usa el hilo de la simulación)
+  private boolean measuring;
+  private long tickStart;
+  private long phaseStart;
+  private long allocationStart;
+  // Tiempo de cada fase (-1 si aún no se ha ejecutado)
+  private final long[] currentPhaseNanos;
+
+  private volatile int vehiclesMoving;
+  private volatile int vehiclesQueued;
+  private volatile long vehiclesArrived;
+
+  public SimulationMetrics() {
+    tickNanos = new Log2Histogram();
+    phaseNanos = new Log2Histogram[PHASES.length];
+    for (int i = 0; i < PHASES.length; i++) {
+      phaseNanos[i] = new Log2Histogram();
+    }
+    allocatedBytes = new Log2Histogram();
+    listeners = new CopyOnWriteArrayList<>();
+    currentPhaseNanos = new long[PHASES.length];
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    threads = bean instanceof com.sun.management.ThreadMXBean
+        && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()
+        ? (com.sun.management.ThreadMXBean) bean : null;
+  }
+
+  /**
+   * Publica las métricas por JMX con el nombre {@link #OBJECT_NAME}, sustituyendo a las que
+   * hubiera publicadas
+   */
+  public void register() {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(OBJECT_NAME);
+      if (server.isRegistered(name)) {
+        server.unregisterMBean(name);
+      }
+      server.registerMBean(this, name);
+    } catch (JMException e) {
+      throw new SimulatorError("Failed while registering metrics " + OBJECT_NAME, e);
+    }
+  }
+
+  /**
+   * Añade un observador que recibe las métricas de cada paso al acabarlo
+   */
+  public void addListener(Listener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(Listener listener) {
+    listeners.remove(listener);
+  }
+
+  /**
+   * Empieza a medir un paso
+   */
+  void tickStarted() {
+    measuring = true;
+    Arrays.fill(currentPhaseNanos, -1);
+    allocationStart = allocatedBytes();
+    tickStart = System.nanoTime();
+    phaseStart = tickStart;
+  }
+
+  /**
+   * Asigna a la fase el tiempo transcurrido desde que acabó la anterior
+   */
+  void phaseEnded(Phase phase) {
+    if (measuring) {
+      long now = System.nanoTime();
+      int i = phase.ordinal();
+      currentPhaseNanos[i] = Math.max(currentPhaseNanos[i], 0) + now - phaseStart;
+      phaseStart = now;
+    }
+  }
+
+  /**
+   * Termina de medir el paso
+   *
+   * @param moving  Vehículos que circulan
+   * @param queued  Vehículos que esperan en los cruces
+   * @param arrived Vehículos que han llegado a su destino en este paso
+   */
+  void tickEnded(int time, int moving, int queued, int arrived) {
+    if (!measuring) {
+      return;
+    }
+    measuring = false;
+    long nanos = System.nanoTime() - tickStart;
+    long allocated = threads == null ? -1 : allocatedBytes() - allocationStart;
+    tickNanos.record(nanos);
+    for (int i = 0; i < PHASES.length; i++) {
+      if (currentPhaseNanos[i] >= 0) {
+        phaseNanos[i].record(currentPhaseNanos[i]);
+      }
+    }
+    if (allocated >= 0) {
+      allocatedBytes.record(allocated);
+    }
+    vehiclesMoving = moving;
+    vehiclesQueued = queued;
+    vehiclesArrived += arrived;
+    if (!listeners.isEmpty()) {
+      Tick tick = new Tick(time, nanos, currentPhaseNanos.clone(), moving, queued, arrived,
+          allocated);
+      for (Listener l : listeners) {
+        l.tickMeasured(tick);
+      }
+    }
+  }
+
+  private long allocatedBytes() {
+    return threads == null ? 0 : threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  /**
+   * Devuelve el histograma de lo que ha tardado cada paso
+   */
+  public Log2Histogram getTickHistogram() {
+    return tickNanos;
+  }
+
+  /**
+   * Devuelve el histograma de lo que ha tardado la fase en los pasos en los que se ha ejecutado
+   */
+  public Log2Histogram getPhaseHistogram(Phase phase) {
+    return phaseNanos[phase.ordinal()];
+  }
+
+  /**
+   * Devuelve el histograma de la memoria reservada en cada paso (vacío si no se puede medir)
+   */
+  public Log2Histogram getAllocationHistogram() {
+    return allocatedBytes;
+  }
+
+  @Override
+  public long getTicks() {
+    return tickNanos.getCount();
+  }
+
+  @Override
+  public double getMeanTickNanos() {
+    return tickNanos.getMean();
+  }
+
+  @Override
+  public long getP50TickNanos() {
+    return tickNanos.getPercentile(50);
+  }
+
+  @Override
+  public long getP99TickNanos() {
+    return tickNanos.getPercentile(99);
+  }
+
+  @Override
+  public long getMaxTickNanos() {
+    return tickNanos.getMax();
+  }
+
+  @Override
+  public Map<String, Double> getMeanPhaseNanos() {
+    Map<String, Double> result = new LinkedHashMap<>();
+    for (Phase p : PHASES) {
+      result.put(p.name(), getPhaseHistogram(p).getMean());
+    }
+    return result;
+  }
+
+  @Override
+  public Map<String, Long> getP99PhaseNanos() {
+    Map<String, Long> result = new LinkedHashMap<>();
+    for (Phase p : PHASES) {
+      result.put(p.name(), getPhaseHistogram(p).getPercentile(99));
+    }
+    return result;
+  }
+
+  @Override
+  public Map<String, Long> getMaxPhaseNanos() {
+    Map<String, Long> result = new LinkedHashMap<>();
+    for (Phase p : PHASES) {
+      result.put(p.name(), getPhaseHistogram(p).getMax());
+    }
+    return result;
+  }
+
+  @Override
+  public int getVehiclesMoving() {
+    return vehiclesMoving;
+  }
+
+  @Override
+  public int getVehiclesQueued() {
+    return vehiclesQueued;
+  }
+
+  @Override
+  public long getVehiclesArrived() {
+    return vehiclesArrived;
+  }
+
+  @Override
+  public double getMeanAllocatedBytes() {
+    return threads == null ? -1 : allocatedBytes.getMean();
+  }
+
+  /**
+   * Escribe un resumen legible de las métricas, con los tiempos en microsegundos
+   */
+  public void writeSummary(PrintStream out) {
+    out.printf("ticks: %d%n", getTicks());
+    out.printf("%-12s %10s %10s %10s %10s %10s%n", "phase (us)", "count", "mean", "p50", "p99",
+        "max");
+    writeSummaryLine(out, "tick", tickNanos);
+    for (Phase p : PHASES) {
+      writeSummaryLine(out, p.name().toLowerCase(), getPhaseHistogram(p));
+    }
+    out.printf("vehicles: %d moving, %d queued, %d arrived%n", getVehiclesMoving(),
+        getVehiclesQueued(), getVehiclesArrived());
+    if (threads != null) {
+      out.printf("allocated per tick: mean %.0f bytes, max %d bytes%n",
+          allocatedBytes.getMean(), allocatedBytes.getMax());
+    }
+  }
+
+  private static void writeSummaryLine(PrintStream out, String name, Log2Histogram h) {
+    out.printf("%-12s %10d %10.1f %10.1f %10.1f %10.1f%n", name, h.getCount(),
+        h.getMean() / 1e3, h.getPercentile(50) / 1e3, h.getPercentile(99) / 1e3,
+        h.getMax() / 1e3);
+  }
+
+  /**
+   * Observador de las métricas de cada paso. Se llama desde el hilo de la simulación, así que
+   * debe volver enseguida
+   */
+  public interface Listener {
+
+    void tickMeasured(Tick tick);
+
+  }
+
+  /**
+   * Métricas de un paso (o de un salto de varios pasos)
+   */
+  public static class Tick {
+
+    private final int time;
+    private final long nanos;
+    private final long[] phaseNanos;
+    private final int vehiclesMoving;
+    private final int vehiclesQueued;
+    private final int vehiclesArrived;
+    private final long allocatedBytes;
+
+    Tick(int time, long nanos, long[] phaseNanos, int vehiclesMoving, int vehiclesQueued,
+         int vehiclesArrived, long allocatedBytes) {
+      this.time = time;
+      this.nanos = nanos;
+      this.phaseNanos = phaseNanos;
+      this.vehiclesMoving = vehiclesMoving;
+      this.vehiclesQueued = vehiclesQueued;
+      this.vehiclesArrived = vehiclesArrived;
+      this.allocatedBytes = allocatedBytes;
+    }
+
+    /**
+     * Devuelve el tiempo de la simulación al acabar el paso
+     */
+    public int getTime() {
+      return time;
+    }
+
+    public long getNanos() {
+      return nanos;
+    }
+
+    /**
+     * Devuelve lo que ha tardado la fase en este paso (0 si no se ha ejecutado)
+     */
+    public long getPhaseNanos(Phase phase) {
+      return Math.max(phaseNanos[phase.ordinal()], 0);
+    }
+
+    public int getVehiclesMoving() {
+      return vehiclesMoving;
+    }
+
+    public int getVehiclesQueued() {
+      return vehiclesQueued;
+    }
+
+    public int getVehiclesArrived() {
+      return vehiclesArrived;
+    }
+
+    /**
+     * Devuelve la memoria reservada por el hilo de la simulación (-1 si no se puede medir)
+     */
+    public long getAllocatedBytes() {
+      return allocatedBytes;
+    }
+
+  }
+
+}
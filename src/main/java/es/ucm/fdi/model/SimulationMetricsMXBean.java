@@ -0,0 +1,55 @@
+package es.ucm.fdi.model;
+
+import java.util.Map;
+
+/**
+ * Métricas de la simulación que se publican por JMX (ver {@link SimulationMetrics#register()}).
+ * Los tiempos están en nanosegundos y los percentiles son cotas superiores (ver
+ * {@link es.ucm.fdi.util.Log2Histogram#getPercentile(double)})
+ */
+public interface SimulationMetricsMXBean {
+
+  /**
+   * Devuelve el número de pasos medidos (un salto de varios pasos cuenta como uno)
+   */
+  long getTicks();
+
+  double getMeanTickNanos();
+
+  long getP50TickNanos();
+
+  long getP99TickNanos();
+
+  long getMaxTickNanos();
+
+  /**
+   * Devuelve el tiempo medio de cada fase del paso, por nombre de la fase
+   */
+  Map<String, Double> getMeanPhaseNanos();
+
+  Map<String, Long> getP99PhaseNanos();
+
+  Map<String, Long> getMaxPhaseNanos();
+
+  /**
+   * Devuelve los vehículos que circulaban al acabar el último paso
+   */
+  int getVehiclesMoving();
+
+  /**
+   * Devuelve los vehículos que esperaban en los cruces al acabar el último paso
+   */
+  int getVehiclesQueued();
+
+  /**
+   * Devuelve los vehículos que han llegado a su destino en todos los pasos medidos
+   */
+  long getVehiclesArrived();
+
+  /**
+   * Devuelve la memoria media reservada en cada paso por el hilo de la simulación (-1 si la JVM
+   * no permite medirla)
+   */
+  double getMeanAllocatedBytes();
+
+}
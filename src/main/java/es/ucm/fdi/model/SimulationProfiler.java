@@ -0,0 +1,190 @@
+package es.ucm.fdi.model;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Perfilador que atribuye el tiempo de avance y el tamaño de las colas a cada carretera y cada
+ * cruce (ver {@link TrafficSimulator#setProfiler(SimulationProfiler)}), para saber qué partes
+ * del mapa conviene rediseñar. Mide cada llamada a {@link SimulatedObject#advance()} por
+ * separado, así que es bastante más caro que {@link SimulationMetrics} y sólo debe usarse para
+ * buscar los puntos calientes.
+ * <p>
+ * Cada objeto tiene su propio perfil, que sólo modifica el hilo que lo hace avanzar, así que
+ * funciona también al avanzar en paralelo, pero los perfiles deben consultarse con la
+ * simulación parada. Los saltos de varios pasos de
+ * {@link TrafficSimulator#setFastForward(boolean)} no se atribuyen a ningún objeto
+ */
+public class SimulationProfiler {
+
+  // Perfil de cada objeto por su posición en el mapa (null para los vehículos)
+  private final List<ObjectProfile> profiles;
+  private RoadMap map;
+  private int ticks;
+
+  public SimulationProfiler() {
+    profiles = new ArrayList<>();
+  }
+
+  /**
+   * Borra todo lo medido
+   */
+  public synchronized void clear() {
+    profiles.clear();
+    map = null;
+    ticks = 0;
+  }
+
+  /**
+   * Prepara los perfiles de los objetos añadidos al mapa desde el último paso. Si el mapa es
+   * otro (porque se ha reiniciado la simulación) empieza de cero
+   */
+  synchronized void prepare(RoadMap map) {
+    if (map != this.map) {
+      clear();
+      this.map = map;
+    }
+    for (int i = profiles.size(); i < map.size(); i++) {
+      SimulatedObject o = map.getObject(i);
+      profiles.add(o instanceof Vehicle ? null : new ObjectProfile(o));
+    }
+  }
+
+  /**
+   * Hace avanzar al objeto midiendo lo que tarda y la cola que queda. El objeto debe estar en
+   * el mapa de la última llamada a {@link #prepare(RoadMap)}
+   */
+  void advance(SimulatedObject o) {
+    ObjectProfile profile = profiles.get(map.indexOf(o));
+    long start = System.nanoTime();
+    o.advance();
+    profile.record(System.nanoTime() - start);
+  }
+
+  synchronized void tickFinished() {
+    ticks++;
+  }
+
+  /**
+   * Devuelve el número de pasos perfilados
+   */
+  public synchronized int getTicks() {
+    return ticks;
+  }
+
+  /**
+   * Devuelve los perfiles de las carreteras ordenados de más a menos tiempo de avance
+   */
+  public List<ObjectProfile> getRoadProfiles() {
+    return sortedProfiles(Road.class);
+  }
+
+  /**
+   * Devuelve los perfiles de los cruces ordenados de más a menos tiempo de avance
+   */
+  public List<ObjectProfile> getJunctionProfiles() {
+    return sortedProfiles(Junction.class);
+  }
+
+  private synchronized List<ObjectProfile> sortedProfiles(Class<?> type) {
+    List<ObjectProfile> result = new ArrayList<>();
+    for (ObjectProfile p : profiles) {
+      if (p != null && type.isInstance(p.object)) {
+        result.add(p);
+      }
+    }
+    result.sort(Comparator.comparingLong(ObjectProfile::getNanos).reversed());
+    return Collections.unmodifiableList(result);
+  }
+
+  /**
+   * Escribe las {@code limit} carreteras y los {@code limit} cruces que más tiempo han tardado
+   * en avanzar, con los tiempos en microsegundos
+   */
+  public void writeReport(PrintStream out, int limit) {
+    int ticks = getTicks();
+    out.printf("profiled ticks: %d%n", ticks);
+    writeTable(out, "road", getRoadProfiles(), limit, ticks);
+    writeTable(out, "junction", getJunctionProfiles(), limit, ticks);
+  }
+
+  private static void writeTable(PrintStream out, String name, List<ObjectProfile> profiles,
+                                 int limit, int ticks) {
+    out.printf("%-16s %10s %12s %10s %10s %10s %10s%n", name, "advances", "total (us)",
+        "mean (us)", "max (us)", "mean queue", "max queue");
+    for (ObjectProfile p : profiles.subList(0, Math.min(limit, profiles.size()))) {
+      out.printf("%-16s %10d %12.1f %10.2f %10.1f %10.2f %10d%n", p.getId(), p.getAdvances(),
+          p.getNanos() / 1e3, p.getMeanNanos() / 1e3, p.getMaxNanos() / 1e3,
+          p.getMeanQueue(ticks), p.getMaxQueue());
+    }
+  }
+
+  /**
+   * Tiempo de avance y tamaño de la cola de una carretera (vehículos en ella) o de un cruce
+   * (vehículos esperando en él) tras cada avance
+   */
+  public static class ObjectProfile {
+
+    private final SimulatedObject object;
+    private long advances;
+    private long nanos;
+    private long maxNanos;
+    private long queued;
+    private int maxQueue;
+
+    ObjectProfile(SimulatedObject object) {
+      this.object = object;
+    }
+
+    void record(long elapsed) {
+      int queue = object instanceof Road ? ((Road) object).vehicleCount()
+          : ((Junction) object).queuedVehicles();
+      advances++;
+      nanos += elapsed;
+      maxNanos = Math.max(maxNanos, elapsed);
+      queued += queue;
+      maxQueue = Math.max(maxQueue, queue);
+    }
+
+    public String getId() {
+      return object.getId();
+    }
+
+    /**
+     * Devuelve cuántas veces ha avanzado (las carreteras vacías y los cruces sin vehículos no
+     * avanzan)
+     */
+    public long getAdvances() {
+      return advances;
+    }
+
+    public long getNanos() {
+      return nanos;
+    }
+
+    public double getMeanNanos() {
+      return advances == 0 ? 0 : (double) nanos / advances;
+    }
+
+    public long getMaxNanos() {
+      return maxNanos;
+    }
+
+    /**
+     * Devuelve el tamaño medio de la cola en los pasos indicados (en los que no ha avanzado
+     * estaba vacía)
+     */
+    public double getMeanQueue(int ticks) {
+      return ticks == 0 ? 0 : (double) queued / ticks;
+    }
+
+    public int getMaxQueue() {
+      return maxQueue;
+    }
+
+  }
+
+}
@@ -0,0 +1,60 @@
+package es.ucm.fdi.model;
+
+import es.ucm.fdi.events.Event;
+import es.ucm.fdi.util.PersistentVector;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Estado inmutable de toda la simulación tras un paso. Los objetos están en el mismo orden en
+ * el que se añadieron al simulador y las listas comparten con las del paso anterior todos los
+ * estados de los objetos que no han cambiado, así que se pueden comparar rápidamente con
+ * {@link PersistentVector#forEachChanged}
+ */
+public class SimulationSnapshot {
+
+  public static final SimulationSnapshot EMPTY = new SimulationSnapshot(0,
+      PersistentVector.empty(), PersistentVector.empty(), PersistentVector.empty(),
+      Collections.emptyList());
+
+  private final int time;
+  private final PersistentVector<VehicleState> vehicles;
+  private final PersistentVector<RoadState> roads;
+  private final PersistentVector<JunctionState> junctions;
+  private final List<Event> events;
+
+  SimulationSnapshot(int time, PersistentVector<VehicleState> vehicles,
+                     PersistentVector<RoadState> roads, PersistentVector<JunctionState> junctions,
+                     List<Event> events) {
+    this.time = time;
+    this.vehicles = vehicles;
+    this.roads = roads;
+    this.junctions = junctions;
+    this.events = events;
+  }
+
+  public int getTime() {
+    return time;
+  }
+
+  public PersistentVector<VehicleState> getVehicles() {
+    return vehicles;
+  }
+
+  public PersistentVector<RoadState> getRoads() {
+    return roads;
+  }
+
+  public PersistentVector<JunctionState> getJunctions() {
+    return junctions;
+  }
+
+  /**
+   * Devuelve la cola de eventos (la misma lista mientras los eventos no cambien)
+   */
+  public List<Event> getEvents() {
+    return events;
+  }
+
+}
@@ -1,14 +1,19 @@
 package es.ucm.fdi.model;
 
 import es.ucm.fdi.events.Event;
+import es.ucm.fdi.events.EventSource;
 import es.ucm.fdi.exceptions.SimulatorError;
-import es.ucm.fdi.ini.Ini;
-import es.ucm.fdi.ini.IniSection;
+import es.ucm.fdi.ini.IniWriter;
+import es.ucm.fdi.model.SimulationMetrics.Phase;
 import es.ucm.fdi.util.MultiTreeMap;
+import es.ucm.fdi.util.PersistentVector;
 
-import java.io.IOException;
-import java.io.OutputStream;
+import java.io.*;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
 
 /**
  * Clase que representa un simulador de tráfico que se ejecuta mediante una serie de eventos
@@ -18,22 +23,319 @@ public class TrafficSimulator {
 
   private int currentTime;
   private MultiTreeMap<Integer, Event> events;
+  // Fuente de la que se leen los eventos de los próximos eventWindow pasos (null si no hay)
+  private EventSource eventSource;
+  private int eventWindow;
+  // Evento ya leído de la fuente pero que aún no entra en la ventana
+  private Event nextSourceEvent;
+  private boolean eventSourceEnded;
+  // Eventos de la fuente que ya se han pasado a la cola (incluidos los de antes de restaurar un
+  // punto de control)
+  private int sourceEventsRead;
+  // Objetos que han cambiado en el último paso
+  private List<Vehicle> changedVehicles;
+  private List<Road> changedRoads;
+  private List<Junction> changedJunctions;
+  // Estado inmutable tras el último paso (sólo si se ha pedido que se publique)
+  private boolean publishSnapshots;
+  private SimulationSnapshot snapshot;
+  // Indica si la cola de eventos ha cambiado desde la última instantánea
+  private boolean eventsChanged;
   private RoadMap roadMap;
+  // Decide qué carreteras y cruces del mapa tienen que avanzar en cada paso
+  private Scheduler scheduler;
   // Lista de listeners para comunicar cambios de estado
   private List<Listener> listeners;
+  // Número de hilos con los que avanzan carreteras y cruces (1 = secuencial)
+  private int parallelism;
+  private ForkJoinPool pool;
+  // Escritor de informes reutilizado entre pasos para la última salida usada
+  private ReportFormat reportFormat;
+  private OutputStream reportStream;
+  private IniWriter reportWriter;
+  private BinaryReportWriter binaryReportWriter;
+  // Cada cuántos pasos se revisan los itinerarios según el tráfico (0 = nunca) y qué fracción
+  // del tiempo de un paso se puede dedicar a ello
+  private int rerouteInterval;
+  private double rerouteBudget;
+  private Rerouter rerouter;
+  // Indica si se dan de golpe los pasos en los que no se escriben informes y nada cambia
+  private boolean fastForward;
+  // Cada cuántos pasos se guarda un punto de control (null si no se guardan) y cuándo toca el
+  // siguiente
+  private CheckpointWriter checkpointWriter;
+  private int checkpointInterval;
+  private int nextCheckpoint;
+  // Mide cada paso (null si no se mide)
+  private SimulationMetrics metrics;
+  // Mide el avance de cada carretera y cruce (null si no se mide)
+  private SimulationProfiler profiler;
 
   public TrafficSimulator() {
     listeners = new ArrayList<>();
     events = new MultiTreeMap<>();
+    parallelism = 1;
+    reportFormat = ReportFormat.INI;
     reset();
   }
 
   /**
-   * Resetea el simulador y lo notifica
+   * Establece el número de hilos con los que avanzan las carreteras y los cruces en cada paso.
+   * Con 1 (valor por defecto) todo se ejecuta en el hilo que llama a execute
+   */
+  public void setParallelism(int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Parallelism must be at least 1");
+    }
+    this.parallelism = parallelism;
+    if (pool != null) {
+      pool.shutdown();
+    }
+    pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+  }
+
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * Devuelve el pool de hilos con el que avanza la simulación (null si avanza en el hilo que
+   * llama a execute), para que otras tareas se repartan entre esos mismos hilos
+   */
+  public ExecutorService getExecutor() {
+    return pool;
+  }
+
+  /**
+   * Indica si tras cada paso se debe crear una instantánea inmutable del estado (ver
+   * {@link UpdateEvent#getSnapshot()}). Sólo se describen de nuevo los objetos que han cambiado
+   */
+  public void setPublishSnapshots(boolean publishSnapshots) {
+    this.publishSnapshots = publishSnapshots;
+    snapshot = SimulationSnapshot.EMPTY;
+    eventsChanged = true;
+  }
+
+  /**
+   * Hace que cada {@code interval} pasos se cambie el itinerario de los vehículos que tengan un
+   * camino bastante más rápido según el tráfico actual, dedicando a ello como mucho la fracción
+   * {@code budget} de lo que tarda un paso (con un presupuesto infinito se revisan todos y el
+   * resultado no depende de la velocidad de la máquina). Con interval 0 no se cambian. Si ya se
+   * cambiaban con los mismos valores se conserva lo calculado (por ejemplo, lo restaurado de un
+   * punto de control)
+   */
+  public void setRerouting(int interval, double budget) {
+    if (interval < 0 || budget <= 0) {
+      throw new IllegalArgumentException("Rerouting interval and budget must be positive");
+    }
+    if (interval == rerouteInterval && budget == rerouteBudget) {
+      return;
+    }
+    rerouteInterval = interval;
+    rerouteBudget = budget;
+    rerouter = interval == 0 ? null : new Rerouter(roadMap, interval, budget);
+  }
+
+  /**
+   * Hace que, cuando no se escriben informes, los pasos en los que no ocurre ningún evento y los
+   * vehículos sólo avanzan a velocidad constante se den de golpe. El estado al acabar es el mismo
+   * que paso a paso, pero los observadores sólo reciben un aviso por cada salto
+   */
+  public void setFastForward(boolean fastForward) {
+    this.fastForward = fastForward;
+  }
+
+  /**
+   * Hace que se mida el tiempo de cada fase de los pasos y el estado de los vehículos al acabar
+   * cada uno. Con null (valor por defecto) no se mide
+   */
+  public void setMetrics(SimulationMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * Hace que se mida lo que tarda en avanzar cada carretera y cada cruce y sus colas. Con null
+   * (valor por defecto) no se mide
+   */
+  public void setProfiler(SimulationProfiler profiler) {
+    this.profiler = profiler;
+  }
+
+  /**
+   * Hace que cada {@code interval} pasos se guarde el estado de la simulación en el fichero
+   * indicado, sustituyendo al anterior, para poder continuarla después con
+   * {@link #restoreCheckpoint(InputStream)}. El fichero se escribe en segundo plano (ver
+   * {@link #awaitCheckpoint()}). Si un salto de {@link #setFastForward(boolean)} pasa por un
+   * punto de control, se guarda al acabar el salto. Con un fichero null no se guardan
+   */
+  public void setCheckpoints(File file, int interval) {
+    if (file != null && interval < 1) {
+      throw new IllegalArgumentException("Checkpoint interval must be at least 1");
+    }
+    if (checkpointWriter != null) {
+      checkpointWriter.close();
+    }
+    checkpointWriter = file == null ? null : new CheckpointWriter(file);
+    checkpointInterval = interval;
+    scheduleCheckpoint();
+  }
+
+  /**
+   * Espera a que se acabe de escribir el último punto de control
+   *
+   * @throws SimulatorError Si no se ha podido escribir
+   */
+  public void awaitCheckpoint() {
+    if (checkpointWriter != null) {
+      checkpointWriter.await();
+    }
+  }
+
+  /**
+   * Escribe el estado actual de la simulación: el tiempo, los eventos pendientes, el mapa con el
+   * estado de todos sus objetos (incluidos semáforos y generadores aleatorios de las averías) y
+   * el de la planificación y el cambio de itinerarios. Las opciones de ejecución (hilos,
+   * formato de los informes, observadores...) no forman parte del estado
+   */
+  public void saveCheckpoint(OutputStream out) throws IOException {
+    CheckpointWriter.write(serializeState(), out);
+  }
+
+  /**
+   * Sustituye el estado de la simulación por el guardado con
+   * {@link #saveCheckpoint(OutputStream)}, con lo que la simulación sigue exactamente igual que
+   * si no se hubiera interrumpido. Si los eventos se leían de una fuente, hay que volver a
+   * indicarla con {@link #setEventSource(EventSource, int)}, que se salta los ya leídos. El
+   * cambio de itinerarios también se restaura con los valores guardados, que se pueden cambiar
+   * después con {@link #setRerouting(int, double)}. Se notifica como un reinicio seguido de un
+   * paso en el que han cambiado todos los objetos
+   */
+  public void restoreCheckpoint(InputStream in) throws IOException {
+    try (ObjectInputStream state = CheckpointWriter.read(in)) {
+      int time = state.readInt();
+      int eventsRead = state.readInt();
+      int interval = state.readInt();
+      double budget = state.readDouble();
+      @SuppressWarnings("unchecked")
+      MultiTreeMap<Integer, Event> savedEvents = (MultiTreeMap<Integer, Event>) state.readObject();
+      RoadMap savedMap = (RoadMap) state.readObject();
+      Scheduler savedScheduler = (Scheduler) state.readObject();
+      Rerouter savedRerouter = (Rerouter) state.readObject();
+
+      reset();
+      currentTime = time;
+      sourceEventsRead = eventsRead;
+      rerouteInterval = interval;
+      rerouteBudget = budget;
+      events = savedEvents;
+      roadMap = savedMap;
+      scheduler = savedScheduler;
+      scheduler.attach(roadMap);
+      rerouter = savedRerouter;
+      for (List<? extends SimulatedObject> objects
+          : Arrays.asList(roadMap.getVehicles(), roadMap.getRoads(), roadMap.getJunctions())) {
+        for (SimulatedObject o : objects) {
+          o.markChanged();
+        }
+      }
+    } catch (ClassNotFoundException | ClassCastException e) {
+      throw new IOException("Invalid checkpoint", e);
+    }
+    scheduleCheckpoint();
+    finishTick(null);
+  }
+
+  /**
+   * Serializa el estado que guardan los puntos de control. El mapa se escribe antes que el
+   * planificador y el cambio de itinerarios, que sólo lo referencian
+   */
+  private byte[] serializeState() {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream state = new ObjectOutputStream(bytes)) {
+      state.writeInt(currentTime);
+      state.writeInt(sourceEventsRead);
+      state.writeInt(rerouteInterval);
+      state.writeDouble(rerouteBudget);
+      state.writeObject(events);
+      state.writeObject(roadMap);
+      state.writeObject(scheduler);
+      state.writeObject(rerouter);
+    } catch (IOException e) {
+      throw new SimulatorError("Failed while saving simulation state", e);
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Calcula cuándo toca el siguiente punto de control
+   */
+  private void scheduleCheckpoint() {
+    if (checkpointWriter != null) {
+      nextCheckpoint = (currentTime / checkpointInterval + 1) * checkpointInterval;
+    }
+  }
+
+  /**
+   * Guarda un punto de control si ya toca
+   */
+  private void saveCheckpointIfDue() {
+    if (checkpointWriter != null && currentTime >= nextCheckpoint) {
+      checkpointWriter.write(serializeState());
+      scheduleCheckpoint();
+    }
+  }
+
+  /**
+   * Establece el formato en el que se escriben los informes de cada paso
+   */
+  public void setReportFormat(ReportFormat reportFormat) {
+    this.reportFormat = reportFormat;
+    reportStream = null;
+  }
+
+  public ReportFormat getReportFormat() {
+    return reportFormat;
+  }
+
+  /**
+   * Hace que los eventos se vayan leyendo de la fuente indicada según se necesiten: antes de
+   * cada paso sólo se leen los que ocurren en los próximos {@code window} pasos y los eventos
+   * ya ejecutados se descartan. Un evento de la fuente que llegue cuando su tiempo ya ha pasado
+   * es un error. Si el estado viene de un punto de control, se saltan los eventos de la fuente
+   * que ya se habían leído antes de guardarlo
+   */
+  public void setEventSource(EventSource source, int window) {
+    if (window < 1) {
+      throw new IllegalArgumentException("Event window must be at least 1");
+    }
+    for (int i = 0; i < sourceEventsRead; i++) {
+      if (source.next() == null) {
+        throw new IllegalArgumentException("Event source has fewer events than were read");
+      }
+    }
+    eventSource = source;
+    eventWindow = window;
+    nextSourceEvent = null;
+    eventSourceEnded = false;
+  }
+
+  /**
+   * Resetea el simulador y lo notifica. Una fuente de eventos no se puede volver a leer, por
+   * lo que se descarta
    */
   public void reset() {
     currentTime = 0;
+    eventSource = null;
+    sourceEventsRead = 0;
+    changedVehicles = Collections.emptyList();
+    changedRoads = Collections.emptyList();
+    changedJunctions = Collections.emptyList();
+    snapshot = SimulationSnapshot.EMPTY;
+    eventsChanged = true;
     roadMap = new RoadMap();
+    scheduler = new Scheduler();
+    rerouter = rerouteInterval == 0 ? null : new Rerouter(roadMap, rerouteInterval, rerouteBudget);
+    scheduleCheckpoint();
     fireUpdateEvent(EventType.RESET, null);
   }
 
@@ -42,6 +344,7 @@ public class TrafficSimulator {
    */
   public void addEvent(Event event) {
     events.putValue(event.getTime(), event);
+    eventsChanged = true;
     fireUpdateEvent(EventType.NEW_EVENT, null);
   }
 
@@ -50,6 +353,7 @@ public class TrafficSimulator {
    */
   public void clearEvents() {
     events.clear();
+    eventsChanged = true;
   }
 
   public List<Event> getEvents() {
@@ -61,6 +365,7 @@ public class TrafficSimulator {
    */
   public void addSimulatedObject(SimulatedObject o) {
     roadMap.addSimulatedObject(o);
+    scheduler.add(o);
   }
 
   /**
@@ -131,13 +436,20 @@ public class TrafficSimulator {
   }
 
   /**
-   * Devuelve una cola de cruces a partir de sus ids si todos existen y hay alguna carretera que
-   * los une
+   * Devuelve el itinerario con los cruces indicados si todos existen y hay alguna carretera que
+   * los une (compartido con los demás vehículos con los mismos cruces)
    */
   public Queue<Junction> getPath(String[] junctions) {
     return roadMap.getPath(junctions);
   }
 
+  /**
+   * Devuelve el itinerario más rápido entre dos cruces
+   */
+  public Queue<Junction> getShortestPath(String origin, String destination) {
+    return roadMap.getShortestPath(origin, destination);
+  }
+
   /**
    * Avería un vehículo
    */
@@ -157,21 +469,59 @@ public class TrafficSimulator {
                               Collection<Junction> junctions,
                               Collection<Road> roads,
                               Collection<Vehicle> vehicles) {
-    if (out != null) {
-      writeSimulatedObjectsReports(out, junctions);
-      writeSimulatedObjectsReports(out, roads);
-      writeSimulatedObjectsReports(out, vehicles);
+    if (out != null && reportFormat == ReportFormat.BINARY) {
+      try {
+        getBinaryReportWriter(out).writeTick(currentTime, junctions, roads, vehicles);
+      } catch (IOException e) {
+        throw new SimulatorError("Failed while storing data on binary report", e);
+      }
+    } else if (out != null) {
+      IniWriter writer = getReportWriter(out);
+      writeSimulatedObjectsReports(writer, junctions);
+      writeSimulatedObjectsReports(writer, roads);
+      writeSimulatedObjectsReports(writer, vehicles);
+      try {
+        writer.flush();
+      } catch (UncheckedIOException e) {
+        throw new SimulatorError("Failed while storing data on ini file", e);
+      }
+    }
+  }
+
+  /**
+   * Devuelve el escritor de informes asociado a la salida indicada (se reutiliza mientras no
+   * cambie la salida)
+   */
+  private IniWriter getReportWriter(OutputStream out) {
+    if (out != reportStream) {
+      reportStream = out;
+      reportWriter = new IniWriter(out);
+    }
+    return reportWriter;
+  }
+
+  /**
+   * Igual que {@link #getReportWriter(OutputStream)} para el formato binario. Al crearlo se
+   * escribe la cabecera del fichero
+   */
+  private BinaryReportWriter getBinaryReportWriter(OutputStream out) throws IOException {
+    if (out != reportStream) {
+      reportStream = out;
+      binaryReportWriter = new BinaryReportWriter(out);
     }
+    return binaryReportWriter;
   }
 
   /**
    * Escribe el informe de una serie de objetos de un único tipo
    */
-  private void writeSimulatedObjectsReports(OutputStream out,
+  private void writeSimulatedObjectsReports(IniWriter writer,
                                             Collection<? extends SimulatedObject> objects) {
     for (SimulatedObject o : objects) {
       try {
-        writeReport(o.generateReport(currentTime), out);
+        o.writeReport(writer, currentTime);
+      } catch (UncheckedIOException e) {
+        throw new SimulatorError("Failed while storing data on ini file", e);
       } catch (SimulatorError e) {
         fireUpdateEvent(EventType.ERROR, "Something went wrong while writing " + o + "'s report");
       }
@@ -179,30 +529,46 @@ public class TrafficSimulator {
   }
 
   /**
-   * Escribe un informe en formato ini en la salida indicada a partir de un mapa (clave->valor)
+   * Ejecuta la simulación durante tantos pasos como se le indiquen
    */
-  private void writeReport(Map<String, String> report, OutputStream out) {
-    Ini ini = new Ini();
-    IniSection sec = new IniSection(report.get(""));
-    // Elimina la cabecera: ya no se necesita
-    report.remove("");
-    for (Map.Entry<String, String> entry : report.entrySet()) {
-      sec.setValue(entry.getKey(), entry.getValue());
-    }
-    ini.addSection(sec);
-    try {
-      ini.store(out);
-    } catch (IOException e) {
-      throw new SimulatorError("Failed while storing data on ini file", e);
-    }
+  public void execute(int simulationSteps, OutputStream out) {
+    execute(simulationSteps, out, false);
   }
 
   /**
-   * Ejecuta la simulación durante tantos pasos como se le indiquen
+   * Ejecuta la simulación durante tantos pasos como se le indiquen escribiendo sólo el informe
+   * del último (con {@link #setFastForward(boolean)} los anteriores se pueden dar de golpe)
    */
-  public void execute(int simulationSteps, OutputStream out) {
+  public void executeToEnd(int simulationSteps, OutputStream out) {
+    execute(simulationSteps, out, true);
+  }
+
+  private void execute(int simulationSteps, OutputStream out, boolean finalReportOnly) {
     int timeLimit = currentTime + simulationSteps - 1;
     while (currentTime <= timeLimit) {
+      OutputStream tickOut = finalReportOnly && currentTime < timeLimit ? null : out;
+      if (metrics != null) {
+        metrics.tickStarted();
+      }
+      try {
+        pullEvents();
+      } catch (IllegalStateException ex) {
+        fireUpdateEvent(EventType.ERROR,
+            "Something went wrong while reading events\n" + ex.getMessage());
+        return;
+      }
+      if (fastForward && tickOut == null) {
+        // El último paso sólo se puede saltar si tampoco tiene informe
+        int ticks = steadyTicks((out == null ? timeLimit + 1 : timeLimit) - currentTime);
+        if (ticks > 0) {
+          measure(Phase.EVENTS);
+          scheduler.skip(ticks);
+          currentTime += ticks;
+          measure(Phase.ROADS);
+          endTick(null);
+          continue;
+        }
+      }
       if (events.containsKey(currentTime)) {
         // Ejecuta todos los eventos de este paso
         for (Event e : events.get(currentTime)) {
@@ -215,19 +581,252 @@ public class TrafficSimulator {
             return;
           }
         }
+        if (eventSource != null) {
+          events.remove(currentTime);
+          eventsChanged = true;
+        }
       }
-      for (Road r : roadMap.getRoads()) {
-        r.advance();
+      measure(Phase.EVENTS);
+      if (rerouter != null) {
+        rerouter.reroute(currentTime);
+        measure(Phase.REROUTING);
       }
-      for (Junction j : roadMap.getJunctions()) {
-        j.advance();
+      long start = System.nanoTime();
+      // Sólo avanzan las carreteras con vehículos y los cruces despiertos
+      advanceAll(scheduler.roadsToAdvance());
+      measure(Phase.ROADS);
+      advanceAll(scheduler.junctionsToAdvance());
+      scheduler.tickFinished();
+      if (profiler != null) {
+        profiler.tickFinished();
+      }
+      measure(Phase.JUNCTIONS);
+      if (rerouter != null) {
+        rerouter.tickFinished(System.nanoTime() - start);
       }
       currentTime++;
-      fireUpdateEvent(EventType.ADVANCED, null);
-      generateReports(out, roadMap.getJunctions(), roadMap.getRoads(), roadMap.getVehicles());
+      endTick(tickOut);
+    }
+  }
+
+  /**
+   * Acaba el paso (o salto) escribiendo los informes y el punto de control si toca, y termina
+   * de medirlo
+   */
+  private void endTick(OutputStream out) {
+    finishTick(out);
+    saveCheckpointIfDue();
+    if (metrics != null) {
+      measure(Phase.CHECKPOINTS);
+      int moving = 0;
+      int arrived = 0;
+      // Los vehículos que circulan cambian de posición y los que llegan cambian en ese paso
+      for (Vehicle v : changedVehicles) {
+        if (v.hasArrived()) {
+          arrived++;
+        } else if (v.currentSpeed > 0) {
+          moving++;
+        }
+      }
+      metrics.tickEnded(currentTime, moving, scheduler.queuedVehicles(), arrived);
+    }
+  }
+
+  /**
+   * Asigna a la fase indicada el tiempo desde la anterior si se está midiendo
+   */
+  private void measure(Phase phase) {
+    if (metrics != null) {
+      metrics.phaseEnded(phase);
+    }
+  }
+
+  /**
+   * Devuelve cuántos de los próximos pasos (como mucho limit) se pueden dar de golpe: no ocurre
+   * ningún evento ni se revisan los itinerarios, y ninguna carretera ni cruce cambia más que
+   * contadores y posiciones (ver {@link Scheduler#steadyTicks()})
+   */
+  private int steadyTicks(int limit) {
+    int ticks = limit;
+    Integer nextEvent = events.ceilingKey(currentTime);
+    if (nextEvent != null) {
+      ticks = Math.min(ticks, nextEvent - currentTime);
+    }
+    if (nextSourceEvent != null) {
+      ticks = Math.min(ticks, nextSourceEvent.getTime() - currentTime);
+    }
+    if (rerouter != null) {
+      ticks = Math.min(ticks, (rerouteInterval - currentTime % rerouteInterval) % rerouteInterval);
+    }
+    return ticks > 0 ? Math.min(ticks, scheduler.steadyTicks()) : 0;
+  }
+
+  /**
+   * Recoge los cambios del último paso (o salto), lo notifica y escribe los informes
+   */
+  private void finishTick(OutputStream out) {
+    if (out != null || publishSnapshots) {
+      // Los informes y las instantáneas muestran todos los cruces al día
+      scheduler.catchUpAll();
+    }
+    collectChanges();
+    measure(Phase.CHANGES);
+    fireUpdateEvent(EventType.ADVANCED, null);
+    measure(Phase.LISTENERS);
+    generateReports(out, roadMap.getJunctions(), roadMap.getRoads(), roadMap.getVehicles());
+    measure(Phase.REPORTS);
+  }
+
+  /**
+   * Guarda los objetos que han cambiado durante el último paso (incluidos los nuevos) y les
+   * borra la marca para el siguiente. Si se publican instantáneas, crea la nueva a partir de la
+   * anterior sustituyendo sólo los estados de esos objetos
+   */
+  private void collectChanges() {
+    PersistentVector.Builder<VehicleState> vehicles = null;
+    PersistentVector.Builder<RoadState> roads = null;
+    PersistentVector.Builder<JunctionState> junctions = null;
+    if (publishSnapshots) {
+      vehicles = snapshot.getVehicles().toBuilder();
+      roads = snapshot.getRoads().toBuilder();
+      junctions = snapshot.getJunctions().toBuilder();
+    }
+    changedVehicles = collectChanges(roadMap.getVehicles(), vehicles, VehicleState::new);
+    changedRoads = collectChanges(roadMap.getRoads(), roads, RoadState::new);
+    changedJunctions = collectChanges(roadMap.getJunctions(), junctions, JunctionState::new);
+    if (publishSnapshots) {
+      List<Event> eventQueue = snapshot.getEvents();
+      if (eventsChanged) {
+        eventQueue = Collections.unmodifiableList(new ArrayList<>(events.valuesList()));
+        eventsChanged = false;
+      }
+      snapshot = new SimulationSnapshot(currentTime, vehicles.build(), roads.build(),
+          junctions.build(), eventQueue);
+    }
+  }
+
+  /**
+   * Devuelve los objetos de la lista que han cambiado y, si hay estados, actualiza los suyos
+   * (los objetos nuevos siempre están al final de la lista y marcados como cambiados)
+   */
+  private static <T extends SimulatedObject, S> List<T> collectChanges(
+      List<T> objects, PersistentVector.Builder<S> states, Function<T, S> toState) {
+    List<T> changed = new ArrayList<>();
+    for (int i = 0; i < objects.size(); i++) {
+      T o = objects.get(i);
+      if (o.pollChanged()) {
+        changed.add(o);
+        if (states != null) {
+          if (i < states.size()) {
+            states.set(i, toState.apply(o));
+          } else {
+            states.add(toState.apply(o));
+          }
+        }
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * Lee de la fuente de eventos (si la hay) todos los que ocurren antes de que acabe la ventana
+   */
+  private void pullEvents() {
+    if (eventSource == null) {
+      return;
+    }
+    long horizon = (long) currentTime + eventWindow;
+    while (!eventSourceEnded) {
+      if (nextSourceEvent == null) {
+        nextSourceEvent = eventSource.next();
+        if (nextSourceEvent == null) {
+          eventSourceEnded = true;
+          return;
+        }
+      }
+      int time = nextSourceEvent.getTime();
+      if (time >= horizon) {
+        return;
+      }
+      if (time < currentTime) {
+        throw new IllegalStateException("Event " + nextSourceEvent + " should have happened at "
+            + time + " but it was read at " + currentTime);
+      }
+      events.putValue(time, nextSourceEvent);
+      eventsChanged = true;
+      nextSourceEvent = null;
+      sourceEventsRead++;
     }
   }
 
+  /**
+   * Hace avanzar todos los objetos indicados, repartiéndolos entre los hilos del pool si se
+   * ejecuta en paralelo. Las carreteras sólo comparten con otras la cola de su cruce de destino
+   * y cada cruce sólo saca vehículos de sus carreteras entrantes, por lo que el resultado es el
+   * mismo que en secuencial
+   */
+  private void advanceAll(List<? extends SimulatedObject> objects) {
+    if (profiler != null) {
+      profiler.prepare(roadMap);
+    }
+    if (pool == null) {
+      for (SimulatedObject o : objects) {
+        advance(o, profiler);
+      }
+    } else if (!objects.isEmpty()) {
+      int threshold = Math.max(1, objects.size() / (parallelism * AdvanceTask.TASKS_PER_THREAD));
+      pool.invoke(new AdvanceTask(objects, 0, objects.size(), threshold, profiler));
+    }
+  }
+
+  private static void advance(SimulatedObject o, SimulationProfiler profiler) {
+    if (profiler == null) {
+      o.advance();
+    } else {
+      profiler.advance(o);
+    }
+  }
+
+  /**
+   * Tarea que hace avanzar un rango de objetos dividiéndolo por la mitad mientras sea grande
+   */
+  private static class AdvanceTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    // Tareas en las que se divide el trabajo por cada hilo (para equilibrar la carga)
+    static final int TASKS_PER_THREAD = 8;
+
+    private final List<? extends SimulatedObject> objects;
+    private final int from;
+    private final int to;
+    private final int threshold;
+    private final SimulationProfiler profiler;
+
+    AdvanceTask(List<? extends SimulatedObject> objects, int from, int to, int threshold,
+                SimulationProfiler profiler) {
+      this.objects = objects;
+      this.from = from;
+      this.to = to;
+      this.threshold = threshold;
+      this.profiler = profiler;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= threshold) {
+        for (int i = from; i < to; i++) {
+          advance(objects.get(i), profiler);
+        }
+      } else {
+        int middle = (from + to) >>> 1;
+        invokeAll(new AdvanceTask(objects, from, middle, threshold, profiler),
+            new AdvanceTask(objects, middle, to, threshold, profiler));
+      }
+    }
+
+  }
+
   /**
    * Interfaz para los observadores
    */
@@ -273,9 +872,18 @@ public class TrafficSimulator {
   public class UpdateEvent {
 
     private EventType type;
+    // Se guardan al crear el evento porque el simulador los sustituye en cada paso
+    private final List<Vehicle> changedVehicles;
+    private final List<Road> changedRoads;
+    private final List<Junction> changedJunctions;
+    private final SimulationSnapshot snapshot;
 
     private UpdateEvent(EventType type) {
       this.type = type;
+      changedVehicles = TrafficSimulator.this.changedVehicles;
+      changedRoads = TrafficSimulator.this.changedRoads;
+      changedJunctions = TrafficSimulator.this.changedJunctions;
+      snapshot = TrafficSimulator.this.snapshot;
     }
 
     public EventType getEvent() {
@@ -294,6 +902,38 @@ public class TrafficSimulator {
       return roadMap.getJunctions();
     }
 
+    /**
+     * Devuelve los vehículos que han cambiado en el último paso
+     */
+    public List<Vehicle> getChangedVehicles() {
+      return changedVehicles;
+    }
+
+    /**
+     * Devuelve las carreteras que han cambiado en el último paso
+     */
+    public List<Road> getChangedRoads() {
+      return changedRoads;
+    }
+
+    /**
+     * Devuelve los cruces que han cambiado en el último paso. Si no se escriben informes ni se
+     * publican instantáneas, no incluye los cruces dormidos cuyo semáforo sólo ha descontado
+     * tiempo
+     */
+    public List<Junction> getChangedJunctions() {
+      return changedJunctions;
+    }
+
+    /**
+     * Devuelve el estado inmutable de la simulación tras el último paso. Se puede leer desde
+     * cualquier hilo mientras la simulación sigue avanzando. Sólo se crea si se ha activado con
+     * {@link TrafficSimulator#setPublishSnapshots(boolean)}
+     */
+    public SimulationSnapshot getSnapshot() {
+      return snapshot;
+    }
+
     public List<Event> getEventQueue() {
       return getEvents();
     }
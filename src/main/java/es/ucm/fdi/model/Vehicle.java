@@ -1,5 +1,10 @@
 package es.ucm.fdi.model;
 
+import es.ucm.fdi.ini.IniWriter;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.*;
 
 import static java.util.stream.Collectors.joining;
@@ -9,6 +14,8 @@ import static java.util.stream.Collectors.joining;
  */
 public class Vehicle extends SimulatedObject {
 
+  private static final long serialVersionUID = 1L;
+
   private static final String SECTION_TAG_NAME = "vehicle_report";
   public static final String[] INFO = {"ID", "Road", "Location", "Speed",
       "Km", "Faulty Units", "Itinerary"};
@@ -17,9 +24,13 @@ public class Vehicle extends SimulatedObject {
   protected int currentSpeed;
   protected int faulty;
   protected int kilometrage;
-  private Road road;
+  private transient Road road;
   private int location;
-  private Queue<Junction> itinerary;
+  /**
+   * Itinerario (compartido con otros vehículos) y posición en él del próximo cruce
+   */
+  private transient Route itinerary;
+  private int nextJunction;
   private boolean hasArrived;
   private boolean inJunction;
 
@@ -28,7 +39,8 @@ public class Vehicle extends SimulatedObject {
     this.maxSpeed = maxSpeed;
     currentSpeed = 0;
     location = 0;
-    this.itinerary = itinerary;
+    this.itinerary = Route.of(itinerary);
+    nextJunction = 0;
     faulty = 0;
     hasArrived = false;
     inJunction = false;
@@ -45,7 +57,11 @@ public class Vehicle extends SimulatedObject {
 
   public void setCurrentSpeed(int currentSpeed) {
     if (faulty == 0 && !inJunction) {
-      this.currentSpeed = Math.min(currentSpeed, maxSpeed);
+      int newSpeed = Math.min(currentSpeed, maxSpeed);
+      if (newSpeed != this.currentSpeed) {
+        this.currentSpeed = newSpeed;
+        markChanged();
+      }
     }
   }
 
@@ -59,10 +75,28 @@ public class Vehicle extends SimulatedObject {
     }
     this.faulty += faulty;
     currentSpeed = 0;
+    markChanged();
   }
 
+  /**
+   * Devuelve una vista no modificable de la parte del itinerario que falta por recorrer
+   */
   public List<Junction> getItinerary() {
-    return Collections.unmodifiableList(new ArrayList<>(itinerary));
+    return itinerary.from(nextJunction);
+  }
+
+  /**
+   * Cambia la parte del itinerario que falta por recorrer. El nuevo itinerario debe empezar en el
+   * cruce al que se dirige el vehículo
+   */
+  void reroute(Route route) {
+    if (hasArrived || route.get(0) != itinerary.get(nextJunction)) {
+      throw new IllegalArgumentException("Route " + route + " doesn't start at " + id
+          + "'s next junction");
+    }
+    itinerary = route;
+    nextJunction = 0;
+    markChanged();
   }
 
   public boolean hasArrived() {
@@ -76,17 +110,60 @@ public class Vehicle extends SimulatedObject {
   public void advance() {
     if (faulty > 0) {
       faulty--;
+      markChanged();
     } else if (!inJunction) {
       int newLocation = location + currentSpeed;
       if (newLocation >= road.getLength()) {
         newLocation = road.getLength();
-        Junction nextJunction = itinerary.peek();
-        nextJunction.vehicleIn(this);
+        itinerary.get(nextJunction).vehicleIn(this);
         currentSpeed = 0;
         inJunction = true;
+        markChanged();
+      }
+      if (newLocation != location) {
+        kilometrage += newLocation - location;
+        location = newLocation;
+        markChanged();
+      }
+    }
+  }
+
+  /**
+   * Devuelve la velocidad a la que avanza el vehículo si la carretera le da la indicada
+   */
+  int steadySpeed(int roadSpeed) {
+    return faulty > 0 || inJunction ? 0 : Math.min(roadSpeed, maxSpeed);
+  }
+
+  /**
+   * Devuelve cuántos pasos seguidos puede avanzar el vehículo con la velocidad que le da la
+   * carretera sin llegar al cruce ni dejar de estar averiado
+   */
+  int steadyTicks(int roadSpeed) {
+    if (faulty > 0) {
+      return faulty;
+    }
+    int speed = steadySpeed(roadSpeed);
+    // Llega al cruce en el paso ceil((longitud - posición) / velocidad)
+    return speed == 0 ? Integer.MAX_VALUE : (road.getLength() - location - 1) / speed;
+  }
+
+  /**
+   * Avanza de golpe tantos pasos como se indiquen (como mucho {@link #steadyTicks(int)}) con la
+   * velocidad que le da la carretera
+   */
+  void skip(int ticks, int roadSpeed) {
+    if (faulty > 0) {
+      faulty -= ticks;
+      markChanged();
+    } else if (!inJunction) {
+      setCurrentSpeed(roadSpeed);
+      int distance = ticks * currentSpeed;
+      if (distance > 0) {
+        kilometrage += distance;
+        location += distance;
+        markChanged();
       }
-      kilometrage += newLocation - location;
-      location = newLocation;
     }
   }
 
@@ -99,8 +176,8 @@ public class Vehicle extends SimulatedObject {
       road.vehicleOut(this);
     }
     if (!hasArrived) {
-      String actual = itinerary.poll().getId();
-      Junction next = itinerary.peek();
+      String actual = itinerary.get(nextJunction++).getId();
+      Junction next = itinerary.get(nextJunction);
       if (next == null) {
         hasArrived = true;
         currentSpeed = 0;
@@ -112,16 +189,48 @@ public class Vehicle extends SimulatedObject {
         road.vehicleIn(this);
       }
       inJunction = false;
+      markChanged();
+    }
+  }
+
+  /**
+   * Guarda la carretera actual (-1 si ha llegado) y los cruces del itinerario
+   */
+  @Override
+  void writeLinks(ObjectOutputStream out, RoadMap map) throws IOException {
+    out.writeInt(road == null ? -1 : map.indexOf(road));
+    out.writeInt(itinerary.size());
+    for (Junction j : itinerary) {
+      out.writeInt(map.indexOf(j));
     }
   }
 
+  /**
+   * El itinerario se vuelve a compartir a través del mapa, por lo que sus cruces deben tener ya
+   * sus carreteras entrantes
+   */
   @Override
-  public void fillReportDetails(Map<String, String> kvps) {
-    kvps.put("speed", "" + currentSpeed);
-    kvps.put("kilometrage", "" + kilometrage);
-    kvps.put("faulty", "" + faulty);
-    kvps.put("location", hasArrived ? "arrived" : "(" + road + ","
-        + location + ")");
+  void readLinks(ObjectInputStream in, RoadMap map) throws IOException {
+    int roadIndex = in.readInt();
+    road = roadIndex < 0 ? null : (Road) map.getObject(roadIndex);
+    String[] path = new String[in.readInt()];
+    for (int i = 0; i < path.length; i++) {
+      path[i] = map.getObject(in.readInt()).getId();
+    }
+    itinerary = map.getPath(path);
+  }
+
+  @Override
+  protected void writeReportDetails(IniWriter writer) {
+    writer.setValue("speed", currentSpeed);
+    writer.setValue("kilometrage", kilometrage);
+    writer.setValue("faulty", faulty);
+    if (hasArrived) {
+      writer.setValue("location", "arrived");
+    } else {
+      writer.key("location").append('(').append(road.getId()).append(',').append(location)
+          .append(')').endValue();
+    }
   }
 
   @Override
@@ -138,7 +247,7 @@ public class Vehicle extends SimulatedObject {
     result.put(INFO[3], "" + currentSpeed);
     result.put(INFO[4], "" + kilometrage);
     result.put(INFO[5], "" + faulty);
-    result.put(INFO[6], "[" + itinerary.stream()
+    result.put(INFO[6], "[" + getItinerary().stream()
         .map(SimulatedObject::getId)
         .collect(joining(",")) + "]");
     return result;
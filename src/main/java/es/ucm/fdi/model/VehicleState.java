@@ -0,0 +1,32 @@
+package es.ucm.fdi.model;
+
+/**
+ * Estado inmutable de un vehículo
+ */
+public class VehicleState extends ObjectState {
+
+  private final String roadId;
+  private final int location;
+
+  VehicleState(Vehicle vehicle) {
+    super(vehicle);
+    roadId = vehicle.hasArrived() ? null : vehicle.getRoad().getId();
+    location = vehicle.getLocation();
+  }
+
+  /**
+   * Devuelve el id de la carretera en la que está o null si ha llegado a su destino
+   */
+  public String getRoadId() {
+    return roadId;
+  }
+
+  public int getLocation() {
+    return location;
+  }
+
+  public boolean hasArrived() {
+    return roadId == null;
+  }
+
+}
@@ -0,0 +1,42 @@
+package es.ucm.fdi.report;
+
+import java.io.*;
+
+/**
+ * Convierte informes en formato binario al formato ini de texto
+ */
+public class BinaryReportConverter {
+
+  private BinaryReportConverter() {
+  }
+
+  /**
+   * Escribe en la salida, tick a tick, los informes en formato ini leídos de la entrada binaria
+   */
+  public static void toIni(InputStream in, OutputStream out) throws IOException {
+    BinaryReportReader reader = new BinaryReportReader(in);
+    OutputStream buffered = new BufferedOutputStream(out);
+    ReportTick tick;
+    while ((tick = reader.next()) != null) {
+      tick.toIni().store(buffered);
+    }
+    buffered.flush();
+  }
+
+  /**
+   * Uso: BinaryReportConverter fichero.bin [fichero.ini]. Sin fichero de salida escribe en la
+   * salida estándar
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1 || args.length > 2) {
+      System.err.println("Usage: " + BinaryReportConverter.class.getCanonicalName()
+          + " <binary report> [<ini output>]");
+      System.exit(1);
+    }
+    try (InputStream in = new FileInputStream(args[0]);
+         OutputStream out = args.length > 1 ? new FileOutputStream(args[1]) : System.out) {
+      toIni(in, out);
+    }
+  }
+
+}
@@ -0,0 +1,123 @@
+package es.ucm.fdi.report;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lee informes en formato binario por columnas, tick a tick.
+ * <p>
+ * Formato (enteros de 32 bits big-endian, cadenas en UTF modificado de {@link DataInput}):
+ * <pre>
+ * fichero  := MAGIC VERSION tick*
+ * tick     := time
+ *             nuevas:int cadena*                    (entradas añadidas al diccionario)
+ *             cabecera:int n:int cruce*             (cruces)
+ *             cabecera:int n:int carretera*         (carreteras)
+ *             cabecera:int n:int id[n] tipo[n] carretera[n] posición[n] velocidad[n]
+ *                                kilometraje[n] averiado[n]   (vehículos, por columnas)
+ * cruce    := id tipo colas:int (carretera semáforo n:int vehículo[n])*
+ * carretera:= id tipo n:int (vehículo posición)[n]
+ * </pre>
+ * Todos los identificadores, tipos, colores de semáforo y cabeceras son índices a un
+ * diccionario de cadenas que crece a medida que aparecen cadenas nuevas. Un tipo -1 indica que
+ * el objeto no tiene tipo y una carretera -1 que el vehículo ha llegado a su destino.
+ */
+public class BinaryReportReader implements Closeable {
+
+  public static final int MAGIC = 0x54534252; // "TSBR"
+  public static final int VERSION = 1;
+
+  private final DataInputStream in;
+  private final List<String> dictionary;
+
+  public BinaryReportReader(InputStream is) throws IOException {
+    in = new DataInputStream(new BufferedInputStream(is));
+    dictionary = new ArrayList<>();
+    if (in.readInt() != MAGIC) {
+      throw new IOException("Not a binary report");
+    }
+    int version = in.readInt();
+    if (version != VERSION) {
+      throw new IOException("Unsupported binary report version " + version);
+    }
+  }
+
+  /**
+   * Lee el siguiente tick o devuelve null si no quedan más
+   */
+  public ReportTick next() throws IOException {
+    int time;
+    try {
+      time = in.readInt();
+    } catch (EOFException e) {
+      return null;
+    }
+    int newStrings = in.readInt();
+    for (int i = 0; i < newStrings; i++) {
+      dictionary.add(in.readUTF());
+    }
+    ReportTick tick = new ReportTick(time, dictionary);
+
+    tick.junctionHeader = in.readInt();
+    int junctions = in.readInt();
+    tick.junctions = new ReportTick.JunctionRow[junctions];
+    for (int i = 0; i < junctions; i++) {
+      ReportTick.JunctionRow row = new ReportTick.JunctionRow();
+      row.id = in.readInt();
+      row.type = in.readInt();
+      int queues = in.readInt();
+      row.roads = new int[queues];
+      row.lights = new int[queues];
+      row.queues = new int[queues][];
+      for (int q = 0; q < queues; q++) {
+        row.roads[q] = in.readInt();
+        row.lights[q] = in.readInt();
+        row.queues[q] = readInts(in.readInt());
+      }
+      tick.junctions[i] = row;
+    }
+
+    tick.roadHeader = in.readInt();
+    int roads = in.readInt();
+    tick.roads = new ReportTick.RoadRow[roads];
+    for (int i = 0; i < roads; i++) {
+      ReportTick.RoadRow row = new ReportTick.RoadRow();
+      row.id = in.readInt();
+      row.type = in.readInt();
+      int n = in.readInt();
+      row.vehicles = new int[n];
+      row.locations = new int[n];
+      for (int k = 0; k < n; k++) {
+        row.vehicles[k] = in.readInt();
+        row.locations[k] = in.readInt();
+      }
+      tick.roads[i] = row;
+    }
+
+    tick.vehicleHeader = in.readInt();
+    int vehicles = in.readInt();
+    tick.vehicleIds = readInts(vehicles);
+    tick.vehicleTypes = readInts(vehicles);
+    tick.vehicleRoads = readInts(vehicles);
+    tick.vehicleLocations = readInts(vehicles);
+    tick.vehicleSpeeds = readInts(vehicles);
+    tick.vehicleKilometrages = readInts(vehicles);
+    tick.vehicleFaulty = readInts(vehicles);
+    return tick;
+  }
+
+  private int[] readInts(int n) throws IOException {
+    int[] result = new int[n];
+    for (int i = 0; i < n; i++) {
+      result[i] = in.readInt();
+    }
+    return result;
+  }
+
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+
+}
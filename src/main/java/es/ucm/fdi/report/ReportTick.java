@@ -0,0 +1,161 @@
+package es.ucm.fdi.report;
+
+import es.ucm.fdi.ini.Ini;
+import es.ucm.fdi.ini.IniSection;
+
+import java.util.List;
+
+/**
+ * Informes de todos los objetos de la simulación en un tick, tal y como se guardan en el
+ * formato binario (ver {@link BinaryReportReader})
+ */
+public class ReportTick {
+
+  private final int time;
+  private final List<String> dictionary;
+
+  int junctionHeader;
+  JunctionRow[] junctions;
+
+  int roadHeader;
+  RoadRow[] roads;
+
+  int vehicleHeader;
+  int[] vehicleIds;
+  int[] vehicleTypes;
+  int[] vehicleRoads;
+  int[] vehicleLocations;
+  int[] vehicleSpeeds;
+  int[] vehicleKilometrages;
+  int[] vehicleFaulty;
+
+  ReportTick(int time, List<String> dictionary) {
+    this.time = time;
+    this.dictionary = dictionary;
+  }
+
+  public int getTime() {
+    return time;
+  }
+
+  public int getVehicleCount() {
+    return vehicleIds.length;
+  }
+
+  public String getVehicleId(int i) {
+    return string(vehicleIds[i]);
+  }
+
+  /**
+   * Devuelve el id de la carretera en la que está el vehículo o null si ha llegado
+   */
+  public String getVehicleRoad(int i) {
+    return vehicleRoads[i] < 0 ? null : string(vehicleRoads[i]);
+  }
+
+  public int getVehicleLocation(int i) {
+    return vehicleLocations[i];
+  }
+
+  public int getVehicleSpeed(int i) {
+    return vehicleSpeeds[i];
+  }
+
+  public int getVehicleKilometrage(int i) {
+    return vehicleKilometrages[i];
+  }
+
+  public int getVehicleFaulty(int i) {
+    return vehicleFaulty[i];
+  }
+
+  /**
+   * Convierte el tick al formato ini que se usa como salida de texto (mismo orden de secciones)
+   */
+  public Ini toIni() {
+    Ini ini = new Ini();
+    for (JunctionRow j : junctions) {
+      IniSection sec = section(junctionHeader, j.id);
+      StringBuilder queues = new StringBuilder();
+      for (int q = 0; q < j.roads.length; q++) {
+        if (q > 0) {
+          queues.append(',');
+        }
+        queues.append('(').append(string(j.roads[q])).append(',').append(string(j.lights[q]))
+            .append(",[");
+        appendIds(queues, j.queues[q]);
+        queues.append("])");
+      }
+      sec.setValue("queues", queues);
+      setType(sec, j.type);
+      ini.addSection(sec);
+    }
+    for (RoadRow r : roads) {
+      IniSection sec = section(roadHeader, r.id);
+      setType(sec, r.type);
+      StringBuilder state = new StringBuilder();
+      for (int k = 0; k < r.vehicles.length; k++) {
+        if (k > 0) {
+          state.append(',');
+        }
+        state.append('(').append(string(r.vehicles[k])).append(',')
+            .append(r.locations[k]).append(')');
+      }
+      sec.setValue("state", state);
+      ini.addSection(sec);
+    }
+    for (int v = 0; v < vehicleIds.length; v++) {
+      IniSection sec = section(vehicleHeader, vehicleIds[v]);
+      setType(sec, vehicleTypes[v]);
+      sec.setValue("speed", vehicleSpeeds[v]);
+      sec.setValue("kilometrage", vehicleKilometrages[v]);
+      sec.setValue("faulty", vehicleFaulty[v]);
+      sec.setValue("location", vehicleRoads[v] < 0 ? "arrived" :
+          "(" + string(vehicleRoads[v]) + "," + vehicleLocations[v] + ")");
+      ini.addSection(sec);
+    }
+    return ini;
+  }
+
+  private IniSection section(int header, int id) {
+    IniSection sec = new IniSection(string(header));
+    sec.setValue("id", string(id));
+    sec.setValue("time", time);
+    return sec;
+  }
+
+  private void setType(IniSection sec, int type) {
+    if (type >= 0) {
+      sec.setValue("type", string(type));
+    }
+  }
+
+  private void appendIds(StringBuilder sb, int[] ids) {
+    for (int k = 0; k < ids.length; k++) {
+      if (k > 0) {
+        sb.append(',');
+      }
+      sb.append(string(ids[k]));
+    }
+  }
+
+  private String string(int index) {
+    return dictionary.get(index);
+  }
+
+  static class JunctionRow {
+    int id;
+    int type;
+    int[] roads;
+    int[] lights;
+    int[][] queues;
+  }
+
+  static class RoadRow {
+    int id;
+    int type;
+    int[] vehicles;
+    int[] locations;
+  }
+
+}
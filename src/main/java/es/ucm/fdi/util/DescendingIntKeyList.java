@@ -0,0 +1,164 @@
+package es.ucm.fdi.util;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A list of values sorted by a primitive int key, from the highest key to the lowest.
+ * <p>
+ * Values with the same key are kept in order of insertion, exactly as in a
+ * {@link MultiTreeMap} with a reversed comparator. Unlike that map, keys can be updated in
+ * place (see {@link #setKey(int, int)}) and the order restored afterwards with
+ * {@link #restoreOrder()}, so a list whose keys change every step does not need to be
+ * rebuilt nor allocate anything.
+ */
+public class DescendingIntKeyList<V> extends AbstractList<V> {
+
+  private static final int DEFAULT_CAPACITY = 8;
+
+  private Object[] values;
+  private int[] keys;
+  private int size;
+
+  public DescendingIntKeyList() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public DescendingIntKeyList(int capacity) {
+    values = new Object[Math.max(capacity, 1)];
+    keys = new int[values.length];
+    size = 0;
+  }
+
+  /**
+   * Adds a value after every other value whose key is greater or equal than the given one.
+   * Efficiency is O(1) when adding with the lowest key.
+   *
+   * @param key   to add the value under
+   * @param value to add
+   */
+  public void add(int key, V value) {
+    ensureCapacity(size + 1);
+    int index = size;
+    while (index > 0 && keys[index - 1] < key) {
+      index--;
+    }
+    System.arraycopy(values, index, values, index + 1, size - index);
+    System.arraycopy(keys, index, keys, index + 1, size - index);
+    values[index] = value;
+    keys[index] = key;
+    size++;
+    modCount++;
+  }
+
+  /**
+   * Returns the key of the value at the given position
+   */
+  public int getKey(int index) {
+    checkIndex(index);
+    return keys[index];
+  }
+
+  /**
+   * Changes the key of the value at the given position without moving it. The list will not
+   * be sorted until {@link #restoreOrder()} is called.
+   */
+  public void setKey(int index, int key) {
+    checkIndex(index);
+    keys[index] = key;
+  }
+
+  /**
+   * Sorts the list again after some keys have been changed, keeping the previous relative order
+   * of values with the same key. Efficiency is O(n) when the list is almost sorted.
+   */
+  public void restoreOrder() {
+    for (int i = 1; i < size; i++) {
+      int key = keys[i];
+      if (keys[i - 1] < key) {
+        Object value = values[i];
+        int j = i;
+        // Only moves values with strictly lower keys to keep it stable
+        while (j > 0 && keys[j - 1] < key) {
+          keys[j] = keys[j - 1];
+          values[j] = values[j - 1];
+          j--;
+        }
+        keys[j] = key;
+        values[j] = value;
+      }
+    }
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public V get(int index) {
+    checkIndex(index);
+    return (V) values[index];
+  }
+
+  @Override
+  public V remove(int index) {
+    V old = get(index);
+    int moved = size - index - 1;
+    System.arraycopy(values, index + 1, values, index, moved);
+    System.arraycopy(keys, index + 1, keys, index, moved);
+    size--;
+    values[size] = null;
+    modCount++;
+    return old;
+  }
+
+  /**
+   * Removes the first value that is equal to the given one. Efficiency is O(n)
+   *
+   * @return true if removed, false if not found
+   */
+  @Override
+  public boolean remove(Object value) {
+    int index = indexOf(value);
+    if (index < 0) {
+      return false;
+    }
+    remove(index);
+    return true;
+  }
+
+  @Override
+  public int indexOf(Object value) {
+    for (int i = 0; i < size; i++) {
+      if (Objects.equals(value, values[i])) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public void clear() {
+    Arrays.fill(values, 0, size, null);
+    size = 0;
+    modCount++;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > values.length) {
+      int newLength = Math.max(capacity, values.length * 2);
+      values = Arrays.copyOf(values, newLength);
+      keys = Arrays.copyOf(keys, newLength);
+    }
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index " + index + " is out of bounds");
+    }
+  }
+
+}
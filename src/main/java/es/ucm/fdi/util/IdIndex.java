@@ -0,0 +1,114 @@
+package es.ucm.fdi.util;
+
+import java.util.Arrays;
+
+/**
+ * Assigns dense int indices (0, 1, 2...) to strings in the order they are
+ * added.
+ * <p>
+ * It is an open addressing hash table with linear probing that stores the
+ * keys and their indices in two parallel arrays, so each entry takes two
+ * array slots instead of a {@link java.util.HashMap} node with a boxed value.
+ * Entries can't be removed; {@link #clear()} removes all of them.
+ */
+public class IdIndex {
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private String[] keys;
+  private int[] values;
+  private int size;
+
+  public IdIndex() {
+    clear();
+  }
+
+  /**
+   * Removes all the entries, so the next key added gets index 0
+   */
+  public void clear() {
+    keys = new String[INITIAL_CAPACITY];
+    values = new int[INITIAL_CAPACITY];
+    size = 0;
+  }
+
+  /**
+   * Returns the number of keys
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the index of the key or -1 if it hasn't been added
+   */
+  public int indexOf(String key) {
+    int mask = keys.length - 1;
+    for (int i = slot(key, mask); keys[i] != null; i = (i + 1) & mask) {
+      if (keys[i].equals(key)) {
+        return values[i];
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Adds the key with the next index and returns it
+   *
+   * @throws IllegalArgumentException If the key had already been added
+   */
+  public int add(String key) {
+    if (2 * (size + 1) > keys.length) {
+      grow();
+    }
+    int mask = keys.length - 1;
+    int i = slot(key, mask);
+    for (; keys[i] != null; i = (i + 1) & mask) {
+      if (keys[i].equals(key)) {
+        throw new IllegalArgumentException("Key " + key + " is already in the index");
+      }
+    }
+    keys[i] = key;
+    values[i] = size;
+    return size++;
+  }
+
+  private void grow() {
+    String[] oldKeys = keys;
+    int[] oldValues = values;
+    keys = new String[oldKeys.length * 2];
+    values = new int[oldKeys.length * 2];
+    int mask = keys.length - 1;
+    for (int j = 0; j < oldKeys.length; j++) {
+      if (oldKeys[j] != null) {
+        int i = slot(oldKeys[j], mask);
+        while (keys[i] != null) {
+          i = (i + 1) & mask;
+        }
+        keys[i] = oldKeys[j];
+        values[i] = oldValues[j];
+      }
+    }
+  }
+
+  /**
+   * The first slot to look for the key in. The hash is spread so that keys
+   * that differ only in their last characters don't fall in consecutive slots
+   */
+  private static int slot(String key, int mask) {
+    int h = key.hashCode() * 0x9E3779B9;
+    return (h ^ (h >>> 16)) & mask;
+  }
+
+  @Override
+  public String toString() {
+    String[] ordered = new String[size];
+    for (int i = 0; i < keys.length; i++) {
+      if (keys[i] != null) {
+        ordered[values[i]] = keys[i];
+      }
+    }
+    return Arrays.toString(ordered);
+  }
+
+}
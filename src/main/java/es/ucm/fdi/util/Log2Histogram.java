@@ -0,0 +1,102 @@
+package es.ucm.fdi.util;
+
+import java.util.Arrays;
+
+/**
+ * Counts non-negative values in buckets whose bounds are powers of two: bucket 0 holds 0 and
+ * bucket i holds the values in [2^(i-1), 2^i). Recording a value takes a handful of
+ * instructions and no allocation, and the histogram has a fixed 64 counters whatever the range
+ * of the values, at the cost of percentiles being accurate only up to a factor of two.
+ * <p>
+ * Values are recorded by one thread and can be read by any other: reads see a recent state,
+ * but count, sum and buckets may not be exactly consistent with each other.
+ */
+public class Log2Histogram {
+
+  private static final int BUCKETS = Long.SIZE;
+
+  private final long[] buckets;
+  // Written last by record and read first by the getters, which publishes the other fields
+  private volatile long count;
+  private long sum;
+  private long max;
+
+  public Log2Histogram() {
+    buckets = new long[BUCKETS];
+  }
+
+  /**
+   * Adds a value (negative values count as 0)
+   */
+  public void record(long value) {
+    value = Math.max(value, 0);
+    buckets[Long.SIZE - Long.numberOfLeadingZeros(value)]++;
+    sum += value;
+    if (value > max) {
+      max = value;
+    }
+    count++;
+  }
+
+  /**
+   * Removes all the values. Must be called by the thread that records them
+   */
+  public void clear() {
+    count = 0;
+    sum = 0;
+    max = 0;
+    Arrays.fill(buckets, 0);
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  public long getSum() {
+    return count == 0 ? 0 : sum;
+  }
+
+  public long getMax() {
+    return count == 0 ? 0 : max;
+  }
+
+  /**
+   * Returns the mean of the values, or 0 if there are none
+   */
+  public double getMean() {
+    long n = count;
+    return n == 0 ? 0 : (double) sum / n;
+  }
+
+  /**
+   * Returns an upper bound of the given percentile: the inclusive upper bound of the bucket
+   * that holds it (2^i - 1 for bucket i), but never more than the maximum. Returns 0 if there
+   * are no values
+   *
+   * @param percentile Between 0 and 100
+   */
+  public long getPercentile(double percentile) {
+    if (percentile < 0 || percentile > 100) {
+      throw new IllegalArgumentException("Percentile must be between 0 and 100: " + percentile);
+    }
+    long n = count;
+    if (n == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += buckets[i];
+      if (seen >= rank) {
+        return Math.min(upperBound(i), max);
+      }
+    }
+    return max;
+  }
+
+  private static long upperBound(int bucket) {
+    // For the last bucket 2^63 - 1 overflows to Long.MAX_VALUE, its actual bound
+    return bucket == 0 ? 0 : (1L << bucket) - 1;
+  }
+
+}
@@ -11,6 +11,8 @@ import java.util.*;
  */
 public class MultiTreeMap<K, V> extends TreeMap<K, ArrayList<V>> {
 
+  private static final long serialVersionUID = 1L;
+
   private int valueCount = 0;
 
   public MultiTreeMap() {
@@ -0,0 +1,252 @@
+package es.ucm.fdi.util;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * An immutable list that shares its structure with the lists it was derived from.
+ * <p>
+ * Elements are stored in the leaves of a trie with 32 children per node, so reading an element
+ * and deriving a new list with one element changed cost O(log32 n): only the nodes in the path
+ * to that element are copied. Many elements can be changed at once through a {@link Builder},
+ * which copies each node at most once. Two lists derived from each other can be compared with
+ * {@link #forEachChanged}, which skips every subtree they share.
+ *
+ * @param <T> The type of the elements
+ */
+public final class PersistentVector<T> extends AbstractList<T> implements RandomAccess {
+
+  private static final int BITS = 5;
+  private static final int WIDTH = 1 << BITS;
+  private static final int MASK = WIDTH - 1;
+
+  private static final PersistentVector<?> EMPTY =
+      new PersistentVector<>(new Node(null, new Object[WIDTH]), 0, 0);
+
+  private final Node root;
+  /**
+   * Bits to shift an index to get the child of the root that holds it (0 if the root is a leaf)
+   */
+  private final int shift;
+  private final int size;
+
+  private PersistentVector(Node root, int shift, int size) {
+    this.root = root;
+    this.shift = shift;
+    this.size = size;
+  }
+
+  /**
+   * Returns the empty list
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> PersistentVector<T> empty() {
+    return (PersistentVector<T>) EMPTY;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public T get(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+    Node node = root;
+    for (int level = shift; level > 0; level -= BITS) {
+      node = (Node) node.array[(index >>> level) & MASK];
+    }
+    return (T) node.array[index & MASK];
+  }
+
+  /**
+   * Returns a builder that starts with the elements of this list (which is never modified)
+   */
+  public Builder<T> toBuilder() {
+    return new Builder<>(this);
+  }
+
+  /**
+   * Returns a list equal to this one but with the element at the given position replaced
+   */
+  public PersistentVector<T> with(int index, T value) {
+    return toBuilder().set(index, value).build();
+  }
+
+  /**
+   * Returns a list equal to this one with an element added at the end
+   */
+  public PersistentVector<T> plus(T value) {
+    return toBuilder().add(value).build();
+  }
+
+  /**
+   * Calls the visitor with each position whose element is not the same object (==) in both
+   * lists, including the positions that only exist in one of them. Subtrees shared by both
+   * lists are skipped, so comparing a list with one derived from it by changing k elements
+   * costs O(k log n)
+   *
+   * @param previous A list to compare with
+   * @param visitor  Called in ascending order of position
+   */
+  public void forEachChanged(PersistentVector<T> previous, ChangeVisitor visitor) {
+    int common = Math.min(size, previous.size);
+    if (common > 0) {
+      if (shift == previous.shift) {
+        diff(root, previous.root, shift, 0, common, visitor);
+      } else {
+        // Different heights share no nodes: compare element by element
+        for (int i = 0; i < common; i++) {
+          if (get(i) != previous.get(i)) {
+            visitor.changed(i);
+          }
+        }
+      }
+    }
+    for (int i = common; i < Math.max(size, previous.size); i++) {
+      visitor.changed(i);
+    }
+  }
+
+  private static void diff(Node node, Node other, int level, int offset, int limit,
+                           ChangeVisitor visitor) {
+    if (node == other) {
+      return;
+    }
+    int step = 1 << level;
+    for (int i = 0; i < WIDTH && offset + i * step < limit; i++) {
+      Object child = node == null ? null : node.array[i];
+      Object otherChild = other == null ? null : other.array[i];
+      if (level == 0) {
+        if (child != otherChild) {
+          visitor.changed(offset + i);
+        }
+      } else {
+        diff((Node) child, (Node) otherChild, level - BITS, offset + i * step, limit, visitor);
+      }
+    }
+  }
+
+  /**
+   * Receives the positions found by {@link #forEachChanged}
+   */
+  public interface ChangeVisitor {
+
+    void changed(int index);
+
+  }
+
+  /**
+   * Builds a new list from an existing one. Nodes copied by the builder are modified in place
+   * until {@link #build()} is called; from then on they are shared and never modified again.
+   * A builder must not be used by several threads at once.
+   *
+   * @param <T> The type of the elements
+   */
+  public static final class Builder<T> {
+
+    private final Edit edit;
+    private Node root;
+    private int shift;
+    private int size;
+
+    private Builder(PersistentVector<T> vector) {
+      edit = new Edit();
+      root = vector.root;
+      shift = vector.shift;
+      size = vector.size;
+    }
+
+    public int size() {
+      return size;
+    }
+
+    /**
+     * Replaces the element at the given position
+     */
+    public Builder<T> set(int index, T value) {
+      if (index < 0 || index >= size) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+      }
+      root = assoc(root, shift, index, value);
+      return this;
+    }
+
+    /**
+     * Adds an element at the end
+     */
+    public Builder<T> add(T value) {
+      if (size == 1 << (shift + BITS)) {
+        // The trie is full: it grows one level
+        Node newRoot = new Node(edit, new Object[WIDTH]);
+        newRoot.array[0] = root;
+        root = newRoot;
+        shift += BITS;
+      }
+      root = assoc(root, shift, size, value);
+      size++;
+      return this;
+    }
+
+    /**
+     * Returns the list with all the changes. The builder can't be used afterwards
+     */
+    public PersistentVector<T> build() {
+      edit.active = false;
+      return new PersistentVector<>(root, shift, size);
+    }
+
+    private Node assoc(Node node, int level, int index, Object value) {
+      Node editable = editable(node);
+      int i = (index >>> level) & MASK;
+      if (level == 0) {
+        editable.array[i] = value;
+      } else {
+        editable.array[i] = assoc((Node) editable.array[i], level - BITS, index, value);
+      }
+      return editable;
+    }
+
+    /**
+     * Returns the node itself if it was created by this builder or a copy otherwise
+     */
+    private Node editable(Node node) {
+      if (!edit.active) {
+        throw new IllegalStateException("The builder has already been used");
+      }
+      if (node == null) {
+        return new Node(edit, new Object[WIDTH]);
+      }
+      if (node.edit == edit) {
+        return node;
+      }
+      return new Node(edit, node.array.clone());
+    }
+
+  }
+
+  /**
+   * Identifies the nodes created by a builder while it is active
+   */
+  private static final class Edit {
+
+    boolean active = true;
+
+  }
+
+  private static final class Node {
+
+    final Edit edit;
+    final Object[] array;
+
+    Node(Edit edit, Object[] array) {
+      this.edit = edit;
+      this.array = array;
+    }
+
+  }
+
+}
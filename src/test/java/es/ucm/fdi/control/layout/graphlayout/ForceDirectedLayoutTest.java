@@ -0,0 +1,98 @@
+package es.ucm.fdi.control.layout.graphlayout;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for ForceDirectedLayout
+ */
+public class ForceDirectedLayoutTest {
+
+  private static final double K = 100;
+
+  @Test
+  public void exactRepulsionWithoutApproximation() {
+    Random random = new Random(7);
+    int n = 200;
+    double[] x = new double[n];
+    double[] y = new double[n];
+    for (int i = 0; i < n; i++) {
+      x[i] = random.nextDouble() * 1000;
+      y[i] = random.nextDouble() * 1000;
+    }
+    ForceDirectedLayout exact = new ForceDirectedLayout(x, y, new int[0], new int[0], K, 0);
+    ForceDirectedLayout approx = new ForceDirectedLayout(x, y, new int[0], new int[0], K,
+        ForceDirectedLayout.DEFAULT_THETA);
+    ForceDirectedLayout.Cell exactTree = exact.buildTree();
+    ForceDirectedLayout.Cell approxTree = approx.buildTree();
+    for (int i = 0; i < n; i++) {
+      double[] expected = bruteForce(x, y, i);
+      double[] force = new double[2];
+      exact.repulsion(exactTree, i, force);
+      assertEquals(expected[0], force[0], 1e-6 * Math.abs(expected[0]) + 1e-9);
+      assertEquals(expected[1], force[1], 1e-6 * Math.abs(expected[1]) + 1e-9);
+
+      // Barnes-Hut stays close to the exact force
+      double[] approximated = new double[2];
+      approx.repulsion(approxTree, i, approximated);
+      double error = Math.hypot(approximated[0] - expected[0], approximated[1] - expected[1]);
+      assertTrue(error < 0.2 * Math.hypot(expected[0], expected[1]) + 1);
+    }
+  }
+
+  @Test
+  public void connectedNodesEndUpCloser() {
+    // Two triangles joined by nothing, starting on a line
+    int n = 6;
+    double[] x = new double[n];
+    double[] y = new double[n];
+    for (int i = 0; i < n; i++) {
+      x[i] = i * 10;
+    }
+    int[] sources = {0, 1, 2, 3, 4, 5};
+    int[] targets = {1, 2, 0, 4, 5, 3};
+    ForceDirectedLayout layout = new ForceDirectedLayout(x, y, sources, targets, K,
+        ForceDirectedLayout.DEFAULT_THETA);
+    while (!layout.isDone()) {
+      layout.step();
+    }
+    double inside = distance(layout, 0, 1) + distance(layout, 3, 4);
+    double across = distance(layout, 0, 3) + distance(layout, 1, 4);
+    assertTrue(inside < across);
+  }
+
+  @Test
+  public void nodesAtTheSamePositionAreSeparated() {
+    double[] x = new double[4];
+    double[] y = new double[4];
+    ForceDirectedLayout layout = new ForceDirectedLayout(x, y, new int[0], new int[0], K,
+        ForceDirectedLayout.DEFAULT_THETA);
+    layout.step();
+    for (int i = 0; i < 4; i++) {
+      for (int j = i + 1; j < 4; j++) {
+        assertTrue(distance(layout, i, j) > 0);
+      }
+    }
+  }
+
+  private static double[] bruteForce(double[] x, double[] y, int i) {
+    double[] force = new double[2];
+    for (int j = 0; j < x.length; j++) {
+      if (j != i) {
+        double ex = x[i] - x[j], ey = y[i] - y[j];
+        double d2 = ex * ex + ey * ey;
+        force[0] += ex * K * K / d2;
+        force[1] += ey * K * K / d2;
+      }
+    }
+    return force;
+  }
+
+  private static double distance(ForceDirectedLayout layout, int i, int j) {
+    return Math.hypot(layout.getX()[i] - layout.getX()[j], layout.getY()[i] - layout.getY()[j]);
+  }
+
+}
@@ -4,10 +4,13 @@ import es.ucm.fdi.ini.IniSection;
 import es.ucm.fdi.model.*;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.junit.Assert.*;
 
@@ -44,6 +47,46 @@ public class EventBuilderTest {
     assertEquals("vt1", simulator.getVehicles().iterator().next().getId());
   }
 
+  @Test
+  public void shortestPathVehicleEvent() {
+    TestSimulator simulator = new TestSimulator();
+    Junction j1 = new Junction("jt1");
+    Junction j2 = new Junction("jt2");
+    Junction j3 = new Junction("jt3");
+    simulator.addSimulatedObject(j1);
+    simulator.addSimulatedObject(j2);
+    simulator.addSimulatedObject(j3);
+    // Por jt2 se tarda 2 en llegar y directamente 10
+    simulator.addSimulatedObject(new Road("rt1", 10, 10, "jt1", "jt2"));
+    simulator.addSimulatedObject(new Road("rt2", 10, 10, "jt2", "jt3"));
+    simulator.addSimulatedObject(new Road("rt3", 100, 10, "jt1", "jt3"));
+
+    IniSection section = new IniSection("new_vehicle");
+    section.setValue("time", 0);
+    section.setValue("id", "vt1");
+    section.setValue("max_speed", 10);
+    section.setValue("origin", "jt1");
+    section.setValue("destination", "jt3");
+    EventBuilder.parse(section).execute(simulator);
+    // El vehículo ya está en la primera carretera
+    assertEquals(Arrays.asList(j2, j3), simulator.getVehicles().iterator().next().getItinerary());
+
+    // Las nuevas carreteras invalidan los itinerarios ya calculados
+    RoadMap map = simulator.roadMapTest;
+    assertSame(map.getShortestPath("jt1", "jt3"), map.getShortestPath("jt1", "jt3"));
+    simulator.addSimulatedObject(new Road("rt4", 10, 100, "jt1", "jt3"));
+    assertEquals(Arrays.asList(j1, j3), map.getShortestPath("jt1", "jt3").from(0));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void noRoute() {
+    RoadMap map = new RoadMap();
+    map.addSimulatedObject(new Junction("jt1"));
+    map.addSimulatedObject(new Junction("jt2"));
+    map.addSimulatedObject(new Road("rt1", 10, 10, "jt2", "jt1"));
+    map.getShortestPath("jt1", "jt2");
+  }
+
   @Test
   public void unknownEvent() {
     IniSection section = new IniSection("unknown_tag");
@@ -123,6 +166,50 @@ public class EventBuilderTest {
     }
   }
 
+  @Test
+  public void parallelParseKeepsOrder() throws Exception {
+    List<IniSection> sections = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      IniSection section = new IniSection(i % 2 == 0 ? "new_junction" : "new_road");
+      section.setValue("time", i % 7);
+      // Los ids no pueden contener ceros
+      section.setValue("id", ("o" + i).replace('0', 'z'));
+      if (i % 2 != 0) {
+        section.setValue("src", "a");
+        section.setValue("dest", "b");
+        section.setValue("max_speed", 10);
+        section.setValue("length", 10);
+        if (i % 3 == 0) {
+          section.setValue("type", "dirt");
+        }
+      }
+      sections.add(section);
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Event> events = EventBuilder.parseAll(sections, executor, 4);
+      assertEquals(sections.size(), events.size());
+      for (int i = 0; i < sections.size(); i++) {
+        Event expected = EventBuilder.parse(sections.get(i));
+        assertEquals(expected.getClass(), events.get(i).getClass());
+        assertEquals(expected.getId(), events.get(i).getId());
+        assertEquals(expected.getTime(), events.get(i).getTime());
+      }
+
+      // Si fallan varias secciones el error es el de la primera
+      sections.get(100).setValue("time", "-1");
+      sections.get(900).setValue("time", "-1");
+      try {
+        EventBuilder.parseAll(sections, executor, 4);
+        fail();
+      } catch (IllegalStateException e) {
+        assertTrue(e.getMessage().contains("o1zz"));
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
   private class TestSimulator extends TrafficSimulator {
 
     RoadMap roadMapTest = new RoadMap();
@@ -137,6 +224,11 @@ public class EventBuilderTest {
       return roadMapTest.getPath(path);
     }
 
+    @Override
+    public Queue<Junction> getShortestPath(String origin, String destination) {
+      return roadMapTest.getShortestPath(origin, destination);
+    }
+
     @Override
     public Collection<Vehicle> getVehicles() {
       return roadMapTest.getVehicles();
@@ -94,6 +94,11 @@ public class EventTest {
       throw new UnsupportedOperationException("Nothing to do");
     }
 
+    @Override
+    public String getSectionTag() {
+      throw new UnsupportedOperationException("Nothing to do");
+    }
+
     @Override
     public String getEventName() {
       throw new UnsupportedOperationException("Nothing to do");
@@ -0,0 +1,66 @@
+package es.ucm.fdi.ini;
+
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit tests for IniWriter and IniSectionWriter
+ */
+public class IniWriterTest {
+
+  @Test
+  public void sameLayoutAsIniSection() {
+    IniSection expected = sampleSection();
+    StringWriter text = new StringWriter();
+    IniWriter writer = new IniWriter(text);
+    writeSample(writer);
+    writer.flush();
+    // Ini.store writes an empty line after each section, as endSection does
+    assertEquals(expected.toString() + System.lineSeparator(), text.toString());
+  }
+
+  @Test
+  public void sectionWriterBuildsSameSections() {
+    IniSectionWriter writer = new IniSectionWriter();
+    writeSample(writer);
+    writer.beginSection("empty");
+    writer.endSection();
+    List<IniSection> sections = writer.getSections();
+    assertEquals(Arrays.asList(sampleSection(), new IniSection("empty")), sections);
+    assertEquals(sampleSection().toString(), sections.get(0).toString());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void sectionWriterKeyOutsideSection() {
+    new IniSectionWriter().setValue("id", "v1");
+  }
+
+  private static IniSection sampleSection() {
+    IniSection section = new IniSection("vehicle_report");
+    section.setValue("id", "v1");
+    section.setValue("time", 0);
+    section.setValue("negative", -42);
+    section.setValue("min", Integer.MIN_VALUE);
+    section.setValue("queues", "r1,green,[(v1,0),(v2,-1)]");
+    section.setValue("empty", "");
+    return section;
+  }
+
+  private static void writeSample(IniWriter writer) {
+    writer.beginSection("vehicle_report");
+    writer.setValue("id", "v1");
+    writer.setValue("time", 0);
+    writer.setValue("negative", -42);
+    writer.setValue("min", Integer.MIN_VALUE);
+    writer.key("queues").append("r1").append(',').append("green").append(",[(v1,")
+        .append(0).append("),(v2,").append(-1).append(")]").endValue();
+    writer.key("empty").endValue();
+    writer.endSection();
+  }
+
+}
@@ -0,0 +1,86 @@
+package es.ucm.fdi.ini;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for MappedIniReader
+ */
+public class MappedIniReaderTest {
+
+  private static final String CONTENT = "; a comment\r\n"
+      + "[first]\r\n"
+      + "  key = value \r\n"
+      + "other=a=b\n"
+      + "\t\n"
+      + "# another comment\r"
+      + "  [!ignored]  \n"
+      + "hidden = 1\n"
+      + "[ second ]\n"
+      + "empty =\n"
+      + ", last comment";
+
+  @Test
+  public void sameSectionsAsIni() throws IOException {
+    Ini expected = new Ini(new ByteArrayInputStream(CONTENT.getBytes()));
+    // Tiny windows split lines (and "\r\n" pairs) at every possible position
+    for (int window = 1; window <= 16; window++) {
+      assertEquals(expected.getSections(), readAll(CONTENT, window));
+    }
+    assertEquals(2, expected.getSections().size());
+  }
+
+  @Test
+  public void sameSectionsAsIniOnExamples() throws IOException {
+    File[] files = new File("src/test/resources/examples/advanced")
+        .listFiles((d, name) -> name.endsWith(".ini"));
+    assertNotNull(files);
+    for (File file : files) {
+      List<IniSection> sections = new ArrayList<>();
+      try (MappedIniReader reader = new MappedIniReader(file)) {
+        IniSection section;
+        while ((section = reader.next()) != null) {
+          sections.add(section);
+        }
+      }
+      assertEquals(new Ini(file.getPath()).getSections(), sections);
+    }
+  }
+
+  @Test(expected = IniError.class)
+  public void keyValueOutsideSection() throws IOException {
+    readAll("key = value\n[section]\n", 64);
+  }
+
+  @Test(expected = IniError.class)
+  public void syntaxError() throws IOException {
+    readAll("[section]\nnot a key value\n", 64);
+  }
+
+  private static List<IniSection> readAll(String content, long window) throws IOException {
+    Path file = Files.createTempFile("mapped", ".ini");
+    try {
+      Files.write(file, content.getBytes());
+      List<IniSection> sections = new ArrayList<>();
+      try (MappedIniReader reader = new MappedIniReader(file, window)) {
+        IniSection section;
+        while ((section = reader.next()) != null) {
+          sections.add(section);
+        }
+      }
+      return sections;
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+}
@@ -1,6 +1,7 @@
 package es.ucm.fdi.launcher;
 
 import es.ucm.fdi.exceptions.SimulatorError;
+import es.ucm.fdi.model.ReportFormat;
 import org.junit.Test;
 
 public class MainTest {
@@ -17,6 +18,42 @@ public class MainTest {
     Main.test(RES + "examples/advanced");
   }
 
+  @Test
+  public void parallelTest() throws Exception {
+    Main.test(RES + "examples/basic", 4);
+    Main.test(RES + "examples/advanced", 4);
+  }
+
+  @Test
+  public void binaryFormatTest() throws Exception {
+    Main.test(RES + "examples/basic", ReportFormat.BINARY);
+    Main.test(RES + "examples/advanced", ReportFormat.BINARY);
+  }
+
+  @Test
+  public void eventWindowTest() throws Exception {
+    Main.testEventWindow(RES + "examples/basic", 5);
+    Main.testEventWindow(RES + "examples/advanced", 1);
+  }
+
+  @Test
+  public void finalReportTest() throws Exception {
+    Main.testFinalReport(RES + "examples/basic");
+    Main.testFinalReport(RES + "examples/advanced");
+  }
+
+  @Test
+  public void resumeTest() throws Exception {
+    Main.testResume(RES + "examples/basic", 4);
+    Main.testResume(RES + "examples/advanced", 7);
+  }
+
+  @Test(expected = SimulatorError.class)
+  public void lateEventTest() throws Exception {
+    // 07_reductionFactor tiene un evento en el paso 1 después de otro en el paso 4
+    Main.testEventWindow(RES + "examples/basic", 1);
+  }
+
   @Test(expected = SimulatorError.class)
   public void errTest() throws Exception {
     Main.test(RES + "examples/err");
@@ -6,11 +6,83 @@ import java.util.ArrayDeque;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Queue;
+import java.util.function.Supplier;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 public class JunctionTest {
 
+  @Test
+  public void straightRoad() {
+    Junction dest = new MostCrowdedJunction("jt4");
+    Road first = new Road("rt1", 10, 100, "jt1", "jt4");
+    Road second = new Road("rt2", 10, 100, "jt2", "jt4");
+    dest.addRoad(first);
+    dest.addRoad(second);
+    // Con varias carreteras desde el mismo cruce se usa la primera
+    dest.addRoad(new Road("rt3", 10, 100, "jt1", "jt4"));
+
+    assertEquals(first, dest.getStraightRoad("jt1"));
+    assertEquals(second, dest.getStraightRoad("jt2"));
+    assertNull(dest.getStraightRoad("jt3"));
+  }
+
+  @Test
+  public void skipIdle() {
+    Supplier<?>[] types = {
+        () -> new Junction("jt4"),
+        () -> new RoundRobinJunction("jt4", 1, 3),
+        () -> new RoundRobinJunction("jt4", 2, 5),
+        () -> new MostCrowdedJunction("jt4")};
+    for (Supplier<?> type : types) {
+      for (int vehicles = 0; vehicles <= 3; vehicles++) {
+        for (int warm = 0; warm <= 6; warm++) {
+          for (int ticks = 0; ticks <= 30; ticks++) {
+            Junction advanced = idleJunction((Junction) type.get(), vehicles, warm);
+            Junction skipped = idleJunction((Junction) type.get(), vehicles, warm);
+            for (int i = 0; i < ticks; i++) {
+              advanced.advance();
+            }
+            skipped.skipIdle(ticks);
+            // Tiene que seguir igual después (duración del verde, vehículos que pasaron...)
+            for (int i = 0; i < 10; i++) {
+              assertEquals(advanced.describe(), skipped.describe());
+              advanced.advance();
+              skipped.advance();
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Crea un cruce con tres carreteras entrantes por el que pasan los vehículos indicados y que
+   * después avanza vacío warm veces
+   */
+  private static Junction idleJunction(Junction junction, int vehicles, int warm) {
+    Junction source = new Junction("jt1");
+    junction.addRoad(new Road("rt1", 10, 100, "jt1", "jt4"));
+    junction.addRoad(new Road("rt2", 10, 100, "jt2", "jt4"));
+    junction.addRoad(new Road("rt3", 10, 100, "jt3", "jt4"));
+    Queue<Junction> queue = new ArrayDeque<>();
+    queue.add(source);
+    queue.add(junction);
+    for (int i = 1; i <= vehicles; i++) {
+      Vehicle v = new Vehicle("vt" + i, 100, new ArrayDeque<>(queue));
+      v.moveToNextRoad();
+      junction.vehicleIn(v);
+    }
+    while (junction.hasWaitingVehicles()) {
+      junction.advance();
+    }
+    for (int i = 0; i < warm; i++) {
+      junction.advance();
+    }
+    return junction;
+  }
+
   @Test
   public void simpleAdvance() {
     Junction source = new Junction("jt1");
@@ -0,0 +1,55 @@
+package es.ucm.fdi.model;
+
+import es.ucm.fdi.control.Controller;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+
+public class ReplayLogTest {
+
+  private static final String EVENTS = "src/test/resources/examples/advanced/15_misc.ini";
+  private static final int TICKS = 30;
+
+  @Test
+  public void seekRebuildsRecordedTicks() throws Exception {
+    TrafficSimulator simulator = new TrafficSimulator();
+    Controller controller = new Controller(simulator);
+    controller.recordReplay(4);
+    // Con una instantánea completa en cada paso se guardan las originales
+    ReplayLog reference = new ReplayLog(1);
+    simulator.addListener(reference);
+    // Leyendo los eventos según se necesitan, la cola de eventos también cambia
+    controller.streamEvents(new File(EVENTS), 3);
+    controller.run(TICKS);
+
+    // Saltando en cualquier orden y después paso a paso hacia delante
+    for (int i = 0; i < TICKS; i++) {
+      int time = i * 7 % TICKS + 1;
+      assertSameState(reference.seek(time), controller.seek(time));
+    }
+    for (int time = 1; time <= TICKS; time++) {
+      assertSameState(reference.seek(time), controller.seek(time));
+    }
+    assertSameState(reference.seek(TICKS), controller.seek(TICKS + 10));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void seekBeforeFirstTick() {
+    ReplayLog log = new ReplayLog(4);
+    log.record(new SimulationSnapshot(3, SimulationSnapshot.EMPTY.getVehicles(),
+        SimulationSnapshot.EMPTY.getRoads(), SimulationSnapshot.EMPTY.getJunctions(),
+        SimulationSnapshot.EMPTY.getEvents()));
+    log.seek(2);
+  }
+
+  private static void assertSameState(SimulationSnapshot expected, SimulationSnapshot actual) {
+    assertEquals(expected.getTime(), actual.getTime());
+    assertEquals(expected.getVehicles(), actual.getVehicles());
+    assertEquals(expected.getRoads(), actual.getRoads());
+    assertEquals(expected.getJunctions(), actual.getJunctions());
+    assertEquals(expected.getEvents(), actual.getEvents());
+  }
+
+}
@@ -0,0 +1,86 @@
+package es.ucm.fdi.model;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class RerouterTest {
+
+  @Test
+  public void avoidsCongestedRoad() {
+    RoadMap map = congestedMap();
+    Junction j2 = map.junctionSearch("jt2");
+    Junction j3 = map.junctionSearch("jt3");
+    Junction j4 = map.junctionSearch("jt4");
+    Vehicle vehicle = map.vehicleSearch("vt1");
+
+    Rerouter rerouter = new Rerouter(map, 1, Double.POSITIVE_INFINITY);
+    rerouter.reroute(0);
+    assertEquals(Arrays.asList(j2, j4), vehicle.getItinerary());
+
+    // Con tres vehículos averiados en rt2 se tarda 30 en recorrerla
+    for (int i = 2; i <= 4; i++) {
+      map.vehicleSearch("vt" + i).setFaulty(100);
+    }
+    rerouter.reroute(1);
+    assertEquals(Arrays.asList(j2, j3, j4), vehicle.getItinerary());
+    assertEquals(Arrays.asList(j4), map.vehicleSearch("vt2").getItinerary());
+  }
+
+  @Test
+  public void progressesWithExhaustedBudget() {
+    RoadMap map = congestedMap();
+    for (int i = 2; i <= 4; i++) {
+      map.vehicleSearch("vt" + i).setFaulty(100);
+    }
+    // Cualquier trabajo agota el presupuesto, pero los pesos y los itinerarios se turnan
+    Rerouter rerouter = new Rerouter(map, 1, 1e-9);
+    rerouter.tickFinished(1);
+    rerouter.reroute(0);
+    rerouter.reroute(1);
+    assertEquals(Arrays.asList(map.junctionSearch("jt2"), map.junctionSearch("jt3"),
+        map.junctionSearch("jt4")), map.vehicleSearch("vt1").getItinerary());
+  }
+
+  /**
+   * Mapa en el que el vehículo vt1 va por rt2 hasta jt4 y los vehículos vt2-vt4 están en rt2
+   */
+  private static RoadMap congestedMap() {
+    RoadMap map = new RoadMap();
+    Junction j1 = new Junction("jt1");
+    Junction j2 = new Junction("jt2");
+    Junction j3 = new Junction("jt3");
+    Junction j4 = new Junction("jt4");
+    for (Junction j : Arrays.asList(j1, j2, j3, j4)) {
+      map.addSimulatedObject(j);
+    }
+    map.addSimulatedObject(new Road("rt1", 10, 10, "jt1", "jt2"));
+    // Sin tráfico se tarda 6 por rt2 y 10 por jt3
+    map.addSimulatedObject(new DirtRoad("rt2", 60, 10, "jt2", "jt4"));
+    map.addSimulatedObject(new Road("rt3", 50, 10, "jt2", "jt3"));
+    map.addSimulatedObject(new Road("rt4", 50, 10, "jt3", "jt4"));
+
+    Vehicle vehicle = new Vehicle("vt1", 10, map.getPath(new String[]{"jt1", "jt2", "jt4"}));
+    map.addSimulatedObject(vehicle);
+    Vehicle[] blocking = new Vehicle[3];
+    for (int i = 0; i < blocking.length; i++) {
+      blocking[i] = new Vehicle("vt" + (i + 2), 10, map.getPath(new String[]{"jt2", "jt4"}));
+      map.addSimulatedObject(blocking[i]);
+    }
+    return map;
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void routeMustStartAtNextJunction() {
+    RoadMap map = new RoadMap();
+    map.addSimulatedObject(new Junction("jt1"));
+    map.addSimulatedObject(new Junction("jt2"));
+    map.addSimulatedObject(new Road("rt1", 10, 10, "jt1", "jt2"));
+    Vehicle vehicle = new Vehicle("vt1", 10, map.getPath(new String[]{"jt1", "jt2"}));
+    map.addSimulatedObject(vehicle);
+    vehicle.reroute(map.getPath(new String[]{"jt1", "jt2"}));
+  }
+
+}
@@ -7,7 +7,7 @@ import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Queue;
 
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 public class RoadTest {
 
@@ -40,6 +40,49 @@ public class RoadTest {
     assertEquals(correct, result);
   }
 
+  @Test
+  public void skip() {
+    Road stepped = roadWithFaultyVehicle();
+    Road skipped = roadWithFaultyVehicle();
+    boolean jumped = false;
+    for (int i = 0; i < 40; i++) {
+      int ticks = Math.min(skipped.steadyTicks(), 40);
+      if (ticks > 0) {
+        jumped |= ticks > 1;
+        skipped.skip(ticks);
+      } else {
+        skipped.advance();
+      }
+      for (int j = 0; j < Math.max(ticks, 1); j++) {
+        stepped.advance();
+      }
+      assertEquals(stepped.generateReport(i), skipped.generateReport(i));
+    }
+    assertTrue(jumped);
+  }
+
+  /**
+   * Crea una carretera en la que un vehículo rápido adelanta a uno averiado, que después sigue
+   */
+  private static Road roadWithFaultyVehicle() {
+    Junction source = new Junction("jt1");
+    Junction dest = new Junction("jt2");
+    Queue<Junction> queue = new ArrayDeque<>();
+    queue.add(source);
+    queue.add(dest);
+
+    Road road = new DirtRoad("rt1", 300, 30, "jt1", "jt2");
+    dest.addRoad(road);
+    Vehicle broken = new Vehicle("vt1", 20, queue);
+    Vehicle fast = new Vehicle("vt2", 30, new ArrayDeque<>(queue));
+    broken.moveToNextRoad();
+    road.advance();
+    road.advance();
+    fast.moveToNextRoad();
+    broken.setFaulty(12);
+    return road;
+  }
+
   @Test
   public void faultyVehicle() {
     Junction source = new Junction("jt1");
@@ -191,4 +234,36 @@ public class RoadTest {
     assertEquals(correct, result);
   }
 
+  @Test
+  public void changeTracking() {
+    Junction source = new Junction("jt1");
+    Junction dest = new Junction("jt2");
+    Queue<Junction> queue = new ArrayDeque<>();
+    queue.add(source);
+    queue.add(dest);
+    Road road = new Road("rt1", 100, 20, "jt1", "jt2");
+    dest.addRoad(road);
+    Vehicle vehicle = new Vehicle("vt1", 20, queue);
+
+    // Los objetos nuevos cuentan como cambiados
+    assertTrue(road.pollChanged());
+    assertTrue(vehicle.pollChanged());
+    assertFalse(road.pollChanged());
+
+    vehicle.moveToNextRoad();
+    assertTrue(road.pollChanged());
+    assertTrue(vehicle.pollChanged());
+
+    road.advance();
+    assertTrue(vehicle.pollChanged());
+
+    // Un vehículo averiado que no se mueve cambia mientras dura la avería, luego ya no
+    vehicle.setFaulty(1);
+    road.advance();
+    assertTrue(vehicle.pollChanged());
+    vehicle.setCurrentSpeed(0);
+    vehicle.advance();
+    assertFalse(vehicle.pollChanged());
+  }
+
 }
@@ -0,0 +1,77 @@
+package es.ucm.fdi.model;
+
+import es.ucm.fdi.control.Controller;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SimulationMetricsTest {
+
+  private static final String EVENTS = "src/test/resources/examples/advanced/15_misc.ini";
+  private static final int TICKS = 30;
+
+  @Test
+  public void measuresEveryTick() throws Exception {
+    TrafficSimulator simulator = new TrafficSimulator();
+    Controller controller = new Controller(simulator);
+    SimulationMetrics metrics = new SimulationMetrics();
+    controller.setMetrics(metrics);
+    List<SimulationMetrics.Tick> ticks = new ArrayList<>();
+    metrics.addListener(ticks::add);
+    // Vehículos llegados según las instantáneas de cada paso
+    simulator.setPublishSnapshots(true);
+    List<Integer> arrived = new ArrayList<>();
+    simulator.addListener(new TrafficSimulator.Listener() {
+      @Override
+      public void registered(TrafficSimulator.UpdateEvent ue) {
+      }
+
+      @Override
+      public void reset(TrafficSimulator.UpdateEvent ue) {
+      }
+
+      @Override
+      public void newEvent(TrafficSimulator.UpdateEvent ue) {
+      }
+
+      @Override
+      public void advanced(TrafficSimulator.UpdateEvent ue) {
+        int count = 0;
+        for (VehicleState v : ue.getSnapshot().getVehicles()) {
+          if (v.hasArrived()) {
+            count++;
+          }
+        }
+        arrived.add(count);
+      }
+
+      @Override
+      public void error(TrafficSimulator.UpdateEvent ue, String msg) {
+      }
+    });
+    controller.loadEvents(new File(EVENTS));
+    controller.run(TICKS);
+
+    assertEquals(TICKS, ticks.size());
+    assertEquals(TICKS, metrics.getTicks());
+    int total = 0;
+    for (int i = 0; i < TICKS; i++) {
+      SimulationMetrics.Tick tick = ticks.get(i);
+      assertEquals(i + 1, tick.getTime());
+      total += tick.getVehiclesArrived();
+      assertEquals((int) arrived.get(i), total);
+      assertTrue(tick.getPhaseNanos(SimulationMetrics.Phase.ROADS) <= tick.getNanos());
+    }
+    assertTrue(total > 0);
+    assertEquals(total, metrics.getVehiclesArrived());
+    assertEquals(TICKS, metrics.getPhaseHistogram(SimulationMetrics.Phase.JUNCTIONS).getCount());
+    // Sin cambio de itinerarios esa fase no se ejecuta
+    assertEquals(0, metrics.getPhaseHistogram(SimulationMetrics.Phase.REROUTING).getCount());
+  }
+
+}
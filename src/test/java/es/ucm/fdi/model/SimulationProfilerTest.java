@@ -0,0 +1,69 @@
+package es.ucm.fdi.model;
+
+import es.ucm.fdi.control.Controller;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SimulationProfilerTest {
+
+  private static final String EVENTS = "src/test/resources/examples/advanced/15_misc.ini";
+  private static final int TICKS = 30;
+
+  @Test
+  public void profilesEveryRoadAndJunction() throws Exception {
+    TrafficSimulator simulator = new TrafficSimulator();
+    Controller controller = new Controller(simulator);
+    SimulationProfiler profiler = new SimulationProfiler();
+    controller.setProfiler(profiler);
+    SimulationMetrics metrics = new SimulationMetrics();
+    controller.setMetrics(metrics);
+    long[] queued = new long[1];
+    metrics.addListener(tick -> queued[0] += tick.getVehiclesQueued());
+    controller.loadEvents(new File(EVENTS));
+    controller.run(TICKS);
+
+    assertEquals(TICKS, profiler.getTicks());
+    List<SimulationProfiler.ObjectProfile> roads = profiler.getRoadProfiles();
+    List<SimulationProfiler.ObjectProfile> junctions = profiler.getJunctionProfiles();
+    assertEquals(simulator.getRoads().size(), roads.size());
+    assertEquals(simulator.getJunctions().size(), junctions.size());
+    assertSorted(roads);
+    assertSorted(junctions);
+    // Las colas de los cruces suman los vehículos que esperaban al acabar cada paso
+    double total = 0;
+    for (SimulationProfiler.ObjectProfile p : junctions) {
+      assertTrue(p.getAdvances() <= TICKS);
+      total += p.getMeanQueue(TICKS) * TICKS;
+    }
+    assertTrue(queued[0] > 0);
+    assertEquals(queued[0], total, 1e-6);
+  }
+
+  @Test
+  public void resetClearsProfiles() throws Exception {
+    TrafficSimulator simulator = new TrafficSimulator();
+    Controller controller = new Controller(simulator);
+    SimulationProfiler profiler = new SimulationProfiler();
+    controller.setProfiler(profiler);
+    controller.loadEvents(new File(EVENTS));
+    controller.run(TICKS);
+    simulator.reset();
+    controller.run(1);
+    assertEquals(1, profiler.getTicks());
+    for (SimulationProfiler.ObjectProfile p : profiler.getRoadProfiles()) {
+      assertTrue(p.getAdvances() <= 1);
+    }
+  }
+
+  private static void assertSorted(List<SimulationProfiler.ObjectProfile> profiles) {
+    for (int i = 1; i < profiles.size(); i++) {
+      assertTrue(profiles.get(i - 1).getNanos() >= profiles.get(i).getNanos());
+    }
+  }
+
+}
@@ -3,15 +3,48 @@ package es.ucm.fdi.model;
 import org.junit.Test;
 
 import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Queue;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 public class VehicleTest {
 
+  @Test
+  public void sharedItinerary() {
+    RoadMap map = new RoadMap();
+    Junction source = new Junction("jt1");
+    Junction mid = new Junction("jt2");
+    Junction dest = new Junction("jt3");
+    map.addSimulatedObject(source);
+    map.addSimulatedObject(mid);
+    map.addSimulatedObject(dest);
+    map.addSimulatedObject(new Road("rt1", 10, 100, "jt1", "jt2"));
+    map.addSimulatedObject(new Road("rt2", 10, 100, "jt2", "jt3"));
+
+    Route route = map.getPath(new String[]{"jt1", "jt2", "jt3"});
+    assertSame(route, map.getPath(new String[]{"jt1", "jt2", "jt3"}));
+
+    Vehicle vehicle1 = new Vehicle("vt1", 20, route);
+    Vehicle vehicle2 = new Vehicle("vt2", 20, route);
+    map.addSimulatedObject(vehicle1);
+    map.addSimulatedObject(vehicle2);
+    vehicle1.setCurrentSpeed(20);
+    vehicle1.advance();
+    // El primer paso sólo pone el semáforo en verde
+    mid.advance();
+    mid.advance();
+
+    // Cada vehículo avanza por el itinerario sin modificarlo
+    assertEquals(Arrays.asList(dest), vehicle1.getItinerary());
+    assertEquals(Arrays.asList(mid, dest), vehicle2.getItinerary());
+    assertEquals(Arrays.asList(source, mid, dest), route.from(0));
+  }
+
   @Test
   public void simpleAdvance() {
     Junction source = new Junction("jt1");
@@ -0,0 +1,80 @@
+package es.ucm.fdi.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for DescendingIntKeyList
+ */
+public class DescendingIntKeyListTest {
+
+  @Test
+  public void addKeepsDescendingAndInsertionOrder() {
+    DescendingIntKeyList<String> list = new DescendingIntKeyList<>(1);
+    list.add(0, "a");
+    list.add(5, "b");
+    list.add(0, "c");
+    list.add(5, "d");
+    list.add(3, "e");
+    assertEquals(Arrays.asList("b", "d", "e", "a", "c"), list);
+    assertEquals(5, list.getKey(0));
+    assertEquals(0, list.getKey(4));
+  }
+
+  @Test
+  public void remove() {
+    DescendingIntKeyList<String> list = new DescendingIntKeyList<>();
+    list.add(2, "a");
+    list.add(1, "b");
+    list.add(1, "c");
+    assertTrue(list.remove("b"));
+    assertFalse(list.remove("z"));
+    assertEquals(Arrays.asList("a", "c"), list);
+    assertEquals(1, list.getKey(1));
+  }
+
+  /**
+   * Restoring the order after changing keys must give the same result as rebuilding a
+   * reversed MultiTreeMap inserting the values in their previous order
+   */
+  @Test
+  public void restoreOrderMatchesMultiTreeMap() {
+    Random random = new Random(0);
+    DescendingIntKeyList<Integer> list = new DescendingIntKeyList<>();
+    for (int i = 0; i < 200; i++) {
+      list.add(random.nextInt(20), i);
+    }
+    for (int step = 0; step < 50; step++) {
+      MultiTreeMap<Integer, Integer> expected = new MultiTreeMap<>((a, b) -> b - a);
+      for (int i = 0; i < list.size(); i++) {
+        int key = list.getKey(i) + random.nextInt(10);
+        list.setKey(i, key);
+        expected.putValue(key, list.get(i));
+      }
+      list.restoreOrder();
+      assertEquals(expected.valuesList(), new ArrayList<>(list));
+      List<Integer> keys = new ArrayList<>();
+      for (int i = 0; i < list.size(); i++) {
+        keys.add(list.getKey(i));
+      }
+      assertEquals(new ArrayList<>(expected.keySet()), distinct(keys));
+    }
+  }
+
+  private static List<Integer> distinct(List<Integer> keys) {
+    List<Integer> result = new ArrayList<>();
+    for (Integer k : keys) {
+      if (result.isEmpty() || !result.get(result.size() - 1).equals(k)) {
+        result.add(k);
+      }
+    }
+    return result;
+  }
+
+}
@@ -0,0 +1,43 @@
+package es.ucm.fdi.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for IdIndex
+ */
+public class IdIndexTest {
+
+  @Test
+  public void denseIndicesInInsertionOrder() {
+    IdIndex index = new IdIndex();
+    // Enough keys to grow the table several times
+    for (int i = 0; i < 10000; i++) {
+      assertEquals(i, index.add("id" + i));
+    }
+    assertEquals(10000, index.size());
+    for (int i = 0; i < 10000; i++) {
+      assertEquals(i, index.indexOf("id" + i));
+    }
+    assertEquals(-1, index.indexOf("missing"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void duplicatedKey() {
+    IdIndex index = new IdIndex();
+    index.add("a");
+    index.add("b");
+    index.add("a");
+  }
+
+  @Test
+  public void clear() {
+    IdIndex index = new IdIndex();
+    index.add("a");
+    index.clear();
+    assertEquals(-1, index.indexOf("a"));
+    assertEquals(0, index.add("b"));
+  }
+
+}
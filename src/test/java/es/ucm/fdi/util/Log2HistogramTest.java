@@ -0,0 +1,78 @@
+package es.ucm.fdi.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit tests for Log2Histogram
+ */
+public class Log2HistogramTest {
+
+  @Test
+  public void emptyHistogram() {
+    Log2Histogram h = new Log2Histogram();
+    assertEquals(0, h.getCount());
+    assertEquals(0, h.getMax());
+    assertEquals(0, h.getMean(), 0);
+    assertEquals(0, h.getPercentile(99));
+  }
+
+  @Test
+  public void statistics() {
+    Log2Histogram h = new Log2Histogram();
+    for (int i = 1; i <= 100; i++) {
+      h.record(i);
+    }
+    assertEquals(100, h.getCount());
+    assertEquals(5050, h.getSum());
+    assertEquals(100, h.getMax());
+    assertEquals(50.5, h.getMean(), 1e-9);
+    // 50 is in [32, 64) and 99 in [64, 128), whose bound is capped at the maximum
+    assertEquals(63, h.getPercentile(50));
+    assertEquals(100, h.getPercentile(99));
+    assertEquals(1, h.getPercentile(0));
+  }
+
+  @Test
+  public void bucketBounds() {
+    Log2Histogram h = new Log2Histogram();
+    h.record(0);
+    h.record(-5);
+    assertEquals(0, h.getPercentile(100));
+    h.record(1);
+    assertEquals(0, h.getPercentile(50));
+    assertEquals(1, h.getPercentile(100));
+    h.record(Long.MAX_VALUE);
+    assertEquals(Long.MAX_VALUE, h.getPercentile(100));
+  }
+
+  @Test
+  public void inclusiveBucketBounds() {
+    Log2Histogram h = new Log2Histogram();
+    // 63 is the last value of [32, 64) and 64 the first one of [64, 128)
+    h.record(63);
+    h.record(64);
+    h.record(1000);
+    assertEquals(63, h.getPercentile(33));
+    assertEquals(127, h.getPercentile(66));
+    assertEquals(1000, h.getPercentile(100));
+  }
+
+  @Test
+  public void clear() {
+    Log2Histogram h = new Log2Histogram();
+    h.record(1000);
+    h.clear();
+    h.record(3);
+    assertEquals(1, h.getCount());
+    assertEquals(3, h.getMax());
+    assertEquals(3, h.getPercentile(100));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidPercentile() {
+    new Log2Histogram().getPercentile(101);
+  }
+
+}
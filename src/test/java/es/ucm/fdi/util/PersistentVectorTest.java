@@ -0,0 +1,90 @@
+package es.ucm.fdi.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for PersistentVector
+ */
+public class PersistentVectorTest {
+
+  @Test
+  public void addAndGet() {
+    PersistentVector<Integer> v = PersistentVector.empty();
+    List<Integer> expected = new ArrayList<>();
+    // Enough elements to grow the trie to three levels
+    for (int i = 0; i < 2000; i++) {
+      v = v.plus(i);
+      expected.add(i);
+    }
+    assertEquals(expected, v);
+    assertEquals(2000, v.size());
+  }
+
+  @Test
+  public void olderVersionsAreUnchanged() {
+    PersistentVector<String> v1 = PersistentVector.<String>empty().plus("a").plus("b");
+    PersistentVector<String> v2 = v1.with(0, "c");
+    PersistentVector<String> v3 = v2.plus("d");
+    assertEquals(Arrays.asList("a", "b"), v1);
+    assertEquals(Arrays.asList("c", "b"), v2);
+    assertEquals(Arrays.asList("c", "b", "d"), v3);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void builderCantBeReused() {
+    PersistentVector.Builder<String> builder = PersistentVector.<String>empty().toBuilder();
+    builder.add("a").build();
+    builder.add("b");
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void setOutOfBounds() {
+    PersistentVector.<String>empty().plus("a").with(1, "b");
+  }
+
+  @Test
+  public void forEachChangedMatchesBruteForce() {
+    Random random = new Random(42);
+    PersistentVector<Object> previous = PersistentVector.empty();
+    for (int round = 0; round < 50; round++) {
+      PersistentVector.Builder<Object> builder = previous.toBuilder();
+      int changes = random.nextInt(10);
+      for (int i = 0; i < changes && builder.size() > 0; i++) {
+        builder.set(random.nextInt(builder.size()), new Object());
+      }
+      int added = random.nextInt(100);
+      for (int i = 0; i < added; i++) {
+        builder.add(new Object());
+      }
+      PersistentVector<Object> current = builder.build();
+
+      List<Integer> expected = new ArrayList<>();
+      for (int i = 0; i < current.size(); i++) {
+        if (i >= previous.size() || current.get(i) != previous.get(i)) {
+          expected.add(i);
+        }
+      }
+      List<Integer> changed = new ArrayList<>();
+      current.forEachChanged(previous, changed::add);
+      assertEquals(expected, changed);
+      previous = current;
+    }
+  }
+
+  @Test
+  public void forEachChangedReportsRemovedPositions() {
+    PersistentVector<String> longer = PersistentVector.<String>empty().plus("a").plus("b");
+    PersistentVector<String> shorter = PersistentVector.<String>empty().plus("a");
+    List<Integer> changed = new ArrayList<>();
+    shorter.forEachChanged(longer, changed::add);
+    assertEquals(Arrays.asList(1), changed);
+  }
+
+}